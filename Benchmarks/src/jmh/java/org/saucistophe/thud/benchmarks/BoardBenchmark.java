@@ -0,0 +1,105 @@
+package org.saucistophe.thud.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.saucistophe.thud.model.Coordinate;
+import org.saucistophe.thud.model.MoveList;
+import static org.saucistophe.thud.model.Piece.DWARF;
+import static org.saucistophe.thud.model.Piece.TROLL;
+import org.saucistophe.thud.model.boards.Board;
+import org.saucistophe.thud.model.players.NegamaxPlayer;
+
+/**
+ Benchmarks of the board operations the search relies on, for the playing side of each sample board.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BoardBenchmark
+{
+	@Param(
+		{
+			Boards.NANO, Boards.MINI, Boards.REGULAR, Boards.INITIAL
+		})
+	public String boardName;
+
+	private Board board;
+
+	/**
+	 The pieces of the playing side.
+	 */
+	private List<Coordinate> pieces;
+
+	/**
+	 The boards after each move, to evaluate.
+	 */
+	private List<Board> children;
+
+	private final MoveList moves = new MoveList();
+	private final NegamaxPlayer player = new NegamaxPlayer();
+
+	@Setup
+	public void setUp() throws IOException
+	{
+		board = Boards.read(boardName);
+		pieces = board.getPiecesStream(board.dwarvesTurn ? DWARF : TROLL).collect(Collectors.toList());
+		children = board.childrenBoards();
+	}
+
+	@Benchmark
+	public void validMoves(Blackhole blackhole)
+	{
+		for (Coordinate piece : pieces)
+		{
+			blackhole.consume(board.validMoves(piece.width, piece.height, board.dwarvesTurn ? null : new ArrayList<>()));
+		}
+	}
+
+	@Benchmark
+	public MoveList generateMoves()
+	{
+		board.generateMoves(moves);
+		return moves;
+	}
+
+	@Benchmark
+	public List<Board> childrenBoards()
+	{
+		return board.childrenBoards();
+	}
+
+	@Benchmark
+	public Board cloneBoard()
+	{
+		return board.cloneBoard();
+	}
+
+	@Benchmark
+	public int evaluate()
+	{
+		int result = 0;
+		for (Board child : children)
+		{
+			result += player.evaluate(child);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,37 @@
+package org.saucistophe.thud.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import org.saucistophe.thud.model.boards.Board;
+
+/**
+ Reads the sample boards the benchmarks run on.
+ */
+public class Boards
+{
+	/**
+	 The bundled boards, from the smallest to the largest.
+	 */
+	public static final String NANO = "nano.thud", MINI = "mini.thud", REGULAR = "regular.thud", INITIAL = "initialBoard.thud";
+
+	private Boards()
+	{
+	}
+
+	/**
+	 @param name The file name of a bundled board.
+	 @return The board.
+	 @throws IOException If the board can't be found or read.
+	 */
+	public static Board read(String name) throws IOException
+	{
+		try (InputStream stream = Boards.class.getClassLoader().getResourceAsStream(name))
+		{
+			if (stream == null)
+			{
+				throw new IOException("Board " + name + " not found.");
+			}
+			return Board.readFromStream(stream);
+		}
+	}
+}
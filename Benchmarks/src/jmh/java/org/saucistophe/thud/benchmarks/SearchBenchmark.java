@@ -0,0 +1,75 @@
+package org.saucistophe.thud.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.saucistophe.thud.model.boards.Board;
+import org.saucistophe.thud.model.players.NegamaxPlayer;
+import org.saucistophe.thud.model.players.SearchSettings;
+
+/**
+ Benchmarks of a whole fixed-depth search, from each sample board. Each
+ search starts from scratch: the transposition table and the history are
+ cleared before each of them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class SearchBenchmark
+{
+	@Param(
+		{
+			Boards.NANO, Boards.MINI, Boards.REGULAR, Boards.INITIAL
+		})
+	public String boardName;
+
+	@Param(
+		{
+			"2", "3"
+		})
+	public int depth;
+
+	@Param(
+		{
+			"1"
+		})
+	public int threads;
+
+	private Board board;
+	private NegamaxPlayer player;
+
+	@Setup
+	public void setUp() throws IOException
+	{
+		board = Boards.read(boardName);
+		player = new NegamaxPlayer();
+		player.setSearchSettings(new SearchSettings(depth, 0, 0, NegamaxPlayer.QUIESCENCE_DEPTH, threads,
+			NegamaxPlayer.TRANSPOSITION_TABLE_SIZE));
+	}
+
+	@Setup(Level.Invocation)
+	public void newGame()
+	{
+		player.newGame();
+	}
+
+	@Benchmark
+	public Board makeBestMove()
+	{
+		return player.makeBestMove(board.cloneBoard());
+	}
+}
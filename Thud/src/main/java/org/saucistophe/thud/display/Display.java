@@ -8,10 +8,12 @@ import static java.awt.event.KeyEvent.VK_SPACE;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.swing.ButtonGroup;
 import javax.swing.JFrame;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
@@ -19,6 +21,7 @@ import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JProgressBar;
+import javax.swing.JRadioButtonMenuItem;
 import javax.swing.JSeparator;
 import javax.swing.SwingUtilities;
 import org.saucistophe.settings.SettingsHandler;
@@ -28,9 +31,13 @@ import org.saucistophe.thud.model.Piece;
 import static org.saucistophe.thud.model.Piece.DWARF;
 import static org.saucistophe.thud.model.Piece.EMPTY;
 import org.saucistophe.thud.model.boards.Board;
+import org.saucistophe.thud.model.boards.GameRecordWriter;
+import org.saucistophe.thud.model.boards.OpeningBook;
 import static org.saucistophe.thud.model.boards.Board.readFromStream;
+import org.saucistophe.thud.model.players.MctsPlayer;
 import org.saucistophe.thud.model.players.NegamaxPlayer;
 import org.saucistophe.thud.model.players.Player;
+import org.saucistophe.thud.model.players.PvsPlayer;
 
 /**
  A self-contained display panel, that syncs to a board and allows to control it.
@@ -67,8 +74,21 @@ public class Display
 	*/
 	private Thread aiThread = null;
 
+	/**
+	 The AI players, kept from one move to another so that they can reuse what they learnt, and the one playing.
+	 */
+	private final NegamaxPlayer negamaxPlayer = new NegamaxPlayer();
+	private final PvsPlayer pvsPlayer = new PvsPlayer();
+	private final MctsPlayer mctsPlayer = new MctsPlayer();
+	private volatile Player player = negamaxPlayer;
+
 	private File lastSavedFile = null;
 
+	/**
+	 The writer recording the games played, if the user chose a file to record them.
+	 */
+	private GameRecordWriter gameRecords = null;
+
 	/**
 	 The label of each represented square.
 	 */
@@ -167,6 +187,7 @@ public class Display
 			newGameItem.addActionListener(e ->
 				{
 					board.set(initialBoard);
+					recordNewGame();
 					// refresh display.
 					updateBoardPanel();
 					// Reset the last saved file to nothing.
@@ -186,6 +207,7 @@ public class Display
 							Board boardToLoad = Board.readFromFile(fileToLoad);
 							// Ditch the display and use a new one.
 							board.set(boardToLoad);
+							recordNewGame();
 							updateBoardPanel();
 							//Display display = new Display(boardToLoad);
 							// Make the loaded file the new "save" target.
@@ -193,11 +215,30 @@ public class Display
 							saveItem.setEnabled(true);
 						} catch (Exception ex)
 						{
-							Logger.getLogger(Display.class.getName()).log(Level.SEVERE, null, ex);
-							JOptionPane.showMessageDialog(null,
-								ex,
-								"Something went wrong!",
-								JOptionPane.ERROR_MESSAGE);
+							showError(ex);
+						}
+					}
+				});
+
+			// Record the games in a file, starting with the current one.
+			JMenuItem recordItem = new JMenuItem("Record Games...");
+			recordItem.addActionListener(e ->
+				{
+					File recordsFile = FileComponentsUtils.chooseFile("thudgames", null);
+					if (recordsFile != null)
+					{
+						try
+						{
+							if (gameRecords != null)
+							{
+								gameRecords.close();
+							}
+							gameRecords = GameRecordWriter.append(recordsFile);
+							recordNewGame();
+						} catch (IOException ex)
+						{
+							gameRecords = null;
+							showError(ex);
 						}
 					}
 				});
@@ -206,6 +247,7 @@ public class Display
 			JMenuItem exitItem = new JMenuItem("Exit");
 			exitItem.addActionListener(e ->
 				{
+					closeRecords();
 					MAIN_FRAME.dispose();
 				});
 
@@ -218,6 +260,8 @@ public class Display
 			fileMenu.add(saveAsItem);
 			saveItem.setEnabled(false);
 			fileMenu.add(new JSeparator());
+			fileMenu.add(recordItem);
+			fileMenu.add(new JSeparator());
 			fileMenu.add(exitItem);
 		}
 		menuBar.add(fileMenu);
@@ -230,6 +274,33 @@ public class Display
 					SettingsHandler.showSettingsDialog();
 				});
 			toolsMenu.add(settingsItem);
+
+			// Play the openings of a book without thinking.
+			JMenuItem bookItem = new JMenuItem("Opening Book...");
+			bookItem.addActionListener(e ->
+				{
+					File bookFile = FileComponentsUtils.chooseFile("book", null);
+					if (bookFile != null)
+					{
+						try
+						{
+							OpeningBook book = OpeningBook.open(bookFile);
+							negamaxPlayer.setOpeningBook(book);
+							pvsPlayer.setOpeningBook(book);
+						} catch (IOException ex)
+						{
+							showError(ex);
+						}
+					}
+				});
+			toolsMenu.add(bookItem);
+
+			// Choose the AI playing: the negamax one, its principal variation search, or the Monte Carlo one.
+			toolsMenu.add(new JSeparator());
+			ButtonGroup aiGroup = new ButtonGroup();
+			addPlayerItem(toolsMenu, aiGroup, "Negamax AI", negamaxPlayer);
+			addPlayerItem(toolsMenu, aiGroup, "Principal Variation Search AI", pvsPlayer);
+			addPlayerItem(toolsMenu, aiGroup, "Monte Carlo AI", mctsPlayer);
 		}
 		menuBar.add(toolsMenu);
 
@@ -301,6 +372,91 @@ public class Display
 		}
 	}
 
+	/**
+	 Adds a menu item choosing the AI player.
+
+	 @param menu The menu.
+	 @param group The group of the items choosing a player, only one being selected.
+	 @param name The name of the item.
+	 @param itemPlayer The player chosen by the item.
+	 */
+	private void addPlayerItem(JMenu menu, ButtonGroup group, String name, Player itemPlayer)
+	{
+		JRadioButtonMenuItem item = new JRadioButtonMenuItem(name, player == itemPlayer);
+		item.addActionListener(e ->
+			{
+				player = itemPlayer;
+			});
+		group.add(item);
+		menu.add(item);
+	}
+
+	/**
+	 Starts recording the game from the current board, if the games are recorded.
+	 */
+	private void recordNewGame()
+	{
+		if (gameRecords != null)
+		{
+			try
+			{
+				gameRecords.startGame(board);
+				gameRecords.flush();
+			} catch (IOException ex)
+			{
+				showError(ex);
+			}
+		}
+	}
+
+	/**
+	 Records the move that was just played, if the games are recorded.
+	 */
+	private void recordMove()
+	{
+		if (gameRecords != null)
+		{
+			try
+			{
+				gameRecords.addPosition(board);
+				gameRecords.flush();
+			} catch (IOException | IllegalArgumentException ex)
+			{
+				showError(ex);
+			}
+		}
+	}
+
+	/**
+	 Ends the recorded game, if any.
+	 */
+	private void closeRecords()
+	{
+		if (gameRecords != null)
+		{
+			try
+			{
+				gameRecords.close();
+			} catch (IOException ex)
+			{
+				Logger.getLogger(Display.class.getName()).log(Level.SEVERE, null, ex);
+			}
+			gameRecords = null;
+		}
+	}
+
+	/**
+	 @param ex An error to log, and show to the user.
+	 */
+	private static void showError(Exception ex)
+	{
+		Logger.getLogger(Display.class.getName()).log(Level.SEVERE, null, ex);
+		JOptionPane.showMessageDialog(null,
+			ex,
+			"Something went wrong!",
+			JOptionPane.ERROR_MESSAGE);
+	}
+
 	private void updateBoardPanel()
 	{
 		if (MAIN_FRAME.isAncestorOf(squaresPanel))
@@ -321,9 +477,9 @@ public class Display
 				// Playing a move with the AI.
 				if (ke.getKeyCode() == VK_SPACE)
 				{
-					Player player = new NegamaxPlayer();
 					// Register a progress callback using the progress bar.
-					player.progressCallback = i -> SwingUtilities.invokeLater(() -> progressBar.setValue(i));
+					Player aiPlayer = player;
+					aiPlayer.progressCallback = i -> SwingUtilities.invokeLater(() -> progressBar.setValue(i));
 
 					// Make the move, in another thread (not to block the UI).
 					aiThread = new Thread(() ->
@@ -331,8 +487,13 @@ public class Display
 							// Enable the progress bar.
 							progressBar.setVisible(true);
 
-							// Actual reflexion.
-							player.makeBestMove(board);
+							// Actual reflexion, the move being recorded unless there was none.
+							Board previousBoard = board.cloneBoard();
+							aiPlayer.makeBestMove(board);
+							if (!board.equals(previousBoard))
+							{
+								recordMove();
+							}
 
 							// Disable the progress bar.
 							progressBar.setVisible(false);
@@ -416,8 +577,8 @@ public class Display
 			if (selected == null)
 			{
 				// Try to select the clicked coordinate.
-				if (board.dwarvesTurn && board.squares[x][y] == Piece.DWARF
-					|| !board.dwarvesTurn && board.squares[x][y] == Piece.TROLL)
+				if (board.dwarvesTurn && board.getPiece(x, y) == Piece.DWARF
+					|| !board.dwarvesTurn && board.getPiece(x, y) == Piece.TROLL)
 				{
 					selected = squareLabels[x][y];
 				}
@@ -429,7 +590,8 @@ public class Display
 				{
 					// Efect the move, kill the victim, and deselect.
 					board.move(potentialKiller.width, potentialKiller.height, potentialCrimeScene.width, potentialCrimeScene.height);
-					board.squares[x][y] = EMPTY;
+					board.setPiece(x, y, EMPTY);
+					recordMove();
 
 					potentialKiller = null;
 					potentialVictims = null;
@@ -453,16 +615,17 @@ public class Display
 					}
 					else // If there's already a selection, we check if the selected move is valid:
 					// If it's a troll, and there is several possible dwarven victims (i.e. on a simple move among several dwarves) prompt for the dwarf to kill.
-					 if (board.squares[selected.x][selected.y] == Piece.TROLL)
+					 if (board.getPiece(selected.x, selected.y) == Piece.TROLL)
 						{
 							if (trollShovings.contains(new Coordinate(x, y)))
 							{
 								// In case of troll shoving, kill all nearbydwarves, for simplicity.
 								for (Coordinate victim : board.getNearby(DWARF, x, y))
 								{
-									board.squares[victim.width][victim.height] = EMPTY;
+									board.setPiece(victim.width, victim.height, EMPTY);
 								}
 								board.move(selected.x, selected.y, x, y);
+								recordMove();
 								selected = null;
 							}
 							else
@@ -480,6 +643,7 @@ public class Display
 								{
 									// No nearby dwaves, simple move!
 									board.move(selected.x, selected.y, x, y);
+									recordMove();
 									selected = null;
 								}
 							}
@@ -488,6 +652,7 @@ public class Display
 						else
 						{
 							board.move(selected.x, selected.y, x, y);
+							recordMove();
 							selected = null;
 						}
 				}
@@ -1,11 +1,11 @@
 package org.saucistophe.thud.display;
 
 import java.awt.Color;
+import java.awt.Dimension;
 import java.awt.Font;
 import javax.swing.BorderFactory;
 import javax.swing.JLabel;
 import org.saucistophe.annotations.SettingsField;
-import org.saucistophe.thud.model.Coordinate;
 import org.saucistophe.thud.model.Piece;
 import static org.saucistophe.thud.model.Piece.OUT;
 import org.saucistophe.thud.model.boards.Board;
@@ -53,7 +53,7 @@ public class PieceLabel extends JLabel
 		setBorder(BorderFactory.createLineBorder(Color.GRAY, 1));
 		setFont(font);
 		setOpaque(true);
-		setPreferredSize(new Coordinate(fontSize, fontSize));
+		setPreferredSize(new Dimension(fontSize, fontSize));
 	}
 
 	public void refresh(Board board, Display display)
@@ -66,11 +66,12 @@ public class PieceLabel extends JLabel
 		setFont(font);
 
 		boolean white = (x + y) % 2 == 0;
+		Piece piece = board.getPiece(x, y);
 
 		// Fill in the square's text value.
-		if (board.squares[x][y] != Piece.OUT)
+		if (piece != Piece.OUT)
 		{
-			setText(board.squares[x][y].text);
+			setText(piece.text);
 		}
 		else
 		{
@@ -78,7 +79,7 @@ public class PieceLabel extends JLabel
 		}
 
 		// Set the background color.
-		if (board.squares[x][y] == OUT)
+		if (piece == OUT)
 		{
 			setBackground(white ? OUTSIDE_COLOR_1 : OUTSIDE_COLOR_2);
 		}
@@ -94,7 +95,7 @@ public class PieceLabel extends JLabel
 			setBackground((x + y) % 2 != 0 ? SELECTED_COLOR_1 : SELECTED_COLOR_2);
 		}
 		// Hovered
-		else if (this == display.hovered && board.squares[x][y] != OUT)
+		else if (this == display.hovered && piece != OUT)
 		{
 			setBackground((x + y) % 2 != 0 ? SELECTABLE_COLOR_1 : SELECTABLE_COLOR_2);
 		}
@@ -0,0 +1,437 @@
+package org.saucistophe.thud.engine;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import org.saucistophe.thud.model.Move;
+import org.saucistophe.thud.model.boards.Board;
+import org.saucistophe.thud.model.boards.OpeningBook;
+import org.saucistophe.thud.model.boards.Tablebase;
+import org.saucistophe.thud.model.players.NegamaxPlayer;
+import org.saucistophe.thud.model.players.SearchBudget;
+import org.saucistophe.thud.model.players.SearchListener;
+import org.saucistophe.thud.model.players.SearchStatistics;
+import org.saucistophe.thud.model.players.TranspositionTable;
+
+/**
+ A headless engine, driven by a line-based text protocol on its input and
+ output, in the spirit of the chess engines' UCI protocol. It never loads the
+ display, so that it can run on servers or be driven by tournament scripts.
+
+ Commands:
+ - "uci": identifies the engine, answered by "uciok".
+ - "isready": answered by "readyok" once the previous commands are processed.
+ - "newgame": forgets what was learnt from the previous searches.
+ - "position startpos|file PATH|text [moves MOVE...]": sets the position, either
+ the initial board, a board file, or a board in the .thud format given on the
+ next lines up to a line "end"; then plays the given moves, e.g. "g7-g8xf9".
+ - "go [depth N] [movetime MS] [nodes N] [infinite]": searches the position in
+ the background, with "info" lines after each iteration, and a "bestmove" line
+ at the end. Without any limit, the AI settings are used.
+ - "tablebase PATH": plays the endgames of a tablebase made by TablebaseGenerator perfectly.
+ - "book PATH": plays the openings of a book made by OpeningBookBuilder without searching.
+ - "stop": stops the search, which then gives its best move.
+ - "quit": stops the search and exits.
+ At the end of the input, the current search is completed before exiting,
+ unless it has no limit, e.g. "go infinite": it is then stopped.
+ */
+public class TextEngine
+{
+	private final BufferedReader input;
+	private final PrintStream output;
+
+	private final NegamaxPlayer player = new NegamaxPlayer();
+
+	/**
+	 The current position, or null until set.
+	 */
+	private Board board = null;
+
+	/**
+	 The thread running the current search, if any, and its budget.
+	 */
+	private Thread searchThread = null;
+	private SearchBudget budget = null;
+
+	/**
+	 True if the current search has no limit, so that it only ends when stopped.
+	 */
+	private boolean endlessSearch = false;
+
+	/**
+	 @param input The commands.
+	 @param output Where to write the answers.
+	 */
+	public TextEngine(InputStream input, PrintStream output)
+	{
+		this.input = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+		this.output = output;
+	}
+
+	/**
+	 Reads and executes the commands, until "quit" or the end of the input.
+
+	 @throws IOException If the input can't be read.
+	 */
+	public void run() throws IOException
+	{
+		String line;
+		while ((line = input.readLine()) != null)
+		{
+			List<String> words = Arrays.asList(line.trim().split("\\s+"));
+			if (words.get(0).isEmpty())
+			{
+				continue;
+			}
+
+			try
+			{
+				switch (words.get(0))
+				{
+					case "uci":
+						send("id name Thud");
+						send("id author Saucistophe");
+						send("uciok");
+						break;
+					case "isready":
+						send("readyok");
+						break;
+					case "newgame":
+						stop();
+						player.newGame();
+						break;
+					case "position":
+						stop();
+						position(words);
+						break;
+					case "go":
+						stop();
+						go(words);
+						break;
+					case "tablebase":
+						stop();
+						tablebase(words);
+						break;
+					case "book":
+						stop();
+						book(words);
+						break;
+					case "stop":
+						stop();
+						break;
+					case "quit":
+						stop();
+						return;
+					default:
+						send("info string Unknown command: " + words.get(0));
+				}
+			} catch (IllegalArgumentException | IOException ex)
+			{
+				send("info string " + ex.getMessage());
+			}
+		}
+
+		// Nobody is left to stop an endless search.
+		if (endlessSearch)
+		{
+			stop();
+		}
+		waitForSearch();
+	}
+
+	/**
+	 Sets the current position.
+
+	 @param words The words of the "position" command.
+	 @throws IOException If the board can't be read.
+	 */
+	private void position(List<String> words) throws IOException
+	{
+		if (words.size() < 2)
+		{
+			throw new IllegalArgumentException("Missing position.");
+		}
+
+		Board newBoard;
+		int movesIndex;
+		switch (words.get(1))
+		{
+			case "startpos":
+				newBoard = Board.readFromStream(TextEngine.class.getClassLoader().getResourceAsStream("initialBoard.thud"));
+				movesIndex = 2;
+				break;
+			case "file":
+				if (words.size() < 3)
+				{
+					throw new IllegalArgumentException("Missing board file.");
+				}
+				newBoard = Board.readFromFile(new File(words.get(2)));
+				movesIndex = 3;
+				break;
+			case "text":
+				newBoard = readBoard();
+				movesIndex = 2;
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown position: " + words.get(1));
+		}
+
+		if (words.size() > movesIndex)
+		{
+			if (!words.get(movesIndex).equals("moves"))
+			{
+				throw new IllegalArgumentException("Unexpected word: " + words.get(movesIndex));
+			}
+			for (String moveText : words.subList(movesIndex + 1, words.size()))
+			{
+				newBoard.makeMove(parseMove(newBoard, moveText));
+			}
+		}
+
+		board = newBoard;
+	}
+
+	/**
+	 Opens a tablebase, probed by the searches from then on.
+
+	 @param words The words of the "tablebase" command.
+	 @throws IOException If the tablebase can't be read.
+	 */
+	private void tablebase(List<String> words) throws IOException
+	{
+		if (words.size() < 2)
+		{
+			throw new IllegalArgumentException("Missing tablebase file.");
+		}
+		player.setTablebase(Tablebase.open(new File(words.get(1))));
+	}
+
+	/**
+	 Opens an opening book, probed by the searches from then on.
+
+	 @param words The words of the "book" command.
+	 @throws IOException If the book can't be read.
+	 */
+	private void book(List<String> words) throws IOException
+	{
+		if (words.size() < 2)
+		{
+			throw new IllegalArgumentException("Missing opening book file.");
+		}
+		player.setOpeningBook(OpeningBook.open(new File(words.get(1))));
+	}
+
+	/**
+	 @return The board given on the next lines, up to a line "end".
+	 @throws IOException If the input ends before, or the board can't be read.
+	 */
+	private Board readBoard() throws IOException
+	{
+		StringBuilder text = new StringBuilder();
+		String line;
+		while ((line = input.readLine()) != null && !line.trim().equals("end"))
+		{
+			text.append(line).append('\n');
+		}
+		if (line == null)
+		{
+			throw new IOException("Unfinished board.");
+		}
+		return Board.readFromStream(new ByteArrayInputStream(text.toString().getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 @param board A board.
+	 @param moveText A move as written by Board.moveText.
+	 @return The legal move of the board matching the text.
+	 */
+	private static Move parseMove(Board board, String moveText)
+	{
+		for (Move move : board.legalMoves())
+		{
+			if (board.moveText(move).equals(moveText))
+			{
+				return move;
+			}
+		}
+		throw new IllegalArgumentException("Illegal move: " + moveText);
+	}
+
+	/**
+	 Starts searching the current position.
+
+	 @param words The words of the "go" command.
+	 */
+	private void go(List<String> words)
+	{
+		if (board == null)
+		{
+			throw new IllegalArgumentException("No position set.");
+		}
+
+		int depth = 0;
+		long time = 0;
+		long nodes = 0;
+		boolean infinite = false;
+		for (int i = 1; i < words.size(); i++)
+		{
+			switch (words.get(i))
+			{
+				case "depth":
+					depth = Integer.parseInt(value(words, ++i));
+					break;
+				case "movetime":
+					time = Long.parseLong(value(words, ++i));
+					break;
+				case "nodes":
+					nodes = Long.parseLong(value(words, ++i));
+					break;
+				case "infinite":
+					infinite = true;
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown limit: " + words.get(i));
+			}
+		}
+
+		// Without any limit, search like a game would.
+		if (depth == 0 && time == 0 && nodes == 0 && !infinite)
+		{
+			time = NegamaxPlayer.MOVE_TIME;
+			nodes = NegamaxPlayer.MOVE_NODES;
+			depth = time == 0 && nodes == 0 ? NegamaxPlayer.MAX_DEPTH : 0;
+		}
+		int maxDepth = depth > 0 ? depth : TranspositionTable.MAX_DEPTH;
+
+		SearchBudget searchBudget = new SearchBudget(time, nodes);
+		Board searchedBoard = board.cloneBoard();
+		budget = searchBudget;
+		endlessSearch = !searchBudget.isLimited() && maxDepth >= TranspositionTable.MAX_DEPTH;
+		searchThread = new Thread(() -> search(searchedBoard, maxDepth, searchBudget), "Thud engine search");
+		searchThread.start();
+	}
+
+	/**
+	 @param words The words of a command.
+	 @param index The index of the value of a parameter.
+	 @return The value.
+	 */
+	private static String value(List<String> words, int index)
+	{
+		if (index >= words.size())
+		{
+			throw new IllegalArgumentException("Missing value for " + words.get(index - 1));
+		}
+		return words.get(index);
+	}
+
+	/**
+	 Searches a position, reporting each iteration, then the best move.
+
+	 @param searchedBoard The position.
+	 @param maxDepth The depth of the last iteration.
+	 @param searchBudget The budget of the search.
+	 */
+	private void search(Board searchedBoard, int maxDepth, SearchBudget searchBudget)
+	{
+		long start = System.currentTimeMillis();
+		SearchListener listener = new SearchListener()
+		{
+			private long nodes = 0;
+
+			@Override
+			public void iterationCompleted(SearchStatistics statistics)
+			{
+				nodes += statistics.getNodes();
+				long time = System.currentTimeMillis() - start;
+				StringBuilder pv = new StringBuilder();
+				Board playedBoard = searchedBoard.cloneBoard();
+				for (Move move : statistics.getPrincipalVariation())
+				{
+					pv.append(' ').append(playedBoard.moveText(move));
+					playedBoard.makeMove(move);
+				}
+				send("info depth " + statistics.getDepth() + " score " + statistics.getScore() + " nodes " + nodes
+					+ " nps " + (time == 0 ? 0 : 1000 * nodes / time) + " time " + time + " pv" + pv);
+			}
+
+			@Override
+			public void searchCompleted(SearchStatistics statistics)
+			{
+			}
+		};
+
+		player.addSearchListener(listener);
+		try
+		{
+			Move bestMove = player.search(searchedBoard, maxDepth, searchBudget);
+			send("bestmove " + (bestMove == null ? "none" : searchedBoard.moveText(bestMove)));
+		} catch (RuntimeException ex)
+		{
+			// The controller still gets an answer.
+			send("info string The search failed: " + ex);
+			send("bestmove none");
+		} finally
+		{
+			player.removeSearchListener(listener);
+		}
+	}
+
+	/**
+	 Stops the current search, if any, and waits for its best move.
+	 */
+	private void stop()
+	{
+		if (searchThread == null)
+		{
+			return;
+		}
+		budget.abort();
+		waitForSearch();
+	}
+
+	/**
+	 Waits for the end of the current search, if any.
+	 */
+	private void waitForSearch()
+	{
+		if (searchThread == null)
+		{
+			return;
+		}
+		try
+		{
+			searchThread.join();
+		} catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+		}
+		searchThread = null;
+		budget = null;
+		endlessSearch = false;
+	}
+
+	/**
+	 @param line A line to write, then flush.
+	 */
+	private void send(String line)
+	{
+		synchronized (output)
+		{
+			output.println(line);
+			output.flush();
+		}
+	}
+
+	public static void main(String[] args) throws IOException
+	{
+		new TextEngine(System.in, System.out).run();
+	}
+}
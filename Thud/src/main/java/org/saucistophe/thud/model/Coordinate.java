@@ -1,15 +1,19 @@
 package org.saucistophe.thud.model;
 
-import java.awt.Dimension;
+import java.io.Serializable;
 
 /**
  A convenient class that implements a 2D integer vector, and makes it Comparable, so
- that it can be used in a Set.
+ that it can be used in a Set. It doesn't depend on AWT, so that the model can
+ be used without a display.
  */
-public class Coordinate extends Dimension implements Comparable<Coordinate>
+public class Coordinate implements Comparable<Coordinate>, Serializable
 {
 	private static final long serialVersionUID = 1L;
 
+	public int width;
+	public int height;
+
 	public static final Coordinate[] directions =
 	{
 		new Coordinate(1, 0),
@@ -33,4 +37,27 @@ public class Coordinate extends Dimension implements Comparable<Coordinate>
 	{
 		return (15 * (width - o.width) + (height - o.height));
 	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (!(obj instanceof Coordinate))
+		{
+			return false;
+		}
+		Coordinate other = (Coordinate) obj;
+		return width == other.width && height == other.height;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return 31 * width + height;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "(" + width + ", " + height + ")";
+	}
 }
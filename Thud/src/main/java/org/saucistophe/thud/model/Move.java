@@ -0,0 +1,184 @@
+package org.saucistophe.thud.model;
+
+/**
+ A move, as played on a board: the moving piece, its destination, and what it
+ captures. It holds everything needed to undo it, so that a single board can
+ be explored by applying and reverting moves.
+ */
+public final class Move
+{
+	/**
+	 The square index of the moving piece.
+	 */
+	public final int origin;
+
+	/**
+	 The square index of the destination.
+	 */
+	public final int destination;
+
+	/**
+	 The dwarves captured by a troll, as a bit mask of the directions (as
+	 indexed in Coordinate.directions) going from the destination to the victims.
+	 */
+	public final int capturedDwarves;
+
+	/**
+	 True if the move is a dwarf hurled onto a troll, capturing it.
+	 */
+	public final boolean hurl;
+
+	/**
+	 True if the move is a troll shoving.
+	 */
+	public final boolean shove;
+
+	public Move(int origin, int destination, int capturedDwarves, boolean hurl, boolean shove)
+	{
+		this.origin = origin;
+		this.destination = destination;
+		this.capturedDwarves = capturedDwarves;
+		this.hurl = hurl;
+		this.shove = shove;
+	}
+
+	/**
+	 @return The move packed in an int: the origin, the destination and the
+	 captured dwarves on 8 bits each, then the hurl and shove flags. As the
+	 top-left square is never playable, no move is packed as 0.
+	 */
+	public int pack()
+	{
+		return pack(origin, destination, capturedDwarves, hurl, shove);
+	}
+
+	/**
+	 Packs a move without creating it.
+
+	 @param origin The square index of the moving piece.
+	 @param destination The square index of the destination.
+	 @param capturedDwarves The dwarves captured by a troll, as a bit mask of directions.
+	 @param hurl True if the move is a dwarf hurled onto a troll.
+	 @param shove True if the move is a troll shoving.
+	 @return The packed move, as pack() would return it.
+	 */
+	public static int pack(int origin, int destination, int capturedDwarves, boolean hurl, boolean shove)
+	{
+		return origin
+			| destination << 8
+			| capturedDwarves << 16
+			| (hurl ? 1 << 24 : 0)
+			| (shove ? 1 << 25 : 0);
+	}
+
+	/**
+	 @param packedMove A move packed by pack().
+	 @return The corresponding move.
+	 */
+	public static Move unpack(int packedMove)
+	{
+		return new Move(origin(packedMove),
+			destination(packedMove),
+			capturedDwarves(packedMove),
+			isHurl(packedMove),
+			isShove(packedMove));
+	}
+
+	/**
+	 @param packedMove A move packed by pack().
+	 @return The square index of the moving piece.
+	 */
+	public static int origin(int packedMove)
+	{
+		return packedMove & 0xFF;
+	}
+
+	/**
+	 @param packedMove A move packed by pack().
+	 @return The square index of the destination.
+	 */
+	public static int destination(int packedMove)
+	{
+		return (packedMove >>> 8) & 0xFF;
+	}
+
+	/**
+	 @param packedMove A move packed by pack().
+	 @return The dwarves captured by a troll, as a bit mask of directions.
+	 */
+	public static int capturedDwarves(int packedMove)
+	{
+		return (packedMove >>> 16) & 0xFF;
+	}
+
+	/**
+	 @param packedMove A move packed by pack().
+	 @return True if the move is a dwarf hurled onto a troll.
+	 */
+	public static boolean isHurl(int packedMove)
+	{
+		return (packedMove & 1 << 24) != 0;
+	}
+
+	/**
+	 @param packedMove A move packed by pack().
+	 @return True if the move is a troll shoving.
+	 */
+	public static boolean isShove(int packedMove)
+	{
+		return (packedMove & 1 << 25) != 0;
+	}
+
+	/**
+	 @return The number of pieces captured by this move.
+	 */
+	public int numberOfCaptures()
+	{
+		return Integer.bitCount(capturedDwarves) + (hurl ? 1 : 0);
+	}
+
+	/**
+	 @param packedMove A move packed by pack().
+	 @return The number of pieces captured by this move.
+	 */
+	public static int numberOfCaptures(int packedMove)
+	{
+		return Integer.bitCount(capturedDwarves(packedMove)) + (isHurl(packedMove) ? 1 : 0);
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (!(obj instanceof Move))
+		{
+			return false;
+		}
+		Move other = (Move) obj;
+		return origin == other.origin
+			&& destination == other.destination
+			&& capturedDwarves == other.capturedDwarves
+			&& hurl == other.hurl
+			&& shove == other.shove;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		int hash = 5;
+		hash = 59 * hash + origin;
+		hash = 59 * hash + destination;
+		hash = 59 * hash + capturedDwarves;
+		hash = 59 * hash + (hurl ? 1 : 0);
+		hash = 59 * hash + (shove ? 1 : 0);
+		return hash;
+	}
+
+	@Override
+	public String toString()
+	{
+		return origin + "-" + destination
+			+ (hurl ? "x" : "")
+			+ (capturedDwarves != 0 ? "x" + Integer.toBinaryString(capturedDwarves) : "")
+			+ (shove ? "s" : "");
+	}
+}
@@ -0,0 +1,64 @@
+package org.saucistophe.thud.model;
+
+import java.util.Arrays;
+
+/**
+ A list of moves packed by Move.pack(), meant to be reused: once it has grown
+ to the largest number of moves met, filling it again allocates nothing.
+ */
+public final class MoveList
+{
+	private int[] moves;
+	private int size = 0;
+
+	public MoveList()
+	{
+		moves = new int[128];
+	}
+
+	/**
+	 Removes all the moves, keeping the memory.
+	 */
+	public void clear()
+	{
+		size = 0;
+	}
+
+	/**
+	 @param packedMove The move to add at the end of the list.
+	 */
+	public void add(int packedMove)
+	{
+		if (size == moves.length)
+		{
+			moves = Arrays.copyOf(moves, 2 * size);
+		}
+		moves[size++] = packedMove;
+	}
+
+	/**
+	 @return The number of moves.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 @param index The index of a move, below size().
+	 @return The packed move.
+	 */
+	public int get(int index)
+	{
+		return moves[index];
+	}
+
+	/**
+	 @param index The index of a move, below size().
+	 @param packedMove The packed move to put there.
+	 */
+	public void set(int index, int packedMove)
+	{
+		moves[index] = packedMove;
+	}
+}
@@ -10,22 +10,30 @@ import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import org.saucistophe.thud.model.Coordinate;
+import org.saucistophe.thud.model.Move;
+import org.saucistophe.thud.model.MoveList;
 import org.saucistophe.thud.model.Piece;
 import static org.saucistophe.thud.model.Piece.DWARF;
 import static org.saucistophe.thud.model.Piece.EMPTY;
 import static org.saucistophe.thud.model.Piece.OUT;
+import static org.saucistophe.thud.model.Piece.ROCK;
 import static org.saucistophe.thud.model.Piece.TROLL;
 import org.saucistophe.utils.Constants;
 
 /**
- The board corresponds to a state of the game, and contains an 2D array of
- pieces. This class contains AI methods and everything pertaining to game
+ The board corresponds to a state of the game, and contains the pieces as
+ bitsets. This class contains AI methods and everything pertaining to game
  moves. Kind of a god object, but hey, what the heck.
+
+ The square (x, y) is stored as the bit number x * height + y, so that the
+ squares are iterated column by column, as they used to be.
  */
 public abstract class Board implements Cloneable
 {
@@ -34,25 +42,91 @@ public abstract class Board implements Cloneable
 	 */
 	public static int INFINITY = Integer.MAX_VALUE - 5;
 
+	/**
+	 The maximum width or height of a board.
+	 */
+	public static final int MAX_SIZE = 15;
+
+	/**
+	 The random keys of each piece on each square, and of the playing side, whose
+	 XOR gives the Zobrist key of a position. Generated from a fixed seed, so that
+	 keys are the same from one run to another.
+	 */
+	static final long[] DWARF_KEYS, TROLL_KEYS;
+	private static final long TROLLS_TURN_KEY;
+
+	static
+	{
+		Random random = new Random(0x7468756421L);
+		DWARF_KEYS = random.longs(MAX_SIZE * MAX_SIZE).toArray();
+		TROLL_KEYS = random.longs(MAX_SIZE * MAX_SIZE).toArray();
+		TROLLS_TURN_KEY = random.nextLong();
+	}
+
 	/**
 	 This class' logger.
 	 */
 	public static Logger LOGGER = Logger.getLogger(Board.class.getName());
 
 	/**
-	 The grid of pieces.
+	 The shape of the board: its dimensions, playable squares, and the
+	 neighbours and rays of each square. Shared by all the boards of this shape.
 	 */
-	public Piece squares[][];
+	private BoardGeometry geometry;
 
 	/**
-	 The current playing side, true if the dwarves are playing.
+	 The squares holding a rock.
+	 This bitset never changes once the board is read, and is thus shared between clones.
 	 */
-	public boolean dwarvesTurn;
+	private long[] rocks;
+
+	/**
+	 The number of directions.
+	 */
+	protected static final int DIRECTIONS = BoardGeometry.DIRECTIONS;
+
+	/**
+	 The squares holding a dwarf.
+	 */
+	private long[] dwarves;
+
+	/**
+	 The squares holding a troll.
+	 */
+	private long[] trolls;
+
+	/**
+	 The Zobrist key of the pieces, updated each time a piece is added or removed.
+	 */
+	private long piecesKey;
+
+	/**
+	 The symmetries of the board's shape and rocks, shared between clones, and
+	 the Zobrist keys of the pieces as seen through each of them but the
+	 identity, updated along with piecesKey.
+	 */
+	private BoardSymmetries symmetries;
+	private long[] symmetricKeys;
 
 	/**
-	 A cache of the actually playable pieces, to avoid non-playable squares.
+	 The evaluation terms updated each time a piece is added or removed: the
+	 number of dwarves and trolls, and for each side, the number of pieces of
+	 the same side around each piece, summed, i.e. twice their adjacent pairs.
 	 */
-	private static List<Coordinate> piecesCache = null;
+	private int dwarfCount, trollCount, dwarfNeighbours, trollNeighbours;
+
+	/**
+	 The squares of the dwarves and of the trolls, in no particular order, the
+	 first dwarfCount and trollCount entries being used, and the slot of each
+	 piece in these lists, by square. They are kept up to date with the
+	 bitsets, so that the pieces of a side can be visited without scanning the board.
+	 */
+	private int[] dwarfSquares, trollSquares, pieceSlots;
+
+	/**
+	 The current playing side, true if the dwarves are playing.
+	 */
+	public boolean dwarvesTurn;
 
 	/**
 	 Returns a set containing each possible move for the specified piece.
@@ -64,6 +138,27 @@ public abstract class Board implements Cloneable
 	 */
 	public abstract List<Coordinate> validMoves(int x, int y, List<Coordinate> trollShovings);
 
+	/**
+	 Generates the moves the playing side can make, without any allocation once
+	 the list is large enough.
+
+	 @param moves The list to fill with the packed moves, replacing its content.
+	 */
+	public abstract void generateMoves(MoveList moves);
+
+	/**
+	 Generates the moves of the playing side that capture pieces: the trolls'
+	 captures and shoves, and the dwarves' hurls.
+
+	 @param moves The list to fill with the packed moves, replacing its content.
+	 */
+	public abstract void generateCaptures(MoveList moves);
+
+	/**
+	 @return The number of squares the pieces of the playing side can move to, counted once per piece.
+	 */
+	protected abstract int countDestinations();
+
 	/**
 	 Clones the current board.
 
@@ -86,24 +181,422 @@ public abstract class Board implements Cloneable
 
 	public void set(Board thatBoard)
 	{
-		this.squares = Arrays.stream(thatBoard.squares).map(x -> x.clone()).toArray(Piece[][]::new);
+		this.geometry = thatBoard.geometry;
+		this.rocks = thatBoard.rocks;
+		this.dwarves = thatBoard.dwarves.clone();
+		this.trolls = thatBoard.trolls.clone();
+		this.piecesKey = thatBoard.piecesKey;
+		this.symmetries = thatBoard.symmetries;
+		this.symmetricKeys = thatBoard.symmetricKeys.clone();
+		this.dwarfCount = thatBoard.dwarfCount;
+		this.trollCount = thatBoard.trollCount;
+		this.dwarfSquares = thatBoard.dwarfSquares.clone();
+		this.trollSquares = thatBoard.trollSquares.clone();
+		this.pieceSlots = thatBoard.pieceSlots.clone();
+		this.dwarfNeighbours = thatBoard.dwarfNeighbours;
+		this.trollNeighbours = thatBoard.trollNeighbours;
 		this.dwarvesTurn = thatBoard.dwarvesTurn;
 	}
 
 	/**
-	 @return The width of the board, as infered from the arrays lengths.
+	 Initializes an empty board of the given shape.
+
+	 @param geometry The shape of the board.
+	 @param rocks The squares holding a rock.
+	 */
+	private void initialize(BoardGeometry geometry, long[] rocks)
+	{
+		this.geometry = geometry;
+		this.rocks = rocks;
+		symmetries = geometry.symmetries(rocks);
+		symmetricKeys = new long[symmetries.count() - 1];
+		dwarves = new long[rocks.length];
+		trolls = new long[rocks.length];
+		dwarfSquares = new int[geometry.getSquareCount()];
+		trollSquares = new int[geometry.getSquareCount()];
+		pieceSlots = new int[geometry.getWidth() * geometry.getHeight()];
+	}
+
+	/**
+	 @return The shape of the board.
+	 */
+	public BoardGeometry getGeometry()
+	{
+		return geometry;
+	}
+
+	/**
+	 @return The squares holding a rock, as a bitset. Must not be changed.
+	 */
+	long[] rocks()
+	{
+		return rocks;
+	}
+
+	/**
+	 Puts dwarves and trolls on the given squares, in place of the current ones.
+
+	 @param dwarfIndexes The squares of the dwarves, the first dwarfCount being used.
+	 @param dwarfCount The number of dwarves.
+	 @param trollIndexes The squares of the trolls, the first trollCount being used.
+	 @param trollCount The number of trolls.
+	 */
+	void setPieces(int[] dwarfIndexes, int dwarfCount, int[] trollIndexes, int trollCount)
+	{
+		while (this.dwarfCount > 0)
+		{
+			removePiece(dwarves, dwarfSquares[this.dwarfCount - 1]);
+		}
+		while (this.trollCount > 0)
+		{
+			removePiece(trolls, trollSquares[this.trollCount - 1]);
+		}
+		for (int i = 0; i < dwarfCount; i++)
+		{
+			addPiece(dwarves, dwarfIndexes[i]);
+		}
+		for (int i = 0; i < trollCount; i++)
+		{
+			addPiece(trolls, trollIndexes[i]);
+		}
+	}
+
+	/**
+	 @param index The index of a square.
+	 @param direction The index of a direction in Coordinate.directions.
+	 @return The index of the next playable square in this direction, or -1 if there's none.
+	 */
+	protected int neighbour(int index, int direction)
+	{
+		return geometry.neighbour(index, direction);
+	}
+
+	/**
+	 @param index The index of a square.
+	 @param direction The index of a direction in Coordinate.directions.
+	 @return The playable squares met going in this direction, nearest first. Must not be changed.
+	 */
+	protected int[] ray(int index, int direction)
+	{
+		return geometry.ray(index, direction);
+	}
+
+	/**
+	 @param direction The index of a direction in Coordinate.directions.
+	 @return The index of the opposite direction.
+	 */
+	protected static int opposite(int direction)
+	{
+		return (direction + DIRECTIONS / 2) % DIRECTIONS;
+	}
+
+	/**
+	 @param index The index of a playable square.
+	 @return True if the square holds a dwarf.
+	 */
+	protected boolean hasDwarf(int index)
+	{
+		return testBit(dwarves, index);
+	}
+
+	/**
+	 @param index The index of a playable square.
+	 @return True if the square holds a troll.
+	 */
+	protected boolean hasTroll(int index)
+	{
+		return testBit(trolls, index);
+	}
+
+	/**
+	 @param index The index of a playable square.
+	 @return True if the square holds no piece nor rock.
+	 */
+	protected boolean isEmpty(int index)
+	{
+		return !testBit(dwarves, index) && !testBit(trolls, index) && !testBit(rocks, index);
+	}
+
+	/**
+	 @return The bitset of the pieces of the playing side. Must not be changed.
+	 */
+	protected long[] playingPieces()
+	{
+		return dwarvesTurn ? dwarves : trolls;
+	}
+
+	/**
+	 @return The width of the board.
 	 */
 	public int getWidth()
 	{
-		return squares.length;
+		return geometry.getWidth();
 	}
 
 	/**
-	 @return The height of the board, as infered from the arrays lengths.
+	 @return The height of the board.
 	 */
 	public int getHeight()
 	{
-		return squares[0].length;
+		return geometry.getHeight();
+	}
+
+	/**
+	 @param x The X location of the square.
+	 @param y The Y location of the square.
+	 @return The index of the square's bit in the bitsets.
+	 */
+	public int squareIndex(int x, int y)
+	{
+		return geometry.squareIndex(x, y);
+	}
+
+	/**
+	 @param index The index of a square.
+	 @return The X location of the square.
+	 */
+	public int squareX(int index)
+	{
+		return geometry.squareX(index);
+	}
+
+	/**
+	 @param index The index of a square.
+	 @return The Y location of the square.
+	 */
+	public int squareY(int index)
+	{
+		return geometry.squareY(index);
+	}
+
+	/**
+	 @param bitset The bitset to check.
+	 @param index The index of the bit to check.
+	 @return True if the bit is set.
+	 */
+	static boolean testBit(long[] bitset, int index)
+	{
+		return (bitset[index >>> 6] & (1L << index)) != 0;
+	}
+
+	/**
+	 @param bitset The bitset to change.
+	 @param index The index of the bit to set.
+	 */
+	private static void setBit(long[] bitset, int index)
+	{
+		bitset[index >>> 6] |= 1L << index;
+	}
+
+	/**
+	 @param bitset The bitset to change.
+	 @param index The index of the bit to clear.
+	 */
+	private static void clearBit(long[] bitset, int index)
+	{
+		bitset[index >>> 6] &= ~(1L << index);
+	}
+
+	/**
+	 Puts a dwarf or a troll on a square, keeping the Zobrist key and the evaluation terms up to date.
+
+	 @param pieces The bitset of dwarves or trolls.
+	 @param index The index of the square.
+	 */
+	private void addPiece(long[] pieces, int index)
+	{
+		if (!testBit(pieces, index))
+		{
+			setBit(pieces, index);
+			if (pieces == dwarves)
+			{
+				piecesKey ^= DWARF_KEYS[index];
+				updateSymmetricKeys(symmetries.dwarfKeys, index);
+				pieceSlots[index] = dwarfCount;
+				dwarfSquares[dwarfCount++] = index;
+				dwarfNeighbours += 2 * countNeighbours(dwarves, index);
+			}
+			else
+			{
+				piecesKey ^= TROLL_KEYS[index];
+				updateSymmetricKeys(symmetries.trollKeys, index);
+				pieceSlots[index] = trollCount;
+				trollSquares[trollCount++] = index;
+				trollNeighbours += 2 * countNeighbours(trolls, index);
+			}
+		}
+	}
+
+	/**
+	 Adds or removes a piece from the keys of the symmetric positions.
+
+	 @param keys The keys of the piece on each square, through each symmetry but the identity.
+	 @param index The index of the square.
+	 */
+	private void updateSymmetricKeys(long[] keys, int index)
+	{
+		int offset = index * symmetricKeys.length;
+		for (int symmetry = 0; symmetry < symmetricKeys.length; symmetry++)
+		{
+			symmetricKeys[symmetry] ^= keys[offset + symmetry];
+		}
+	}
+
+	/**
+	 Removes a dwarf or a troll from a square, keeping the Zobrist key and the evaluation terms up to date.
+
+	 @param pieces The bitset of dwarves or trolls.
+	 @param index The index of the square.
+	 */
+	private void removePiece(long[] pieces, int index)
+	{
+		if (testBit(pieces, index))
+		{
+			clearBit(pieces, index);
+			if (pieces == dwarves)
+			{
+				piecesKey ^= DWARF_KEYS[index];
+				updateSymmetricKeys(symmetries.dwarfKeys, index);
+				removeFromList(dwarfSquares, --dwarfCount, index);
+				dwarfNeighbours -= 2 * countNeighbours(dwarves, index);
+			}
+			else
+			{
+				piecesKey ^= TROLL_KEYS[index];
+				updateSymmetricKeys(symmetries.trollKeys, index);
+				removeFromList(trollSquares, --trollCount, index);
+				trollNeighbours -= 2 * countNeighbours(trolls, index);
+			}
+		}
+	}
+
+	/**
+	 Removes a piece from a list, by moving the last piece of the list in its slot.
+
+	 @param squares The squares of the dwarves or of the trolls.
+	 @param last The slot of the last piece of the list, which becomes free.
+	 @param index The square of the removed piece.
+	 */
+	private void removeFromList(int[] squares, int last, int index)
+	{
+		int slot = pieceSlots[index];
+		int lastSquare = squares[last];
+		squares[slot] = lastSquare;
+		pieceSlots[lastSquare] = slot;
+	}
+
+	/**
+	 Moves a dwarf or a troll to an empty square. The piece keeps its slot in its
+	 list, so that the pieces keep their order when the move is reverted.
+
+	 @param pieces The bitset of dwarves or trolls.
+	 @param origin The square of the piece.
+	 @param destination The empty square it goes to.
+	 */
+	private void movePiece(long[] pieces, int origin, int destination)
+	{
+		int slot = pieceSlots[origin];
+		removePiece(pieces, origin);
+		addPiece(pieces, destination);
+
+		// Put the piece back in its slot, in place of the last one.
+		int[] squares = pieces == dwarves ? dwarfSquares : trollSquares;
+		int last = pieceSlots[destination];
+		squares[last] = squares[slot];
+		pieceSlots[squares[slot]] = last;
+		squares[slot] = destination;
+		pieceSlots[destination] = slot;
+	}
+
+	/**
+	 @param piece DWARF or TROLL.
+	 @param slot A slot in the list of pieces of this type, below numberOf(piece).
+	 @return The square of the piece in the slot.
+	 */
+	protected int pieceSquare(Piece piece, int slot)
+	{
+		return piece == DWARF ? dwarfSquares[slot] : trollSquares[slot];
+	}
+
+	/**
+	 @param pieces The bitset of dwarves or trolls.
+	 @param index The index of a square.
+	 @return The number of pieces of the bitset on the squares around.
+	 */
+	private int countNeighbours(long[] pieces, int index)
+	{
+		int result = 0;
+		for (int direction = 0; direction < DIRECTIONS; direction++)
+		{
+			int neighbour = neighbour(index, direction);
+			if (neighbour != -1 && testBit(pieces, neighbour))
+			{
+				result++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 @return The Zobrist key of the position, i.e. of the pieces and the playing side.
+	 */
+	public long getZobristKey()
+	{
+		return dwarvesTurn ? piecesKey : piecesKey ^ TROLLS_TURN_KEY;
+	}
+
+	/**
+	 @return The symmetry turning the position into its canonical form, i.e.
+	 the symmetric position of lowest key, 0 being the identity.
+	 */
+	public int getCanonicalSymmetry()
+	{
+		int result = 0;
+		long lowestKey = piecesKey;
+		for (int symmetry = 0; symmetry < symmetricKeys.length; symmetry++)
+		{
+			if (symmetricKeys[symmetry] < lowestKey)
+			{
+				lowestKey = symmetricKeys[symmetry];
+				result = symmetry + 1;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 @return The Zobrist key of the position's canonical form, the same for
+	 all the positions symmetric to each other through the board's rotations
+	 and reflections.
+	 */
+	public long getCanonicalKey()
+	{
+		long result = piecesKey;
+		for (long key : symmetricKeys)
+		{
+			result = Math.min(result, key);
+		}
+		return dwarvesTurn ? result : result ^ TROLLS_TURN_KEY;
+	}
+
+	/**
+	 @param packedMove A move of this position, or 0.
+	 @param symmetry A symmetry, as returned by getCanonicalSymmetry().
+	 @return The same move on the position's image by the symmetry, or 0.
+	 */
+	public int transformMove(int packedMove, int symmetry)
+	{
+		return symmetries.transform(packedMove, symmetry, false);
+	}
+
+	/**
+	 @param packedMove A move of the position's image by the symmetry, or 0.
+	 @param symmetry A symmetry, as returned by getCanonicalSymmetry().
+	 @return The same move on this position, or 0.
+	 */
+	public int inverseTransformMove(int packedMove, int symmetry)
+	{
+		return symmetries.transform(packedMove, symmetry, true);
 	}
 
 	/**
@@ -116,7 +609,14 @@ public abstract class Board implements Cloneable
 	 */
 	public boolean isNearADwarf(int x, int y)
 	{
-		return !getNearby(DWARF, x, y).isEmpty();
+		for (Coordinate direction : Coordinate.directions)
+		{
+			if (isPiece(DWARF, x + direction.width, y + direction.height))
+			{
+				return true;
+			}
+		}
+		return false;
 	}
 
 	/**
@@ -126,16 +626,7 @@ public abstract class Board implements Cloneable
 	 */
 	public boolean isInsideBounds(int x, int y)
 	{
-		// If the square is out of the physical board's dimensions:
-		if (x < 0 || y < 0 || x >= getWidth() || y >= getHeight())
-		{
-			return false;
-		}
-		else
-		{
-			// If the square is marked as out.
-			return squares[x][y] != OUT;
-		}
+		return geometry.isPlayable(x, y);
 	}
 
 	/**
@@ -147,6 +638,37 @@ public abstract class Board implements Cloneable
 		return isInsideBounds(coordinate.width, coordinate.height);
 	}
 
+	/**
+	 Checks the content of a square, without failing when outside the board.
+
+	 @param piece The piece to look for, DWARF, TROLL, ROCK or EMPTY.
+	 @param x The X location of the square to check.
+	 @param y The Y location of the square to check.
+	 @return True if the square is inside the board and holds the given piece.
+	 */
+	public boolean isPiece(Piece piece, int x, int y)
+	{
+		if (!isInsideBounds(x, y))
+		{
+			return false;
+		}
+
+		int index = squareIndex(x, y);
+		switch (piece)
+		{
+			case DWARF:
+				return testBit(dwarves, index);
+			case TROLL:
+				return testBit(trolls, index);
+			case ROCK:
+				return testBit(rocks, index);
+			case EMPTY:
+				return !testBit(dwarves, index) && !testBit(trolls, index) && !testBit(rocks, index);
+			default:
+				return false;
+		}
+	}
+
 	/**
 	 Moves a piece to a square.
 
@@ -158,10 +680,16 @@ public abstract class Board implements Cloneable
 	 */
 	public List<Coordinate> move(int x1, int y1, int x2, int y2)
 	{
-		boolean isTroll = squares[x1][y1] == TROLL;
+		int origin = squareIndex(x1, y1);
+		int destination = squareIndex(x2, y2);
+		boolean isTroll = testBit(trolls, origin);
 
-		squares[x2][y2] = squares[x1][y1];
-		squares[x1][y1] = EMPTY;
+		// The moving piece replaces whatever is on the destination, i.e. a hurled troll.
+		removePiece(dwarves, destination);
+		removePiece(trolls, destination);
+		long[] movingPieces = isTroll ? trolls : dwarves;
+		removePiece(movingPieces, origin);
+		addPiece(movingPieces, destination);
 
 		// Change the turn.
 		dwarvesTurn = !dwarvesTurn;
@@ -182,13 +710,15 @@ public abstract class Board implements Cloneable
 	 */
 	public List<Coordinate> getNearby(Piece pieceType, int x, int y)
 	{
-		return Arrays.stream(Coordinate.directions)
-			.map(direction -> new Coordinate(x + direction.width, y + direction.height))
-			// Must be on the board
-			.filter(this::isInsideBounds)
-			// Must be a dwarf
-			.filter(square -> getPiece(square) == pieceType)
-			.collect(Collectors.toList());
+		List<Coordinate> result = new ArrayList<>();
+		for (Coordinate direction : Coordinate.directions)
+		{
+			if (isPiece(pieceType, x + direction.width, y + direction.height))
+			{
+				result.add(new Coordinate(x + direction.width, y + direction.height));
+			}
+		}
+		return result;
 	}
 
 	/**
@@ -199,63 +729,229 @@ public abstract class Board implements Cloneable
 	 */
 	public int numberOf(Piece piece)
 	{
-		return (int) getPiecesStream(piece).count();
+		// Pieces are counted as they move.
+		if (piece == DWARF)
+		{
+			return dwarfCount;
+		}
+		else if (piece == TROLL)
+		{
+			return trollCount;
+		}
+
+		int result = 0;
+		for (long word : bitsetOf(piece))
+		{
+			result += Long.bitCount(word);
+		}
+		return result;
+	}
+
+	/**
+	 @param piece DWARF or TROLL.
+	 @return The number of pieces of this type around each piece of this type, summed.
+	 */
+	public int clustering(Piece piece)
+	{
+		return piece == DWARF ? dwarfNeighbours : trollNeighbours;
+	}
+
+	/**
+	 @param piece DWARF or TROLL.
+	 @return The number of moves the pieces of this type can make, which is 0 if it's not their side's turn.
+	 */
+	public int mobility(Piece piece)
+	{
+		return (piece == DWARF) == dwarvesTurn ? countDestinations() : 0;
+	}
+
+	/**
+	 @return The list of the moves the playing side can make.
+	 */
+	public List<Move> legalMoves()
+	{
+		MoveList moves = new MoveList();
+		generateMoves(moves);
+
+		List<Move> result = new ArrayList<>(moves.size());
+		for (int i = 0; i < moves.size(); i++)
+		{
+			result.add(Move.unpack(moves.get(i)));
+		}
+		return result;
 	}
 
 	/**
 	 @return A list of the possible boards after moving.
 	 */
 	public List<Board> childrenBoards()
-	{// TODO : for NegaScout, order moves to get the more interesting first.
+	{
 		List<Board> result = new ArrayList<>();
-		Stream<Coordinate> piecesToMove = getPiecesStream(dwarvesTurn ? DWARF : TROLL);
+		for (Move move : legalMoves())
+		{
+			// Create an imaginary board from the move.
+			Board temporaryBoard = this.cloneBoard();
+			temporaryBoard.makeMove(move);
+			result.add(temporaryBoard);
+		}
+		return result;
+	}
 
-		// Iterate over pieces
-		piecesToMove.forEach(pieceToMove ->
+	/**
+	 @param index The index of a playable square.
+	 @return The dwarves around the square, as a bit mask of the directions leading to them.
+	 */
+	protected int nearbyDwarves(int index)
+	{
+		int result = 0;
+		for (int direction = 0; direction < DIRECTIONS; direction++)
+		{
+			int neighbour = neighbour(index, direction);
+			if (neighbour != -1 && testBit(dwarves, neighbour))
 			{
-				// Iterate over the piece's possible destinations
-				List<Coordinate> trollShovings = null;
-				if (!dwarvesTurn)
+				result |= 1 << direction;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 @param index The index of a square.
+	 @return The name of the square: its column as a letter, then its line as a number, counted from the top-left corner, e.g. "a1".
+	 */
+	public String squareName(int index)
+	{
+		return (char) ('a' + squareX(index)) + Integer.toString(squareY(index) + 1);
+	}
+
+	/**
+	 @param move A move on this board.
+	 @return A readable description of the move: the origin, the destination, then each captured piece, e.g. "g7-g8xf9".
+	 */
+	public String moveText(Move move)
+	{
+		StringBuilder result = new StringBuilder(squareName(move.origin)).append('-').append(squareName(move.destination));
+		if (move.hurl)
+		{
+			result.append('x').append(squareName(move.destination));
+		}
+		for (int victims = move.capturedDwarves; victims != 0; victims &= victims - 1)
+		{
+			result.append('x').append(squareName(neighbour(move.destination, Integer.numberOfTrailingZeros(victims))));
+		}
+		return result.toString();
+	}
+
+	/**
+	 Applies a move in place, and switches turns.
+
+	 @param move The move to apply, as generated on this board.
+	 */
+	public void makeMove(Move move)
+	{
+		makeMove(move.pack());
+	}
+
+	/**
+	 Applies a packed move in place, and switches turns.
+
+	 @param packedMove The move to apply, as generated on this board.
+	 */
+	public void makeMove(int packedMove)
+	{
+		int destination = Move.destination(packedMove);
+		if (Move.isHurl(packedMove))
+		{
+			removePiece(trolls, destination);
+		}
+		movePiece(dwarvesTurn ? dwarves : trolls, Move.origin(packedMove), destination);
+		for (int victims = Move.capturedDwarves(packedMove); victims != 0; victims &= victims - 1)
+		{
+			removePiece(dwarves, neighbour(destination, Integer.numberOfTrailingZeros(victims)));
+		}
+
+		dwarvesTurn = !dwarvesTurn;
+	}
+
+	/**
+	 Reverts a move applied by makeMove, and switches turns back.
+
+	 @param move The last move applied on this board.
+	 */
+	public void unmakeMove(Move move)
+	{
+		unmakeMove(move.pack());
+	}
+
+	/**
+	 Reverts a packed move applied by makeMove, and switches turns back.
+
+	 @param packedMove The last move applied on this board.
+	 */
+	public void unmakeMove(int packedMove)
+	{
+		dwarvesTurn = !dwarvesTurn;
+
+		int destination = Move.destination(packedMove);
+		movePiece(dwarvesTurn ? dwarves : trolls, destination, Move.origin(packedMove));
+
+		if (Move.isHurl(packedMove))
+		{
+			addPiece(trolls, destination);
+		}
+		for (int victims = Move.capturedDwarves(packedMove); victims != 0; victims &= victims - 1)
+		{
+			addPiece(dwarves, neighbour(destination, Integer.numberOfTrailingZeros(victims)));
+		}
+	}
+
+	/**
+	 @param type The type of piece.
+	 @return The bitset of the squares holding this type of piece. Computed for EMPTY and OUT, so it must not be changed.
+	 */
+	private long[] bitsetOf(Piece type)
+	{
+		switch (type)
+		{
+			case DWARF:
+				return dwarves;
+			case TROLL:
+				return trolls;
+			case ROCK:
+				return rocks;
+			default:
+				long[] playable = geometry.playable();
+				long[] result = new long[playable.length];
+				for (int word = 0; word < result.length; word++)
 				{
-					trollShovings = new ArrayList<>();
+					long emptySquares = playable[word] & ~(dwarves[word] | trolls[word] | rocks[word]);
+					result[word] = type == EMPTY ? emptySquares : ~playable[word];
 				}
-
-				List<Coordinate> possibleMoves = validMoves(pieceToMove.width, pieceToMove.height, trollShovings);
-				for (Coordinate destination : possibleMoves)
+				// Clear the padding bits of the last word, which are not squares.
+				int lastBits = getWidth() * getHeight() % 64;
+				if (lastBits != 0)
 				{
-					// Create an imaginary board from the move.
-					Board temporaryBoard = this.cloneBoard();
-					List<Coordinate> dwarvesVictim = temporaryBoard.move(pieceToMove.width, pieceToMove.height, destination.width, destination.height);
-
-					// If there is no dwarf victim, simply effect the move.
-					if (dwarvesVictim == null || dwarvesVictim.isEmpty())
-					{
-						result.add(temporaryBoard);
-					}
-					else // If it's a troll shoving, for simplicity, kill all the dwarves.
-					{
-						if (trollShovings != null && trollShovings.contains(destination))
-						{
-							for (Coordinate victim : dwarvesVictim)
-							{
-								temporaryBoard.squares[victim.width][victim.height] = EMPTY;
-							}
-							result.add(temporaryBoard);
-						}
-						// If not, only one victim can be made, create a board for each one.
-						else
-						{
-							for (Coordinate victim : dwarvesVictim)
-							{
-								Board victimTemporaryBoard = temporaryBoard.cloneBoard();
-								victimTemporaryBoard.squares[victim.width][victim.height] = EMPTY;
-								result.add(victimTemporaryBoard);
-							}
-						}
-					}
+					result[result.length - 1] &= (1L << lastBits) - 1;
 				}
-			});
-		return result;
+				return result;
+		}
+	}
+
+	/**
+	 @param bitset A bitset.
+	 @return A stream of the indexes of the bits set.
+	 */
+	static IntStream setBits(long[] bitset)
+	{
+		IntStream.Builder builder = IntStream.builder();
+		for (int word = 0; word < bitset.length; word++)
+		{
+			for (long bits = bitset[word]; bits != 0; bits &= bits - 1)
+			{
+				builder.add(word * 64 + Long.numberOfTrailingZeros(bits));
+			}
+		}
+		return builder.build();
 	}
 
 	/**
@@ -266,8 +962,10 @@ public abstract class Board implements Cloneable
 	 */
 	public Stream<Coordinate> getPiecesStream(Piece type)
 	{
-		return piecesCache.stream()
-			.filter(coordinate -> squares[coordinate.width][coordinate.height] == type);
+		IntStream squares = type == DWARF || type == TROLL
+			? IntStream.range(0, numberOf(type)).map(slot -> pieceSquare(type, slot)).sorted()
+			: setBits(bitsetOf(type));
+		return squares.mapToObj(index -> new Coordinate(squareX(index), squareY(index)));
 	}
 
 	/**
@@ -319,7 +1017,7 @@ public abstract class Board implements Cloneable
 				else
 				{
 					// Otherwise, print the piece's code.
-					writer.print(squares[i][j].text);
+					writer.print(getPiece(i, j).text);
 				}
 			}
 		}
@@ -347,12 +1045,17 @@ public abstract class Board implements Cloneable
 		// Also get the number of lines.
 		int numberOfLines = lines.size();
 
-		// TODO add something to decide which class.
-		Board board = new RegularBoard();
-
-		// Create the relevant square board.
-		board.squares = new Piece[longestLine][numberOfLines];
+		if (longestLine > MAX_SIZE || numberOfLines > MAX_SIZE)
+		{
+			throw new IOException("Boards larger than " + MAX_SIZE + "x" + MAX_SIZE + " are not supported.");
+		}
 
+		// First read the shape of the board, the playable squares and the rocks.
+		int words = (longestLine * numberOfLines + 63) / 64;
+		long[] playable = new long[words];
+		long[] rocks = new long[words];
+		Piece playingSide = null;
+		Piece[][] pieces = new Piece[longestLine][numberOfLines];
 		int lineNumber = 0;
 		for (String line : lines)
 		{
@@ -361,32 +1064,58 @@ public abstract class Board implements Cloneable
 			for (char c : line.toCharArray())
 			{
 				// Turn the character to a piece.
-				board.squares[charNumber][lineNumber] = Piece.fromText("" + c);
+				Piece piece = Piece.fromText("" + c);
+
+				// The top-left corner holds the playing side, and is not playable.
+				if (charNumber == 0 && lineNumber == 0)
+				{
+					playingSide = piece;
+				}
+				else if (piece != null && piece != OUT)
+				{
+					int index = charNumber * numberOfLines + lineNumber;
+					setBit(playable, index);
+					if (piece == ROCK)
+					{
+						setBit(rocks, index);
+					}
+					pieces[charNumber][lineNumber] = piece;
+				}
 				charNumber++;
 			}
 			lineNumber++;
 		}
 
-		// Change the top-left corner to the playing side.
-		Piece playingSide = board.squares[0][0];
-		board.squares[0][0] = OUT;
-
-		// Set the board's attributes.
-		board.dwarvesTurn = playingSide != TROLL;
-
-		// Fill the cache of playable pieces.
-		piecesCache = new ArrayList<>();
-		for (int i = 0; i < board.getWidth(); i++)
+		// Create the relevant board, then put the pieces.
+		Board board = emptyBoard(BoardGeometry.of(longestLine, numberOfLines, playable), rocks);
+		for (int x = 0; x < longestLine; x++)
 		{
-			for (int j = 0; j < board.getHeight(); j++)
+			for (int y = 0; y < numberOfLines; y++)
 			{
-				if (board.squares[i][j] != OUT)
+				if (pieces[x][y] == DWARF || pieces[x][y] == TROLL)
 				{
-					piecesCache.add(new Coordinate(i, j));
+					board.addPiece(board.bitsetOf(pieces[x][y]), board.squareIndex(x, y));
 				}
 			}
 		}
 
+		// Set the board's attributes.
+		board.dwarvesTurn = playingSide != TROLL;
+
+		return board;
+	}
+
+	/**
+	 @param geometry The shape of the board.
+	 @param rocks The squares holding a rock.
+	 @return A board of this shape, without any piece, the dwarves playing.
+	 */
+	static Board emptyBoard(BoardGeometry geometry, long[] rocks)
+	{
+		// TODO add something to decide which class.
+		Board board = new RegularBoard();
+		board.initialize(geometry, rocks);
+		board.dwarvesTurn = true;
 		return board;
 	}
 
@@ -411,7 +1140,58 @@ public abstract class Board implements Cloneable
 	 */
 	public Piece getPiece(Coordinate coordinate)
 	{
-		return squares[coordinate.width][coordinate.height];
+		return getPiece(coordinate.width, coordinate.height);
+	}
+
+	/**
+	 @param x The X location of the square.
+	 @param y The Y location of the square.
+	 @return The corresponding piece.
+	 */
+	public Piece getPiece(int x, int y)
+	{
+		int index = squareIndex(x, y);
+		if (!geometry.isPlayable(index))
+		{
+			return OUT;
+		}
+		else if (testBit(dwarves, index))
+		{
+			return DWARF;
+		}
+		else if (testBit(trolls, index))
+		{
+			return TROLL;
+		}
+		else if (testBit(rocks, index))
+		{
+			return ROCK;
+		}
+		return EMPTY;
+	}
+
+	/**
+	 Puts a piece on a square. The board's shape, i.e. the playable squares and
+	 the rocks, can't be changed once read.
+
+	 @param x The X location of the square.
+	 @param y The Y location of the square.
+	 @param piece The piece to put, DWARF, TROLL or EMPTY.
+	 */
+	public void setPiece(int x, int y, Piece piece)
+	{
+		int index = squareIndex(x, y);
+		if (piece == OUT || piece == ROCK || !geometry.isPlayable(index) || testBit(rocks, index))
+		{
+			throw new IllegalArgumentException("Can't put " + piece + " on (" + x + ", " + y + ").");
+		}
+
+		removePiece(dwarves, index);
+		removePiece(trolls, index);
+		if (piece != EMPTY)
+		{
+			addPiece(bitsetOf(piece), index);
+		}
 	}
 
 	@Override
@@ -426,7 +1206,10 @@ public abstract class Board implements Cloneable
 			return false;
 		}
 		final Board other = (Board) obj;
-		if (!Arrays.deepEquals(this.squares, other.squares))
+		if (this.geometry != other.geometry
+			|| !Arrays.equals(this.rocks, other.rocks)
+			|| !Arrays.equals(this.dwarves, other.dwarves)
+			|| !Arrays.equals(this.trolls, other.trolls))
 		{
 			return false;
 		}
@@ -436,9 +1219,6 @@ public abstract class Board implements Cloneable
 	@Override
 	public int hashCode()
 	{
-		int hash = 7;
-		hash = 73 * hash + Arrays.deepHashCode(this.squares);
-		hash = 73 * hash + (this.dwarvesTurn ? 1 : 0);
-		return hash;
+		return Long.hashCode(getZobristKey());
 	}
 }
@@ -0,0 +1,255 @@
+package org.saucistophe.thud.model.boards;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.saucistophe.thud.model.Coordinate;
+
+/**
+ The shape of a board: its dimensions and playable squares, with the tables
+ derived from them, i.e. the neighbours of each square, and the rays pieces
+ move along. A geometry never changes, and is computed once per shape, then
+ shared by all the boards of this shape.
+
+ The square (x, y) has the index x * height + y, as in the boards' bitsets.
+ */
+public final class BoardGeometry
+{
+	/**
+	 The number of directions.
+	 */
+	static final int DIRECTIONS = Coordinate.directions.length;
+
+	/**
+	 The geometries already computed, by shape.
+	 */
+	private static final Map<Shape, BoardGeometry> CACHE = new ConcurrentHashMap<>();
+
+	private final int width, height;
+
+	/**
+	 The playable squares, as a bitset, and as a list of indexes in increasing order.
+	 */
+	private final long[] playable;
+	private final int[] squares;
+
+	/**
+	 The index of the playable square next to each square in each direction of
+	 Coordinate.directions, or -1 if there's none, at index square * 8 + direction.
+	 */
+	private final int[] neighbours;
+
+	/**
+	 The playable squares met going from each square in each direction, until
+	 the edge of the board or an unplayable square, at index square * 8 + direction.
+	 */
+	private final int[][] rays;
+
+	/**
+	 The symmetries of the boards of this shape, by rocks, computed when first needed.
+	 */
+	private final Map<Shape, BoardSymmetries> symmetries = new ConcurrentHashMap<>();
+
+	/**
+	 @param shape The shape of the board.
+	 */
+	private BoardGeometry(Shape shape)
+	{
+		width = shape.width;
+		height = shape.height;
+		playable = shape.playable;
+		squares = Board.setBits(playable).toArray();
+
+		neighbours = new int[width * height * DIRECTIONS];
+		Arrays.fill(neighbours, -1);
+		for (int square : squares)
+		{
+			for (int direction = 0; direction < DIRECTIONS; direction++)
+			{
+				int neighbourX = squareX(square) + Coordinate.directions[direction].width;
+				int neighbourY = squareY(square) + Coordinate.directions[direction].height;
+				if (isPlayable(neighbourX, neighbourY))
+				{
+					neighbours[square * DIRECTIONS + direction] = squareIndex(neighbourX, neighbourY);
+				}
+			}
+		}
+
+		rays = new int[width * height * DIRECTIONS][];
+		int[] ray = new int[Math.max(width, height)];
+		for (int square = 0; square < width * height; square++)
+		{
+			for (int direction = 0; direction < DIRECTIONS; direction++)
+			{
+				int length = 0;
+				for (int next = neighbour(square, direction); next != -1; next = neighbour(next, direction))
+				{
+					ray[length++] = next;
+				}
+				rays[square * DIRECTIONS + direction] = Arrays.copyOf(ray, length);
+			}
+		}
+	}
+
+	/**
+	 @param width The width of the board.
+	 @param height The height of the board.
+	 @param playable The playable squares, as a bitset. Copied.
+	 @return The geometry of this shape.
+	 */
+	public static BoardGeometry of(int width, int height, long[] playable)
+	{
+		return CACHE.computeIfAbsent(new Shape(width, height, playable.clone()), BoardGeometry::new);
+	}
+
+	/**
+	 @return The width of the board.
+	 */
+	public int getWidth()
+	{
+		return width;
+	}
+
+	/**
+	 @return The height of the board.
+	 */
+	public int getHeight()
+	{
+		return height;
+	}
+
+	/**
+	 @param x The X location of the square.
+	 @param y The Y location of the square.
+	 @return The index of the square.
+	 */
+	public int squareIndex(int x, int y)
+	{
+		return x * height + y;
+	}
+
+	/**
+	 @param index The index of a square.
+	 @return The X location of the square.
+	 */
+	public int squareX(int index)
+	{
+		return index / height;
+	}
+
+	/**
+	 @param index The index of a square.
+	 @return The Y location of the square.
+	 */
+	public int squareY(int index)
+	{
+		return index % height;
+	}
+
+	/**
+	 @param index The index of a square.
+	 @return True if the square is playable.
+	 */
+	public boolean isPlayable(int index)
+	{
+		return (playable[index >>> 6] & 1L << index) != 0;
+	}
+
+	/**
+	 @param x The X location of a square, possibly outside the board.
+	 @param y The Y location of a square, possibly outside the board.
+	 @return True if the square is inside the board, and playable.
+	 */
+	public boolean isPlayable(int x, int y)
+	{
+		return x >= 0 && y >= 0 && x < width && y < height && isPlayable(squareIndex(x, y));
+	}
+
+	/**
+	 @return The number of playable squares.
+	 */
+	public int getSquareCount()
+	{
+		return squares.length;
+	}
+
+	/**
+	 @param rank The rank of a playable square, from 0 to getSquareCount() excluded.
+	 @return The index of the playable square, the squares being ranked by increasing index.
+	 */
+	public int getSquare(int rank)
+	{
+		return squares[rank];
+	}
+
+	/**
+	 @param index The index of a square.
+	 @param direction The index of a direction in Coordinate.directions.
+	 @return The index of the next playable square in this direction, or -1 if there's none.
+	 */
+	public int neighbour(int index, int direction)
+	{
+		return neighbours[index * DIRECTIONS + direction];
+	}
+
+	/**
+	 @param index The index of a square.
+	 @param direction The index of a direction in Coordinate.directions.
+	 @return The playable squares met going in this direction, nearest first. Must not be changed.
+	 */
+	int[] ray(int index, int direction)
+	{
+		return rays[index * DIRECTIONS + direction];
+	}
+
+	/**
+	 @param rocks The squares holding a rock.
+	 @return The symmetries mapping the playable squares and these rocks onto themselves.
+	 */
+	BoardSymmetries symmetries(long[] rocks)
+	{
+		// The rocks are kept as the playable squares of a shape of the same size.
+		return symmetries.computeIfAbsent(new Shape(width, height, rocks.clone()), shape -> new BoardSymmetries(this, shape.playable));
+	}
+
+	/**
+	 @return The playable squares, as a bitset. Must not be changed.
+	 */
+	long[] playable()
+	{
+		return playable;
+	}
+
+	/**
+	 The key of the cache: the dimensions and the playable squares.
+	 */
+	private static final class Shape
+	{
+		private final int width, height;
+		private final long[] playable;
+
+		Shape(int width, int height, long[] playable)
+		{
+			this.width = width;
+			this.height = height;
+			this.playable = playable;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof Shape))
+			{
+				return false;
+			}
+			Shape other = (Shape) obj;
+			return width == other.width && height == other.height && Arrays.equals(playable, other.playable);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return (31 * width + height) * 31 + Arrays.hashCode(playable);
+		}
+	}
+}
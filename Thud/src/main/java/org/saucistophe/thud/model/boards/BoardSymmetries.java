@@ -0,0 +1,168 @@
+package org.saucistophe.thud.model.boards;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.saucistophe.thud.model.Coordinate;
+import org.saucistophe.thud.model.Move;
+
+/**
+ The rotations and reflections mapping a board's playable squares and rocks
+ onto themselves, among the 8 symmetries of the square (or the 4 of a
+ rectangle). Symmetric positions play the same, so that a position can be
+ identified by a canonical key shared with all its symmetric positions, and
+ the moves of one translated into the moves of another.
+
+ The symmetries are numbered from 0, the identity, on. Computed once per shape
+ and rocks, then shared by all the boards of this shape.
+ */
+final class BoardSymmetries
+{
+	/**
+	 The image of each square, and of each direction of Coordinate.directions,
+	 by each symmetry, and their inverse images.
+	 */
+	private final int[][] squares, inverseSquares;
+	private final int[][] directions, inverseDirections;
+
+	/**
+	 The Zobrist keys of a dwarf and of a troll on each square, as seen through
+	 each symmetry but the identity, at index square * (count() - 1) + symmetry - 1.
+	 */
+	final long[] dwarfKeys, trollKeys;
+
+	/**
+	 @param geometry The shape of the board.
+	 @param rocks The squares holding a rock.
+	 */
+	BoardSymmetries(BoardGeometry geometry, long[] rocks)
+	{
+		int width = geometry.getWidth();
+		int height = geometry.getHeight();
+
+		// A symmetry transposes the board, if it is square, then flips the X and Y axes or not.
+		List<int[]> squareImages = new ArrayList<>();
+		List<int[]> directionImages = new ArrayList<>();
+		for (int symmetry = 0; symmetry < 8; symmetry++)
+		{
+			boolean transpose = (symmetry & 4) != 0, flipX = (symmetry & 1) != 0, flipY = (symmetry & 2) != 0;
+			if (transpose && width != height)
+			{
+				continue;
+			}
+
+			int[] image = new int[width * height];
+			boolean preserved = true;
+			for (int square = 0; square < image.length && preserved; square++)
+			{
+				int x = transpose ? geometry.squareY(square) : geometry.squareX(square);
+				int y = transpose ? geometry.squareX(square) : geometry.squareY(square);
+				image[square] = geometry.squareIndex(flipX ? width - 1 - x : x, flipY ? height - 1 - y : y);
+				preserved = geometry.isPlayable(square) == geometry.isPlayable(image[square])
+					&& Board.testBit(rocks, square) == Board.testBit(rocks, image[square]);
+			}
+			if (!preserved)
+			{
+				continue;
+			}
+
+			int[] directionImage = new int[BoardGeometry.DIRECTIONS];
+			for (int direction = 0; direction < BoardGeometry.DIRECTIONS; direction++)
+			{
+				Coordinate vector = Coordinate.directions[direction];
+				int dx = transpose ? vector.height : vector.width;
+				int dy = transpose ? vector.width : vector.height;
+				directionImage[direction] = directionIndex(flipX ? -dx : dx, flipY ? -dy : dy);
+			}
+			squareImages.add(image);
+			directionImages.add(directionImage);
+		}
+
+		squares = squareImages.toArray(new int[0][]);
+		directions = directionImages.toArray(new int[0][]);
+		inverseSquares = new int[squares.length][];
+		inverseDirections = new int[squares.length][];
+		for (int symmetry = 0; symmetry < squares.length; symmetry++)
+		{
+			inverseSquares[symmetry] = inverse(squares[symmetry]);
+			inverseDirections[symmetry] = inverse(directions[symmetry]);
+		}
+
+		int others = squares.length - 1;
+		dwarfKeys = new long[width * height * others];
+		trollKeys = new long[width * height * others];
+		for (int square = 0; square < width * height; square++)
+		{
+			for (int symmetry = 1; symmetry < squares.length; symmetry++)
+			{
+				dwarfKeys[square * others + symmetry - 1] = Board.DWARF_KEYS[squares[symmetry][square]];
+				trollKeys[square * others + symmetry - 1] = Board.TROLL_KEYS[squares[symmetry][square]];
+			}
+		}
+	}
+
+	/**
+	 @param dx The X step of a direction.
+	 @param dy The Y step of a direction.
+	 @return The index of the direction in Coordinate.directions.
+	 */
+	private static int directionIndex(int dx, int dy)
+	{
+		for (int direction = 0; direction < BoardGeometry.DIRECTIONS; direction++)
+		{
+			if (Coordinate.directions[direction].width == dx && Coordinate.directions[direction].height == dy)
+			{
+				return direction;
+			}
+		}
+		throw new IllegalArgumentException("No direction (" + dx + ", " + dy + ").");
+	}
+
+	/**
+	 @param permutation A permutation of indexes.
+	 @return Its inverse.
+	 */
+	private static int[] inverse(int[] permutation)
+	{
+		int[] result = new int[permutation.length];
+		for (int i = 0; i < permutation.length; i++)
+		{
+			result[permutation[i]] = i;
+		}
+		return result;
+	}
+
+	/**
+	 @return The number of symmetries, the identity included.
+	 */
+	int count()
+	{
+		return squares.length;
+	}
+
+	/**
+	 @param packedMove A packed move, or 0.
+	 @param symmetry A symmetry.
+	 @param inverse True to apply the inverse of the symmetry.
+	 @return The move on the symmetric board, or 0.
+	 */
+	int transform(int packedMove, int symmetry, boolean inverse)
+	{
+		if (packedMove == 0 || symmetry == 0)
+		{
+			return packedMove;
+		}
+
+		int[] squareImage = inverse ? inverseSquares[symmetry] : squares[symmetry];
+		int[] directionImage = inverse ? inverseDirections[symmetry] : directions[symmetry];
+		int capturedDwarves = 0;
+		for (int victims = Move.capturedDwarves(packedMove); victims != 0; victims &= victims - 1)
+		{
+			capturedDwarves |= 1 << directionImage[Integer.numberOfTrailingZeros(victims)];
+		}
+		return Move.pack(squareImage[Move.origin(packedMove)],
+			squareImage[Move.destination(packedMove)],
+			capturedDwarves,
+			Move.isHurl(packedMove),
+			Move.isShove(packedMove));
+	}
+}
@@ -0,0 +1,216 @@
+package org.saucistophe.thud.model.boards;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.ObjIntConsumer;
+import org.saucistophe.thud.model.Move;
+import org.saucistophe.thud.model.MoveList;
+import static org.saucistophe.thud.model.boards.GameRecordWriter.END_OF_GAME;
+import static org.saucistophe.thud.model.boards.GameRecordWriter.MAGIC;
+
+/**
+ Reads the games written by a GameRecordWriter, one at a time: an archive of
+ any size is read with the memory of a single game.
+
+ The start position, the moves and the replayed board are reused from one game
+ to the next; they must be copied to be kept.
+ */
+public final class GameRecordReader implements AutoCloseable
+{
+	private final DataInputStream input;
+
+	/**
+	 The description of the current shape, its codec, and the buffers reading a shape and a position.
+	 */
+	private byte[] shape = new byte[0];
+	private byte[] shapeBuffer = new byte[0];
+	private PositionCodec codec = null;
+	private ByteBuffer position = null;
+
+	private Board startPosition = null;
+	private Board replayedBoard = null;
+	private final MoveList moves = new MoveList();
+	private final MoveList legalMoves = new MoveList();
+	private boolean complete = false;
+
+	/**
+	 @param input The stream to read the records from.
+	 */
+	public GameRecordReader(InputStream input)
+	{
+		this.input = new DataInputStream(new BufferedInputStream(input, 1 << 16));
+	}
+
+	/**
+	 @param file A file of game records.
+	 @return A reader of the file.
+	 @throws IOException If the file can't be opened.
+	 */
+	public static GameRecordReader open(File file) throws IOException
+	{
+		return new GameRecordReader(new FileInputStream(file));
+	}
+
+	/**
+	 Reads the next game.
+
+	 @return False if there is no game left.
+	 @throws IOException If the record can't be read, or is invalid.
+	 */
+	public boolean nextGame() throws IOException
+	{
+		int first = input.read();
+		if (first == -1)
+		{
+			return false;
+		}
+		int magic = first << 24 | input.readUnsignedByte() << 16 | input.readUnsignedShort();
+		if (magic != MAGIC)
+		{
+			throw new IOException("Invalid game record.");
+		}
+
+		// The dimensions tell the size of the shape's description.
+		int width = input.readInt();
+		int height = input.readInt();
+		int words = input.readInt();
+		if (words < 1 || words > (Board.MAX_SIZE * Board.MAX_SIZE + 63) / 64)
+		{
+			throw new IOException("Invalid board shape.");
+		}
+		int shapeSize = 3 * 4 + 2 * 8 * words;
+		if (shapeBuffer.length != shapeSize)
+		{
+			shapeBuffer = new byte[shapeSize];
+		}
+		ByteBuffer.wrap(shapeBuffer).putInt(width).putInt(height).putInt(words);
+		input.readFully(shapeBuffer, 3 * 4, shapeSize - 3 * 4);
+		if (!Arrays.equals(shapeBuffer, shape))
+		{
+			codec = PositionCodec.readShape(ByteBuffer.wrap(shapeBuffer));
+			shape = shapeBuffer.clone();
+			position = ByteBuffer.allocate(codec.getRecordSize());
+			startPosition = codec.newBoard();
+			replayedBoard = codec.newBoard();
+		}
+
+		position.clear();
+		input.readFully(position.array());
+		try
+		{
+			codec.decode(position, startPosition);
+		} catch (IllegalArgumentException ex)
+		{
+			throw new IOException("Invalid start position.", ex);
+		}
+
+		// A missing end marker means the game was cut, e.g. because it was being played: it
+		// ends with the archive, or where the next record starts, MAGIC being no packed move.
+		moves.clear();
+		complete = false;
+		try
+		{
+			while (true)
+			{
+				input.mark(4);
+				int move = input.readInt();
+				if (move == END_OF_GAME)
+				{
+					complete = true;
+					break;
+				}
+				if (move == MAGIC)
+				{
+					input.reset();
+					break;
+				}
+				moves.add(move);
+			}
+		} catch (EOFException ex)
+		{
+			// The game ends with the archive.
+		}
+		return true;
+	}
+
+	/**
+	 @return The start position of the current game.
+	 */
+	public Board getStartPosition()
+	{
+		return startPosition;
+	}
+
+	/**
+	 @return The packed moves of the current game.
+	 */
+	public MoveList getMoves()
+	{
+		return moves;
+	}
+
+	/**
+	 @return False if the current game's record was cut before its end.
+	 */
+	public boolean isComplete()
+	{
+		return complete;
+	}
+
+	/**
+	 Replays the current game, checking every move.
+
+	 @param visitor Called before each move with the board and the packed move, or null.
+	 @return The final position of the game.
+	 @throws IOException If a move is illegal.
+	 */
+	public Board replay(ObjIntConsumer<Board> visitor) throws IOException
+	{
+		replayedBoard.set(startPosition);
+		for (int i = 0; i < moves.size(); i++)
+		{
+			int move = moves.get(i);
+			replayedBoard.generateMoves(legalMoves);
+			if (!contains(legalMoves, move))
+			{
+				throw new IOException("Illegal move " + Move.unpack(move) + " at ply " + i + ".");
+			}
+			if (visitor != null)
+			{
+				visitor.accept(replayedBoard, move);
+			}
+			replayedBoard.makeMove(move);
+		}
+		return replayedBoard;
+	}
+
+	/**
+	 @param moves A list of moves.
+	 @param move A packed move.
+	 @return True if the list holds the move.
+	 */
+	private static boolean contains(MoveList moves, int move)
+	{
+		for (int i = 0; i < moves.size(); i++)
+		{
+			if (moves.get(i) == move)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		input.close();
+	}
+}
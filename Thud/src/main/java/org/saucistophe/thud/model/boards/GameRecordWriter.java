@@ -0,0 +1,185 @@
+package org.saucistophe.thud.model.boards;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import org.saucistophe.thud.model.MoveList;
+
+/**
+ Writes games as they are played, so that they can be replayed, analysed or
+ deduplicated later by a GameRecordReader.
+
+ A game record holds a magic number, the shape of the board, the start
+ position encoded by a PositionCodec, then each move packed by Move.pack(),
+ which tells the dwarves a troll captured and whether it shoved, and finally
+ an end marker. Records are simply appended one after the other, so that
+ archives can be appended to, or concatenated. A game whose end marker is
+ missing, e.g. because the program stopped, can still be read, up to the end
+ of the archive or to the magic number of the next record.
+ */
+public final class GameRecordWriter implements AutoCloseable
+{
+	/**
+	 "THGR", starting each game record, and the marker of its end, which is never a packed move.
+	 */
+	static final int MAGIC = 0x54484752;
+	static final int END_OF_GAME = -1;
+
+	private final DataOutputStream output;
+
+	/**
+	 The codec of the last shape written, and its description.
+	 */
+	private PositionCodec codec = null;
+	private byte[] shape = null;
+	private ByteBuffer position = null;
+
+	/**
+	 The current position of the game being written, or null between games.
+	 */
+	private Board board = null;
+
+	private final MoveList moves = new MoveList();
+
+	/**
+	 @param output The stream to write the records to.
+	 */
+	public GameRecordWriter(OutputStream output)
+	{
+		this.output = new DataOutputStream(new BufferedOutputStream(output, 1 << 16));
+	}
+
+	/**
+	 @param file A file of game records, created if needed.
+	 @return A writer adding records at the end of the file.
+	 @throws IOException If the file can't be opened.
+	 */
+	public static GameRecordWriter append(File file) throws IOException
+	{
+		return new GameRecordWriter(new FileOutputStream(file, true));
+	}
+
+	/**
+	 Starts the record of a game, ending the previous one if needed.
+
+	 @param start The start position.
+	 @throws IOException If the record can't be written.
+	 */
+	public synchronized void startGame(Board start) throws IOException
+	{
+		if (board != null)
+		{
+			endGame();
+		}
+
+		// The shape is described again only when it changes.
+		if (codec == null || !codec.accepts(start))
+		{
+			codec = PositionCodec.of(start);
+			ByteBuffer shapeBuffer = ByteBuffer.allocate(codec.getShapeSize());
+			codec.writeShape(shapeBuffer);
+			shape = shapeBuffer.array();
+			position = ByteBuffer.allocate(codec.getRecordSize());
+		}
+
+		position.clear();
+		codec.encode(start, position);
+		output.writeInt(MAGIC);
+		output.write(shape);
+		output.write(position.array());
+		board = start.cloneBoard();
+	}
+
+	/**
+	 Adds a move to the game.
+
+	 @param packedMove A move, as generated on the current position.
+	 @throws IOException If the move can't be written.
+	 */
+	public synchronized void addMove(int packedMove) throws IOException
+	{
+		checkGame();
+		output.writeInt(packedMove);
+		board.makeMove(packedMove);
+	}
+
+	/**
+	 Adds the move leading to a position, e.g. when a move was played on the display.
+
+	 @param next A position following the current one by a move.
+	 @throws IOException If the move can't be written.
+	 */
+	public synchronized void addPosition(Board next) throws IOException
+	{
+		checkGame();
+		board.generateMoves(moves);
+		for (int i = 0; i < moves.size(); i++)
+		{
+			int move = moves.get(i);
+			board.makeMove(move);
+			boolean found = board.equals(next);
+			board.unmakeMove(move);
+			if (found)
+			{
+				addMove(move);
+				return;
+			}
+		}
+		throw new IllegalArgumentException("No move leads to this position.");
+	}
+
+	/**
+	 Ends the game, and writes its record.
+
+	 @throws IOException If the record can't be written.
+	 */
+	public synchronized void endGame() throws IOException
+	{
+		checkGame();
+		output.writeInt(END_OF_GAME);
+		output.flush();
+		board = null;
+	}
+
+	private void checkGame()
+	{
+		if (board == null)
+		{
+			throw new IllegalStateException("No game was started.");
+		}
+	}
+
+	/**
+	 Writes the moves added so far, without ending the game.
+
+	 @throws IOException If the moves can't be written.
+	 */
+	public synchronized void flush() throws IOException
+	{
+		output.flush();
+	}
+
+	/**
+	 Ends the game being written, if any, and closes the stream.
+
+	 @throws IOException If the record can't be written.
+	 */
+	@Override
+	public synchronized void close() throws IOException
+	{
+		try
+		{
+			if (board != null)
+			{
+				endGame();
+			}
+		} finally
+		{
+			output.close();
+		}
+	}
+}
@@ -0,0 +1,223 @@
+package org.saucistophe.thud.model.boards;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.saucistophe.thud.model.MoveList;
+
+/**
+ The moves to play in the first positions of a game, each with a weight, e.g.
+ the number of times it was found best. The book is a memory-mapped file of
+ entries sorted by position key, searched by bisection, so that even a large
+ book is probed at once without being loaded on the heap.
+
+ Positions are identified by their canonical key, and moves are stored in
+ the canonical orientation, so that symmetric positions share their entries.
+
+ The file holds a header, with the id of the board's shape, then the entries:
+ the key, the packed move and the weight, sorted by key then decreasing weight.
+ */
+public final class OpeningBook implements AutoCloseable
+{
+	/**
+	 "THOB", identifying an opening book, and the version of the format.
+	 */
+	private static final int MAGIC = 0x54484F42;
+	private static final int VERSION = 1;
+
+	/**
+	 The size of the header, and of an entry.
+	 */
+	private static final int HEADER_SIZE = 4 * 4;
+	private static final int ENTRY_SIZE = 8 + 4 + 4;
+
+	private final int shapeId;
+	private final FileChannel channel;
+	private final MappedByteBuffer entries;
+	private final int size;
+
+	/**
+	 The codec of the last shape probed, so that its id isn't computed again at each probe.
+	 */
+	private volatile PositionCodec lastCodec = null;
+
+	/**
+	 @param shapeId The id of the board's shape, as given by PositionCodec.
+	 @param channel The file.
+	 @throws IOException If the entries can't be mapped.
+	 */
+	private OpeningBook(int shapeId, FileChannel channel) throws IOException
+	{
+		this.shapeId = shapeId;
+		this.channel = channel;
+		long entriesSize = channel.size() - HEADER_SIZE;
+		if (entriesSize % ENTRY_SIZE != 0 || entriesSize > Integer.MAX_VALUE)
+		{
+			throw new IOException("Invalid opening book size: " + channel.size() + " bytes.");
+		}
+		entries = channel.map(MapMode.READ_ONLY, HEADER_SIZE, entriesSize);
+		size = (int) (entriesSize / ENTRY_SIZE);
+	}
+
+	/**
+	 Writes a book.
+
+	 @param file The file to write, replaced if any.
+	 @param board A board of the book's shape.
+	 @param weights The weight of each move, by position: both in the canonical form.
+	 @throws IOException If the file can't be written.
+	 */
+	public static void write(File file, Board board, Map<Long, Map<Integer, Integer>> weights) throws IOException
+	{
+		List<long[]> sortedEntries = new ArrayList<>();
+		weights.forEach((key, moves) -> moves.forEach((move, weight) -> sortedEntries.add(new long[]
+		{
+			key, move, weight
+		})));
+		sortedEntries.sort(Comparator.comparingLong((long[] entry) -> entry[0])
+			.thenComparingLong(entry -> -entry[2])
+			.thenComparingLong(entry -> entry[1]));
+
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + sortedEntries.size() * ENTRY_SIZE);
+		buffer.putInt(MAGIC).putInt(VERSION).putInt(PositionCodec.of(board).getShapeId()).putInt(0);
+		for (long[] entry : sortedEntries)
+		{
+			buffer.putLong(entry[0]).putInt((int) entry[1]).putInt((int) entry[2]);
+		}
+		buffer.flip();
+
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw"))
+		{
+			randomAccessFile.setLength(0);
+			FileChannel channel = randomAccessFile.getChannel();
+			while (buffer.hasRemaining())
+			{
+				channel.write(buffer);
+			}
+		}
+	}
+
+	/**
+	 Opens a book to probe it.
+
+	 @param file The file of the book.
+	 @return The book.
+	 @throws IOException If the file can't be read, or is not an opening book.
+	 */
+	public static OpeningBook open(File file) throws IOException
+	{
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try
+		{
+			FileChannel channel = randomAccessFile.getChannel();
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			channel.read(header, 0);
+			header.flip();
+			if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC || header.getInt() != VERSION)
+			{
+				throw new IOException(file + " is not an opening book.");
+			}
+			return new OpeningBook(header.getInt(), channel);
+		} catch (IOException | RuntimeException ex)
+		{
+			randomAccessFile.close();
+			throw ex;
+		}
+	}
+
+	/**
+	 @return The number of entries, i.e. of moves of all the positions.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 @param board A position.
+	 @return The moves of the position in the book, by decreasing weight, with their weight.
+	 */
+	public Map<Integer, Integer> getMoves(Board board)
+	{
+		Map<Integer, Integer> result = new LinkedHashMap<>();
+		PositionCodec codec = lastCodec;
+		if (codec == null || !codec.accepts(board))
+		{
+			codec = PositionCodec.of(board);
+			lastCodec = codec;
+		}
+		if (codec.getShapeId() != shapeId)
+		{
+			return result;
+		}
+
+		// Only the legal moves are kept, in case of a collision of keys.
+		long key = board.getCanonicalKey();
+		int symmetry = board.getCanonicalSymmetry();
+		MoveList legalMoves = new MoveList();
+		board.generateMoves(legalMoves);
+		for (int entry = firstEntry(key); entry < size && entries.getLong(entry * ENTRY_SIZE) == key; entry++)
+		{
+			int move = board.inverseTransformMove(entries.getInt(entry * ENTRY_SIZE + 8), symmetry);
+			for (int i = 0; i < legalMoves.size(); i++)
+			{
+				if (legalMoves.get(i) == move)
+				{
+					result.put(move, entries.getInt(entry * ENTRY_SIZE + 12));
+					break;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 @param board A position.
+	 @return The move of highest weight of the position, packed, or 0 if it isn't in the book.
+	 */
+	public int probe(Board board)
+	{
+		for (int move : getMoves(board).keySet())
+		{
+			return move;
+		}
+		return 0;
+	}
+
+	/**
+	 @param key The key of a position.
+	 @return The index of the first entry whose key is not lower.
+	 */
+	private int firstEntry(long key)
+	{
+		int low = 0, high = size;
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if (entries.getLong(middle * ENTRY_SIZE) < key)
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		channel.close();
+	}
+}
@@ -0,0 +1,247 @@
+package org.saucistophe.thud.model.boards;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ A compact binary encoding of the positions of a board shape, for storing
+ millions of them. Each position takes the same number of bytes: one for the
+ playing side, then 2 bits per square pieces can stand on, i.e. playable and
+ without a rock, by increasing index: 0 for an empty square, 1 for a dwarf, 2
+ for a troll. A regular board thus takes 42 bytes.
+
+ The shape itself is written once, e.g. in a file's header, and identified by
+ a checksum, its shape id.
+ */
+public final class PositionCodec
+{
+	/**
+	 The codes of the squares.
+	 */
+	private static final int EMPTY_CODE = 0, DWARF_CODE = 1, TROLL_CODE = 2;
+
+	private final BoardGeometry geometry;
+	private final long[] rocks;
+
+	/**
+	 The squares pieces can stand on, by increasing index.
+	 */
+	private final int[] squares;
+
+	private final int recordSize;
+	private final int shapeId;
+
+	/**
+	 @param geometry The shape of the board.
+	 @param rocks The squares holding a rock.
+	 */
+	private PositionCodec(BoardGeometry geometry, long[] rocks)
+	{
+		this.geometry = geometry;
+		this.rocks = rocks;
+
+		int[] freeSquares = new int[geometry.getSquareCount()];
+		int count = 0;
+		for (int rank = 0; rank < geometry.getSquareCount(); rank++)
+		{
+			int square = geometry.getSquare(rank);
+			if ((rocks[square >>> 6] & 1L << square) == 0)
+			{
+				freeSquares[count++] = square;
+			}
+		}
+		squares = Arrays.copyOf(freeSquares, count);
+		recordSize = 1 + (2 * squares.length + 7) / 8;
+
+		ByteBuffer shape = ByteBuffer.allocate(getShapeSize());
+		writeShape(shape);
+		CRC32 checksum = new CRC32();
+		checksum.update(shape.array());
+		shapeId = (int) checksum.getValue();
+	}
+
+	/**
+	 @param board A board.
+	 @return The codec of the board's shape.
+	 */
+	public static PositionCodec of(Board board)
+	{
+		return new PositionCodec(board.getGeometry(), board.rocks());
+	}
+
+	/**
+	 @return The number of bytes of a position.
+	 */
+	public int getRecordSize()
+	{
+		return recordSize;
+	}
+
+	/**
+	 @return A checksum of the shape, telling the codecs of different shapes apart.
+	 */
+	public int getShapeId()
+	{
+		return shapeId;
+	}
+
+	/**
+	 @param board A board.
+	 @return True if the board has the codec's shape.
+	 */
+	public boolean accepts(Board board)
+	{
+		return board.getGeometry() == geometry && Arrays.equals(board.rocks(), rocks);
+	}
+
+	/**
+	 Writes a position.
+
+	 @param board A board of the codec's shape.
+	 @param target The buffer to write to, at its position, which is moved after the record.
+	 */
+	public void encode(Board board, ByteBuffer target)
+	{
+		if (!accepts(board))
+		{
+			throw new IllegalArgumentException("The board doesn't have the codec's shape.");
+		}
+
+		target.put((byte) (board.dwarvesTurn ? 1 : 0));
+		int code = 0;
+		for (int rank = 0; rank < squares.length; rank++)
+		{
+			int square = squares[rank];
+			int squareCode = board.hasDwarf(square) ? DWARF_CODE : board.hasTroll(square) ? TROLL_CODE : EMPTY_CODE;
+			code |= squareCode << 2 * (rank % 4);
+			if (rank % 4 == 3 || rank == squares.length - 1)
+			{
+				target.put((byte) code);
+				code = 0;
+			}
+		}
+	}
+
+	/**
+	 Reads a position on a board.
+
+	 @param source The buffer to read from, at its position, which is moved after the record.
+	 @param board A board of the codec's shape, whose pieces and playing side are replaced.
+	 */
+	public void decode(ByteBuffer source, Board board)
+	{
+		if (!accepts(board))
+		{
+			throw new IllegalArgumentException("The board doesn't have the codec's shape.");
+		}
+
+		int side = source.get();
+		if (side != 0 && side != 1)
+		{
+			throw new IllegalArgumentException("Invalid position record.");
+		}
+		int[] dwarves = new int[squares.length];
+		int[] trolls = new int[squares.length];
+		int dwarfCount = 0, trollCount = 0;
+		int code = 0;
+		for (int rank = 0; rank < squares.length; rank++)
+		{
+			if (rank % 4 == 0)
+			{
+				code = source.get();
+			}
+			int squareCode = code >>> 2 * (rank % 4) & 3;
+			if (squareCode == DWARF_CODE)
+			{
+				dwarves[dwarfCount++] = squares[rank];
+			}
+			else if (squareCode == TROLL_CODE)
+			{
+				trolls[trollCount++] = squares[rank];
+			}
+			else if (squareCode != EMPTY_CODE)
+			{
+				throw new IllegalArgumentException("Invalid position record.");
+			}
+		}
+
+		board.setPieces(dwarves, dwarfCount, trolls, trollCount);
+		board.dwarvesTurn = side == 1;
+	}
+
+	/**
+	 @param source The buffer to read from, at its position, which is moved after the record.
+	 @return A new board with the position.
+	 */
+	public Board decode(ByteBuffer source)
+	{
+		Board result = newBoard();
+		decode(source, result);
+		return result;
+	}
+
+	/**
+	 @return A board of the codec's shape, without any piece.
+	 */
+	public Board newBoard()
+	{
+		return Board.emptyBoard(geometry, rocks);
+	}
+
+	/**
+	 @return The number of bytes of the shape's description.
+	 */
+	public int getShapeSize()
+	{
+		return 3 * 4 + 2 * 8 * rocks.length;
+	}
+
+	/**
+	 Writes the shape's description: the dimensions, the playable squares and the rocks.
+
+	 @param target The buffer to write to, at its position.
+	 */
+	public void writeShape(ByteBuffer target)
+	{
+		target.putInt(geometry.getWidth()).putInt(geometry.getHeight()).putInt(rocks.length);
+		for (long word : geometry.playable())
+		{
+			target.putLong(word);
+		}
+		for (long word : rocks)
+		{
+			target.putLong(word);
+		}
+	}
+
+	/**
+	 Reads a shape's description.
+
+	 @param source The buffer to read from, at its position.
+	 @return The codec of the shape.
+	 @throws IOException If the description is invalid.
+	 */
+	public static PositionCodec readShape(ByteBuffer source) throws IOException
+	{
+		int width = source.getInt();
+		int height = source.getInt();
+		int words = source.getInt();
+		if (width < 1 || height < 1 || width > Board.MAX_SIZE || height > Board.MAX_SIZE || words != (width * height + 63) / 64)
+		{
+			throw new IOException("Invalid board shape: " + width + "x" + height + ".");
+		}
+		long[] playable = new long[words];
+		long[] rocks = new long[words];
+		for (int word = 0; word < words; word++)
+		{
+			playable[word] = source.getLong();
+		}
+		for (int word = 0; word < words; word++)
+		{
+			rocks[word] = source.getLong();
+		}
+		return new PositionCodec(BoardGeometry.of(width, height, playable), rocks);
+	}
+}
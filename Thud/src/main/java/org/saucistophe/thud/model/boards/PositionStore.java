@@ -0,0 +1,329 @@
+package org.saucistophe.thud.model.boards;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ A file of positions of the same board shape, e.g. for self-play games or
+ analysis, holding millions of them in little room. Positions can only be
+ added at the end; they are read through memory-mapped buffers, any of them in
+ constant time, or all of them in order.
+
+ The file holds a header, with the shape and its id, then the positions,
+ encoded by a PositionCodec, all of the same size. Positions are written by
+ batches: added positions are only in the file once flushed, which reading
+ them or closing the store does. A position left incomplete by a crash is
+ ignored, and overwritten by the next one.
+ */
+public final class PositionStore implements AutoCloseable
+{
+	/**
+	 "THPS", identifying a position store, and the version of the format.
+	 */
+	private static final int MAGIC = 0x54485053;
+	private static final int VERSION = 1;
+
+	/**
+	 The size of the header before the shape, and of the batches of positions written at once.
+	 */
+	private static final int HEADER_START = 3 * 4;
+	private static final int BATCH_SIZE = 1 << 16;
+
+	/**
+	 The maximal size of a mapped buffer, rounded down to whole positions.
+	 */
+	private static final int SEGMENT_SIZE = 1 << 30;
+
+	private final PositionCodec codec;
+	private final FileChannel channel;
+
+	/**
+	 The offset of the first position in the file.
+	 */
+	private final long dataStart;
+
+	/**
+	 The positions added but not written yet, or null if the store is read-only.
+	 */
+	private final ByteBuffer batch;
+
+	/**
+	 The number of positions in the file.
+	 */
+	private long writtenPositions;
+
+	/**
+	 The mapped parts of the file, each holding positionsPerSegment positions at most, and
+	 the number of positions they hold.
+	 */
+	private final List<MappedByteBuffer> segments = new ArrayList<>();
+	private final int positionsPerSegment;
+	private long mappedPositions = 0;
+
+	/**
+	 @param codec The codec of the positions.
+	 @param channel The file.
+	 @param dataStart The offset of the first position.
+	 @param writable True if positions can be added.
+	 @throws IOException If the file can't be read.
+	 */
+	private PositionStore(PositionCodec codec, FileChannel channel, long dataStart, boolean writable) throws IOException
+	{
+		this.codec = codec;
+		this.channel = channel;
+		this.dataStart = dataStart;
+		writtenPositions = (channel.size() - dataStart) / codec.getRecordSize();
+		positionsPerSegment = SEGMENT_SIZE / codec.getRecordSize();
+		batch = writable ? ByteBuffer.allocate(BATCH_SIZE / codec.getRecordSize() * codec.getRecordSize()) : null;
+	}
+
+	/**
+	 Creates an empty store, replacing the file if any.
+
+	 @param file The file of the store.
+	 @param board A board of the stored shape.
+	 @return The store, to add positions to.
+	 @throws IOException If the file can't be written.
+	 */
+	public static PositionStore create(File file, Board board) throws IOException
+	{
+		PositionCodec codec = PositionCodec.of(board);
+		ByteBuffer header = ByteBuffer.allocate(HEADER_START + codec.getShapeSize());
+		header.putInt(MAGIC).putInt(VERSION).putInt(codec.getShapeId());
+		codec.writeShape(header);
+		header.flip();
+
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+		try
+		{
+			randomAccessFile.setLength(0);
+			FileChannel channel = randomAccessFile.getChannel();
+			channel.write(header, 0);
+			return new PositionStore(codec, channel, header.limit(), true);
+		} catch (IOException | RuntimeException ex)
+		{
+			randomAccessFile.close();
+			throw ex;
+		}
+	}
+
+	/**
+	 Opens a store to read it.
+
+	 @param file The file of the store.
+	 @return The store.
+	 @throws IOException If the file can't be read, or is not a position store.
+	 */
+	public static PositionStore open(File file) throws IOException
+	{
+		return open(file, false);
+	}
+
+	/**
+	 Opens a store to add positions after the ones it holds.
+
+	 @param file The file of the store.
+	 @return The store.
+	 @throws IOException If the file can't be read, or is not a position store.
+	 */
+	public static PositionStore openForAppend(File file) throws IOException
+	{
+		return open(file, true);
+	}
+
+	/**
+	 @param file The file of the store.
+	 @param writable True to add positions.
+	 @return The store.
+	 @throws IOException If the file can't be read, or is not a position store.
+	 */
+	private static PositionStore open(File file, boolean writable) throws IOException
+	{
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, writable ? "rw" : "r");
+		try
+		{
+			FileChannel channel = randomAccessFile.getChannel();
+			int maxWords = (Board.MAX_SIZE * Board.MAX_SIZE + 63) / 64;
+			ByteBuffer header = ByteBuffer.allocate((int) Math.min(channel.size(), HEADER_START + 3 * 4 + 2 * 8 * maxWords));
+			channel.read(header, 0);
+			header.flip();
+			if (header.remaining() < HEADER_START || header.getInt() != MAGIC || header.getInt() != VERSION)
+			{
+				throw new IOException(file + " is not a position store.");
+			}
+			int shapeId = header.getInt();
+			PositionCodec codec;
+			try
+			{
+				codec = PositionCodec.readShape(header);
+			} catch (BufferUnderflowException ex)
+			{
+				throw new IOException(file + " is truncated.", ex);
+			}
+			if (codec.getShapeId() != shapeId)
+			{
+				throw new IOException(file + " has an invalid shape.");
+			}
+			return new PositionStore(codec, channel, HEADER_START + codec.getShapeSize(), writable);
+		} catch (IOException | RuntimeException ex)
+		{
+			randomAccessFile.close();
+			throw ex;
+		}
+	}
+
+	/**
+	 @return The codec of the stored positions, which also gives boards of their shape.
+	 */
+	public PositionCodec getCodec()
+	{
+		return codec;
+	}
+
+	/**
+	 @return The number of positions, including the ones not written yet.
+	 */
+	public synchronized long size()
+	{
+		return writtenPositions + (batch == null ? 0 : batch.position() / codec.getRecordSize());
+	}
+
+	/**
+	 Adds a position at the end of the store.
+
+	 @param board A board of the store's shape.
+	 @throws IOException If the positions can't be written.
+	 */
+	public synchronized void add(Board board) throws IOException
+	{
+		if (batch == null)
+		{
+			throw new IllegalStateException("The store is read-only.");
+		}
+		codec.encode(board, batch);
+		if (!batch.hasRemaining())
+		{
+			flush();
+		}
+	}
+
+	/**
+	 Writes the positions added so far to the file.
+
+	 @throws IOException If the positions can't be written.
+	 */
+	public synchronized void flush() throws IOException
+	{
+		if (batch == null || batch.position() == 0)
+		{
+			return;
+		}
+		batch.flip();
+		long offset = dataStart + writtenPositions * codec.getRecordSize();
+		while (batch.hasRemaining())
+		{
+			offset += channel.write(batch, offset);
+		}
+		writtenPositions += batch.limit() / codec.getRecordSize();
+		batch.clear();
+	}
+
+	/**
+	 @param index The index of a position, below size().
+	 @return A new board with the position.
+	 @throws IOException If the position can't be read.
+	 */
+	public Board get(long index) throws IOException
+	{
+		Board result = codec.newBoard();
+		read(index, result);
+		return result;
+	}
+
+	/**
+	 Reads a position on a board, without any allocation once the position is mapped.
+
+	 @param index The index of a position, below size().
+	 @param board A board of the store's shape, whose pieces and playing side are replaced.
+	 @throws IOException If the position can't be read.
+	 */
+	public synchronized void read(long index, Board board) throws IOException
+	{
+		if (index < 0 || index >= size())
+		{
+			throw new IndexOutOfBoundsException("No position " + index + " in a store of " + size() + ".");
+		}
+		if (index >= writtenPositions)
+		{
+			flush();
+		}
+		if (index >= mappedPositions)
+		{
+			mapPositions();
+		}
+
+		MappedByteBuffer segment = segments.get((int) (index / positionsPerSegment));
+		segment.position((int) (index % positionsPerSegment) * codec.getRecordSize());
+		codec.decode(segment, board);
+	}
+
+	/**
+	 Maps all the positions written in the file.
+
+	 @throws IOException If the file can't be mapped.
+	 */
+	private void mapPositions() throws IOException
+	{
+		// The last segment is mapped again, larger, and the next ones are added.
+		int firstSegment = (int) (mappedPositions / positionsPerSegment);
+		while (segments.size() > firstSegment)
+		{
+			segments.remove(segments.size() - 1);
+		}
+		for (long start = (long) firstSegment * positionsPerSegment; start < writtenPositions; start += positionsPerSegment)
+		{
+			long positions = Math.min(positionsPerSegment, writtenPositions - start);
+			segments.add(channel.map(MapMode.READ_ONLY, dataStart + start * codec.getRecordSize(), positions * codec.getRecordSize()));
+		}
+		mappedPositions = writtenPositions;
+	}
+
+	/**
+	 @return The positions of the store, in order, as new boards.
+	 */
+	public Stream<Board> stream()
+	{
+		return LongStream.range(0, size()).mapToObj(index ->
+		{
+			try
+			{
+				return get(index);
+			} catch (IOException ex)
+			{
+				throw new IllegalStateException("Can't read the position " + index + ".", ex);
+			}
+		});
+	}
+
+	@Override
+	public synchronized void close() throws IOException
+	{
+		try
+		{
+			flush();
+		} finally
+		{
+			channel.close();
+		}
+	}
+}
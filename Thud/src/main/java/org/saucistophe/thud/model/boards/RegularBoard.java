@@ -3,6 +3,8 @@ package org.saucistophe.thud.model.boards;
 import java.util.ArrayList;
 import java.util.List;
 import org.saucistophe.thud.model.Coordinate;
+import org.saucistophe.thud.model.Move;
+import org.saucistophe.thud.model.MoveList;
 import org.saucistophe.thud.model.Piece;
 import static org.saucistophe.thud.model.Piece.DWARF;
 import static org.saucistophe.thud.model.Piece.EMPTY;
@@ -20,7 +22,7 @@ public class RegularBoard extends Board
 		List<Coordinate> result = new ArrayList<>();
 
 		// If the piece is a dwarf.
-		if (dwarvesTurn && squares[x][y] == DWARF)
+		if (dwarvesTurn && isPiece(DWARF, x, y))
 		{
 			// For each possible direction:
 			for (Coordinate direction : Coordinate.directions)
@@ -34,24 +36,16 @@ public class RegularBoard extends Board
 					candidateX = x + distance * direction.width;
 					candidateY = y + distance * direction.height;
 					// Check if the destination is inside the bounds of the game, and free.
-					if (isInsideBounds(candidateX, candidateY))
+					if (isPiece(EMPTY, candidateX, candidateY))
 					{
-						Piece candidateDestination = squares[candidateX][candidateY];
-						if (candidateDestination == EMPTY)
-						{
-							result.add(new Coordinate(candidateX, candidateY));
-						}
-						else
-						{
-							blocked = true;
-							// Take note if a troll is blocking the way.
-							blockedByTroll = candidateDestination == TROLL;
-							distanceToTroll = distance;
-						}
+						result.add(new Coordinate(candidateX, candidateY));
 					}
 					else
 					{
 						blocked = true;
+						// Take note if a troll is blocking the way.
+						blockedByTroll = isPiece(TROLL, candidateX, candidateY);
+						distanceToTroll = distance;
 					}
 				}
 
@@ -71,7 +65,7 @@ public class RegularBoard extends Board
 					x2 -= direction.width;
 					y2 -= direction.height;
 					dwarvesInARow++;
-				} while (dwarvesInARow < distanceToTroll && isInsideBounds(x2, y2) && squares[x2][y2] == DWARF);
+				} while (dwarvesInARow < distanceToTroll && isPiece(DWARF, x2, y2));
 
 				// If there are enough dwarves, bingo, add the troll's location to the possible moves.
 				if (dwarvesInARow >= distanceToTroll)
@@ -82,7 +76,7 @@ public class RegularBoard extends Board
 		}
 
 		// If the piece is a troll:
-		if (!dwarvesTurn && squares[x][y] == TROLL)
+		if (!dwarvesTurn && isPiece(TROLL, x, y))
 		{
 			// For each possible direction:
 			for (Coordinate direction : Coordinate.directions)
@@ -92,13 +86,11 @@ public class RegularBoard extends Board
 				// further.
 				int newX = x + direction.width;
 				int newY = y + direction.height;
-				if (isInsideBounds(newX, newY) && squares[newX][newY] == EMPTY)
+				if (isPiece(EMPTY, newX, newY))
 				{
 					result.add(new Coordinate(newX, newY));
 					// Find out if it's a shove, even at distance of 1:
-					int oppositeSquareX = x - direction.width;
-					int oppositeSquareY = y - direction.height;
-					if (trollShovings != null && isInsideBounds(oppositeSquareX, oppositeSquareY) && squares[oppositeSquareX][oppositeSquareY] == TROLL)
+					if (trollShovings != null && isPiece(TROLL, x - direction.width, y - direction.height))
 					{
 						trollShovings.add(new Coordinate(newX, newY));
 					}
@@ -119,10 +111,8 @@ public class RegularBoard extends Board
 					int shovingTrollY = y - distance * direction.height;
 
 					// Check if nothing blocks the view, and there's a backing troll.
-					blocked = !isInsideBounds(candidateX, candidateY)
-						|| squares[candidateX][candidateY] != EMPTY
-						|| !isInsideBounds(shovingTrollX, shovingTrollY)
-						|| squares[shovingTrollX][shovingTrollY] != TROLL;
+					blocked = !isPiece(EMPTY, candidateX, candidateY)
+						|| !isPiece(TROLL, shovingTrollX, shovingTrollY);
 
 					if (blocked)
 					{
@@ -145,4 +135,158 @@ public class RegularBoard extends Board
 		}
 		return result;
 	}
+
+	@Override
+	public void generateMoves(MoveList moves)
+	{
+		moves.clear();
+		generate(moves, false);
+	}
+
+	@Override
+	public void generateCaptures(MoveList moves)
+	{
+		moves.clear();
+		generate(moves, true);
+	}
+
+	@Override
+	protected int countDestinations()
+	{
+		return generate(null, false);
+	}
+
+	/**
+	 Generates the moves of the playing side along the rays of each of its
+	 pieces, with the same rules as validMoves. The pieces are taken from the
+	 board's piece lists, so their order depends on the moves played before.
+
+	 @param moves The list to add the packed moves to, or null to only count the destinations.
+	 @param capturesOnly True to only add the moves capturing pieces.
+	 @return The number of destinations, counted once per piece.
+	 */
+	private int generate(MoveList moves, boolean capturesOnly)
+	{
+		int result = 0;
+		Piece side = dwarvesTurn ? DWARF : TROLL;
+		for (int slot = 0; slot < numberOf(side); slot++)
+		{
+			int origin = pieceSquare(side, slot);
+			for (int direction = 0; direction < DIRECTIONS; direction++)
+			{
+				result += dwarvesTurn ? dwarfMoves(origin, direction, moves, capturesOnly) : trollMoves(origin, direction, moves, capturesOnly);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 @param origin The square of a dwarf.
+	 @param direction The direction of the moves.
+	 @param moves The list to add the packed moves to, or null.
+	 @param capturesOnly True to only add the hurls.
+	 @return The number of destinations in this direction.
+	 */
+	private int dwarfMoves(int origin, int direction, MoveList moves, boolean capturesOnly)
+	{
+		// While the ground is empty, we add the square and check further.
+		int[] ray = ray(origin, direction);
+		int distance = 0;
+		for (; distance < ray.length && isEmpty(ray[distance]); distance++)
+		{
+			if (moves != null && !capturesOnly)
+			{
+				moves.add(Move.pack(origin, ray[distance], 0, false, false));
+			}
+		}
+		int result = distance;
+
+		// If a troll blocks the way, check if there are enough dwarves behind the moving one to land on it.
+		if (distance < ray.length && hasTroll(ray[distance]))
+		{
+			int[] behind = ray(origin, opposite(direction));
+			int dwarvesInARow = 1;
+			while (dwarvesInARow <= distance && dwarvesInARow <= behind.length && hasDwarf(behind[dwarvesInARow - 1]))
+			{
+				dwarvesInARow++;
+			}
+
+			if (dwarvesInARow > distance)
+			{
+				if (moves != null)
+				{
+					moves.add(Move.pack(origin, ray[distance], 0, true, false));
+				}
+				result++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 @param origin The square of a troll.
+	 @param direction The direction of the moves.
+	 @param moves The list to add the packed moves to, or null.
+	 @param capturesOnly True to only add the moves capturing dwarves.
+	 @return The number of destinations in this direction.
+	 */
+	private int trollMoves(int origin, int direction, MoveList moves, boolean capturesOnly)
+	{
+		// First, the troll can move to the adjacent square if it's empty. If not, he won't go further.
+		int[] ray = ray(origin, direction);
+		if (ray.length == 0 || !isEmpty(ray[0]))
+		{
+			return 0;
+		}
+
+		// It's a shove, even at a distance of 1, if a troll is behind.
+		int[] behind = ray(origin, opposite(direction));
+		addTrollMove(capturesOnly && nearbyDwarves(ray[0]) == 0 ? null : moves, origin, ray[0], behind.length > 0 && hasTroll(behind[0]));
+		int result = 1;
+
+		// Then, further squares can be reached by shoving, as long as the view is clear and there's a backing troll.
+		for (int distance = 1;
+			distance < ray.length && isEmpty(ray[distance]) && distance <= behind.length && hasTroll(behind[distance - 1]);
+			distance++)
+		{
+			// A shove must land near dwarves.
+			if (nearbyDwarves(ray[distance]) != 0)
+			{
+				addTrollMove(moves, origin, ray[distance], true);
+				result++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 Adds the moves of a troll to a destination, one per victim if there's a choice.
+
+	 @param moves The list to add the packed moves to, or null.
+	 @param origin The square of the troll.
+	 @param destination Its destination.
+	 @param shove True if the troll shoves.
+	 */
+	private void addTrollMove(MoveList moves, int origin, int destination, boolean shove)
+	{
+		if (moves == null)
+		{
+			return;
+		}
+
+		// If there is no dwarf victim, or if it's a troll shoving, in which case for simplicity all the dwarves are killed.
+		int victims = nearbyDwarves(destination);
+		if (victims == 0 || shove)
+		{
+			moves.add(Move.pack(origin, destination, victims, false, shove));
+		}
+		// If not, only one victim can be made, create a move for each one.
+		else
+		{
+			for (int victim = victims; victim != 0; victim &= victim - 1)
+			{
+				moves.add(Move.pack(origin, destination, Integer.lowestOneBit(victim), false, false));
+			}
+		}
+	}
 }
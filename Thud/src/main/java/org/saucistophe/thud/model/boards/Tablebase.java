@@ -0,0 +1,444 @@
+package org.saucistophe.thud.model.boards;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.saucistophe.thud.model.Piece.DWARF;
+import static org.saucistophe.thud.model.Piece.TROLL;
+
+/**
+ The solved endgames of a board shape: for every position with up to a few
+ dwarves and trolls, whether the playing side can wipe out the other one, and
+ how fast. The tables are stored in a file, memory-mapped, so that they don't
+ take any room on the heap, and are shared by all the threads probing them.
+
+ The value of a position is, for the playing side:
+ - n > 0 if it wins in n moves (plies) at best, i.e. captures the last enemy piece,
+ - -n < 0 if it loses in n moves at best,
+ - 0 if neither side can force a win.
+
+ The file holds a header describing the shape, then a table per material, by
+ increasing number of dwarves, then of trolls. A position's index in its table
+ is the rank of the dwarves' squares among all the sets of this many free
+ squares, then of the trolls' among the squares left, then the playing side.
+ */
+public final class Tablebase implements AutoCloseable
+{
+	/**
+	 "THTB", identifying a tablebase file, and the version of the format.
+	 */
+	private static final int MAGIC = 0x54485442;
+	private static final int VERSION = 1;
+
+	/**
+	 The maximal number of positions of a table, so that its 2-byte values can be mapped at once.
+	 */
+	public static final long MAX_POSITIONS = Integer.MAX_VALUE / 2;
+
+	private final BoardGeometry geometry;
+	private final long[] rocks;
+	private final int maxDwarves, maxTrolls;
+
+	/**
+	 The squares pieces can stand on, i.e. without a rock, by increasing index,
+	 and the rank of each square in this list, or -1.
+	 */
+	private final int[] squares;
+	private final int[] ranks;
+
+	/**
+	 The binomial coefficients, n choose k at [n][k], up to MAX_POSITIONS + 1
+	 so that the sizes of the tables too large can't overflow.
+	 */
+	private final long[][] binomials;
+
+	private final FileChannel channel;
+
+	/**
+	 The values of the positions, by number of dwarves and trolls.
+	 */
+	private final MappedByteBuffer[][] tables;
+
+	/**
+	 @param geometry The shape of the board.
+	 @param rocks The squares holding a rock.
+	 @param maxDwarves The maximal number of dwarves.
+	 @param maxTrolls The maximal number of trolls.
+	 @param channel The file.
+	 @param headerSize The size of the file's header, where the tables start.
+	 @param mode How to map the tables.
+	 @throws IOException If the tables can't be mapped.
+	 */
+	private Tablebase(BoardGeometry geometry, long[] rocks, int maxDwarves, int maxTrolls,
+		FileChannel channel, long headerSize, MapMode mode) throws IOException
+	{
+		this.geometry = geometry;
+		this.rocks = rocks;
+		this.maxDwarves = maxDwarves;
+		this.maxTrolls = maxTrolls;
+		this.channel = channel;
+
+		List<Integer> freeSquares = new ArrayList<>();
+		ranks = new int[geometry.getWidth() * geometry.getHeight()];
+		Arrays.fill(ranks, -1);
+		for (int rank = 0; rank < geometry.getSquareCount(); rank++)
+		{
+			int square = geometry.getSquare(rank);
+			if ((rocks[square >>> 6] & 1L << square) == 0)
+			{
+				ranks[square] = freeSquares.size();
+				freeSquares.add(square);
+			}
+		}
+		squares = freeSquares.stream().mapToInt(Integer::intValue).toArray();
+
+		if (maxDwarves < 1 || maxTrolls < 1 || maxDwarves + maxTrolls > squares.length)
+		{
+			throw new IllegalArgumentException("Can't fit " + maxDwarves + " dwarves and " + maxTrolls
+				+ " trolls on " + squares.length + " squares.");
+		}
+
+		binomials = new long[squares.length + 1][Math.max(maxDwarves, maxTrolls) + 1];
+		for (int n = 0; n <= squares.length; n++)
+		{
+			binomials[n][0] = 1;
+			for (int k = 1; k < binomials[n].length; k++)
+			{
+				binomials[n][k] = n == 0 ? 0 : Math.min(MAX_POSITIONS + 1, binomials[n - 1][k - 1] + binomials[n - 1][k]);
+			}
+		}
+
+		tables = new MappedByteBuffer[maxDwarves + 1][maxTrolls + 1];
+		long offset = headerSize;
+		for (int dwarves = 1; dwarves <= maxDwarves; dwarves++)
+		{
+			for (int trolls = 1; trolls <= maxTrolls; trolls++)
+			{
+				long positions = 2 * binomials[squares.length][dwarves] * binomials[squares.length - dwarves][trolls];
+				if (positions > MAX_POSITIONS)
+				{
+					throw new IllegalArgumentException("The table of " + dwarves + " dwarves and " + trolls
+						+ " trolls has too many positions: " + positions + ".");
+				}
+				if (mode == MapMode.READ_ONLY && offset + 2 * positions > channel.size())
+				{
+					throw new IOException("The tablebase is truncated.");
+				}
+				tables[dwarves][trolls] = channel.map(mode, offset, 2 * positions);
+				offset += 2 * positions;
+			}
+		}
+	}
+
+	/**
+	 Creates an empty tablebase, every position being a draw until set.
+
+	 @param file The file to write.
+	 @param board A board of the solved shape.
+	 @param maxDwarves The maximal number of dwarves.
+	 @param maxTrolls The maximal number of trolls.
+	 @return The tablebase, to fill.
+	 @throws IOException If the file can't be written.
+	 */
+	public static Tablebase create(File file, Board board, int maxDwarves, int maxTrolls) throws IOException
+	{
+		BoardGeometry geometry = board.getGeometry();
+		long[] playable = geometry.playable();
+		ByteBuffer header = ByteBuffer.allocate(headerSize(playable.length));
+		header.putInt(MAGIC).putInt(VERSION).putInt(geometry.getWidth()).putInt(geometry.getHeight()).putInt(playable.length);
+		for (long word : playable)
+		{
+			header.putLong(word);
+		}
+		for (long word : board.rocks())
+		{
+			header.putLong(word);
+		}
+		header.putInt(maxDwarves).putInt(maxTrolls);
+		header.flip();
+
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+		try
+		{
+			randomAccessFile.setLength(0);
+			FileChannel channel = randomAccessFile.getChannel();
+			channel.write(header, 0);
+			return new Tablebase(geometry, board.rocks().clone(), maxDwarves, maxTrolls, channel, header.limit(), MapMode.READ_WRITE);
+		} catch (IOException | RuntimeException ex)
+		{
+			randomAccessFile.close();
+			throw ex;
+		}
+	}
+
+	/**
+	 Opens a tablebase to probe it.
+
+	 @param file The file of the tablebase.
+	 @return The tablebase.
+	 @throws IOException If the file can't be read, or is not a tablebase.
+	 */
+	public static Tablebase open(File file) throws IOException
+	{
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try
+		{
+			FileChannel channel = randomAccessFile.getChannel();
+			ByteBuffer start = ByteBuffer.allocate(20);
+			channel.read(start, 0);
+			start.flip();
+			if (start.remaining() < 20 || start.getInt() != MAGIC || start.getInt() != VERSION)
+			{
+				throw new IOException(file + " is not a tablebase.");
+			}
+			int width = start.getInt();
+			int height = start.getInt();
+			int words = start.getInt();
+			if (width < 1 || height < 1 || width > Board.MAX_SIZE || height > Board.MAX_SIZE || words != (width * height + 63) / 64)
+			{
+				throw new IOException(file + " is not a tablebase.");
+			}
+
+			ByteBuffer header = ByteBuffer.allocate(headerSize(words));
+			channel.read(header, 0);
+			header.position(20);
+			long[] playable = new long[words];
+			long[] rocks = new long[words];
+			for (int word = 0; word < words; word++)
+			{
+				playable[word] = header.getLong();
+			}
+			for (int word = 0; word < words; word++)
+			{
+				rocks[word] = header.getLong();
+			}
+			int maxDwarves = header.getInt();
+			int maxTrolls = header.getInt();
+
+			return new Tablebase(BoardGeometry.of(width, height, playable), rocks, maxDwarves, maxTrolls,
+				channel, header.limit(), MapMode.READ_ONLY);
+		} catch (IOException | RuntimeException ex)
+		{
+			randomAccessFile.close();
+			throw ex;
+		}
+	}
+
+	/**
+	 @param words The number of words of the boards' bitsets.
+	 @return The size of the header, in bytes.
+	 */
+	private static int headerSize(int words)
+	{
+		return 5 * 4 + 2 * 8 * words + 2 * 4;
+	}
+
+	/**
+	 @return The maximal number of dwarves.
+	 */
+	public int getMaxDwarves()
+	{
+		return maxDwarves;
+	}
+
+	/**
+	 @return The maximal number of trolls.
+	 */
+	public int getMaxTrolls()
+	{
+		return maxTrolls;
+	}
+
+	/**
+	 @param dwarves A number of dwarves, from 1 to getMaxDwarves().
+	 @param trolls A number of trolls, from 1 to getMaxTrolls().
+	 @return The number of positions of the table.
+	 */
+	public int size(int dwarves, int trolls)
+	{
+		return tables[dwarves][trolls].capacity() / 2;
+	}
+
+	/**
+	 @param board A board.
+	 @return True if the position is in the tablebase.
+	 */
+	public boolean covers(Board board)
+	{
+		int dwarves = board.numberOf(DWARF);
+		int trolls = board.numberOf(TROLL);
+		return board.getGeometry() == geometry && Arrays.equals(board.rocks(), rocks)
+			&& dwarves >= 1 && dwarves <= maxDwarves && trolls >= 1 && trolls <= maxTrolls;
+	}
+
+	/**
+	 @param board A board in the tablebase.
+	 @return The value of the position, for the playing side.
+	 */
+	public int probe(Board board)
+	{
+		return get(board.numberOf(DWARF), board.numberOf(TROLL), index(board));
+	}
+
+	/**
+	 @param dwarves The number of dwarves.
+	 @param trolls The number of trolls.
+	 @param index The index of a position in their table.
+	 @return The value of the position, for the playing side.
+	 */
+	public int get(int dwarves, int trolls, int index)
+	{
+		return tables[dwarves][trolls].getShort(2 * index);
+	}
+
+	/**
+	 @param dwarves The number of dwarves.
+	 @param trolls The number of trolls.
+	 @param index The index of a position in their table.
+	 @param value The value of the position, for the playing side.
+	 */
+	public void set(int dwarves, int trolls, int index, int value)
+	{
+		if (value < -Short.MAX_VALUE || value > Short.MAX_VALUE)
+		{
+			throw new IllegalArgumentException("Can't store a distance of " + value + " moves.");
+		}
+		tables[dwarves][trolls].putShort(2 * index, (short) value);
+	}
+
+	/**
+	 @param board A board in the tablebase.
+	 @return The index of the position in the table of its material.
+	 */
+	public int index(Board board)
+	{
+		int dwarves = board.numberOf(DWARF);
+		int trolls = board.numberOf(TROLL);
+		int[] dwarfRanks = new int[dwarves];
+		for (int slot = 0; slot < dwarves; slot++)
+		{
+			dwarfRanks[slot] = ranks[board.pieceSquare(DWARF, slot)];
+		}
+		Arrays.sort(dwarfRanks);
+
+		// The trolls are ranked among the squares left by the dwarves.
+		int[] trollRanks = new int[trolls];
+		for (int slot = 0; slot < trolls; slot++)
+		{
+			int rank = ranks[board.pieceSquare(TROLL, slot)];
+			int dwarvesBefore = 0;
+			while (dwarvesBefore < dwarves && dwarfRanks[dwarvesBefore] < rank)
+			{
+				dwarvesBefore++;
+			}
+			trollRanks[slot] = rank - dwarvesBefore;
+		}
+		Arrays.sort(trollRanks);
+
+		long trollSets = binomials[squares.length - dwarves][trolls];
+		long index = combinationRank(dwarfRanks) * trollSets + combinationRank(trollRanks);
+		return (int) (2 * index + (board.dwarvesTurn ? 0 : 1));
+	}
+
+	/**
+	 Puts a position of the tablebase on a board.
+
+	 @param board A board of the tablebase's shape, whose pieces are replaced.
+	 @param dwarves The number of dwarves.
+	 @param trolls The number of trolls.
+	 @param index The index of the position in their table.
+	 */
+	public void setPosition(Board board, int dwarves, int trolls, int index)
+	{
+		board.dwarvesTurn = index % 2 == 0;
+		long trollSets = binomials[squares.length - dwarves][trolls];
+		int[] dwarfRanks = combination(index / 2 / trollSets, dwarves);
+		int[] trollRanks = combination(index / 2 % trollSets, trolls);
+
+		int[] dwarfSquares = new int[dwarves];
+		for (int i = 0; i < dwarves; i++)
+		{
+			dwarfSquares[i] = squares[dwarfRanks[i]];
+		}
+
+		// Skip the dwarves' squares, the ranks being in increasing order.
+		int[] trollSquares = new int[trolls];
+		int dwarvesBefore = 0;
+		for (int i = 0; i < trolls; i++)
+		{
+			while (dwarvesBefore < dwarves && dwarfRanks[dwarvesBefore] <= trollRanks[i] + dwarvesBefore)
+			{
+				dwarvesBefore++;
+			}
+			trollSquares[i] = squares[trollRanks[i] + dwarvesBefore];
+		}
+
+		board.setPieces(dwarfSquares, dwarves, trollSquares, trolls);
+	}
+
+	/**
+	 @param combination Distinct numbers, in increasing order.
+	 @return The rank of the combination in the combinatorial number system.
+	 */
+	private long combinationRank(int[] combination)
+	{
+		long result = 0;
+		for (int i = 0; i < combination.length; i++)
+		{
+			result += binomials[combination[i]][i + 1];
+		}
+		return result;
+	}
+
+	/**
+	 @param rank The rank of a combination in the combinatorial number system.
+	 @param size The size of the combination.
+	 @return The combination, in increasing order.
+	 */
+	private int[] combination(long rank, int size)
+	{
+		int[] result = new int[size];
+		int candidate = squares.length - 1;
+		for (int i = size; i > 0; i--)
+		{
+			while (binomials[candidate][i] > rank)
+			{
+				candidate--;
+			}
+			result[i - 1] = candidate;
+			rank -= binomials[candidate][i];
+			candidate--;
+		}
+		return result;
+	}
+
+	/**
+	 Writes the tables to the disk, after changes.
+	 */
+	public void flush()
+	{
+		for (MappedByteBuffer[] dwarfTables : tables)
+		{
+			for (MappedByteBuffer table : dwarfTables)
+			{
+				if (table != null && !table.isReadOnly())
+				{
+					table.force();
+				}
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		channel.close();
+	}
+}
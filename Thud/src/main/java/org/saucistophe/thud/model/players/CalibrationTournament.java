@@ -0,0 +1,336 @@
+package org.saucistophe.thud.model.players;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.saucistophe.math.genetics.BasicNaturalSelection.MIXING_FACTOR;
+import org.saucistophe.thud.model.Move;
+import static org.saucistophe.thud.model.Piece.DWARF;
+import static org.saucistophe.thud.model.Piece.TROLL;
+import org.saucistophe.thud.model.boards.Board;
+import org.saucistophe.thud.model.boards.GameRecordWriter;
+
+/**
+ Calibrates the evaluation of the negamax player by natural selection, playing
+ the games of each generation at once on all the cores.
+
+ Each generation, every player plays every other one twice, once per side. Each
+ game has its own board and its own copies of the players, with their own
+ search settings and transposition tables, so the games don't share anything.
+ The best players survive, along with the children of each pair of them, and
+ new random players make up the rest of the population.
+
+ The games start with a few random moves, so that the same players don't play
+ the same game twice. The randomness of each game and of each generation comes
+ from the tournament's seed: with searches limited by depth or nodes, a
+ tournament gives the same results whatever the number of threads.
+
+ Usage: CalibrationTournament board.thud generations [depth] [threads] [seed]
+ */
+public class CalibrationTournament
+{
+	/**
+	 The number of players, and of the best ones surviving each generation.
+	 */
+	public static final int POPULATION = MIXING_FACTOR * (MIXING_FACTOR + 2);
+	public static final int SURVIVORS = MIXING_FACTOR;
+
+	/**
+	 The number of moves of a game, after which the material decides.
+	 */
+	public static final int MAX_MOVES = 1000;
+
+	/**
+	 The number of random moves starting each game.
+	 */
+	public static final int OPENING_MOVES = 2;
+
+	/**
+	 The initial board, read once.
+	 */
+	private static Board defaultBoard = null;
+
+	private final Board board;
+	private final SearchSettings settings;
+	private final int threads;
+	private final long seed;
+
+	private List<NegamaxPlayer> population = new ArrayList<>();
+	private int generation = 0;
+
+	/**
+	 The games played so far, and the time spent playing them, in ns.
+	 */
+	private long games = 0;
+	private long playingTime = 0;
+
+	/**
+	 @param board The board the games start from.
+	 @param settings The search settings of the players, forced to a single thread, as the games run in parallel.
+	 @param threads The number of games played at once.
+	 @param seed The seed of the tournament's randomness.
+	 */
+	public CalibrationTournament(Board board, SearchSettings settings, int threads, long seed)
+	{
+		this.board = board.cloneBoard();
+		this.settings = new SearchSettings(settings.getMaxDepth(), settings.getMoveTime(), settings.getMoveNodes(),
+			settings.getQuiescenceDepth(), 1, settings.getSplitDepth(), settings.getTranspositionTableSize());
+		this.threads = threads;
+		this.seed = seed;
+
+		Random random = generationRandom();
+		for (int i = 0; i < POPULATION; i++)
+		{
+			NegamaxPlayer player = new NegamaxPlayer();
+			player.randomize(random);
+			population.add(player);
+		}
+	}
+
+	/**
+	 @return The random generator of the current generation.
+	 */
+	private Random generationRandom()
+	{
+		return new Random(seed * 31 + generation);
+	}
+
+	/**
+	 @param game The index of a game of the current generation.
+	 @return The random generator of the game.
+	 */
+	private Random gameRandom(int game)
+	{
+		return new Random((seed * 31 + generation) * POPULATION * POPULATION + game);
+	}
+
+	/**
+	 @return A copy of the initial board, on which the players are calibrated by default.
+	 */
+	static synchronized Board defaultBoard()
+	{
+		if (defaultBoard == null)
+		{
+			try
+			{
+				defaultBoard = Board.readFromStream(CalibrationTournament.class.getClassLoader().getResourceAsStream("initialBoard.thud"));
+			} catch (IOException ex)
+			{
+				throw new IllegalStateException("The initial board can't be read.", ex);
+			}
+		}
+		return defaultBoard.cloneBoard();
+	}
+
+	/**
+	 Plays a game, the players playing as they are.
+
+	 @param dwarves The dwarves' player.
+	 @param trolls The trolls' player.
+	 @param board The board to play on, changed.
+	 @param maxMoves The maximal number of moves.
+	 @param records The writer recording the game as it is played, or null.
+	 @return The dwarves' score: the number of dwarves left, minus 4 per troll left.
+	 */
+	static int playGame(NegamaxPlayer dwarves, NegamaxPlayer trolls, Board board, int maxMoves, GameRecordWriter records)
+	{
+		try
+		{
+			if (records != null)
+			{
+				records.startGame(board);
+			}
+			for (int move = 0; move < maxMoves && board.numberOf(DWARF) > 0 && board.numberOf(TROLL) > 0; move++)
+			{
+				NegamaxPlayer player = board.dwarvesTurn ? dwarves : trolls;
+				SearchSettings playerSettings = player.getSearchSettings();
+				SearchBudget budget = playerSettings.newBudget();
+				Move bestMove = player.search(board, playerSettings.lastDepth(budget), budget);
+				if (bestMove == null)
+				{
+					break;
+				}
+				board.makeMove(bestMove);
+				if (records != null)
+				{
+					records.addMove(bestMove.pack());
+				}
+			}
+			if (records != null)
+			{
+				records.endGame();
+			}
+		} catch (IOException ex)
+		{
+			throw new IllegalStateException("The game can't be recorded.", ex);
+		}
+		return board.numberOf(DWARF) - 4 * board.numberOf(TROLL);
+	}
+
+	/**
+	 @param calibrated A player.
+	 @return A fresh copy of the player, with the tournament's settings.
+	 */
+	private NegamaxPlayer contender(NegamaxPlayer calibrated)
+	{
+		NegamaxPlayer result = calibrated.copyCalibration();
+		result.setSearchSettings(settings);
+		return result;
+	}
+
+	/**
+	 Plays a generation's games, then breeds the next generation.
+	 */
+	public void iterate()
+	{
+		// Every player plays every other one, as the dwarves.
+		List<Callable<Integer>> gameTasks = new ArrayList<>();
+		List<int[]> pairings = new ArrayList<>();
+		for (int first = 0; first < population.size(); first++)
+		{
+			for (int second = 0; second < population.size(); second++)
+			{
+				if (first != second)
+				{
+					// The players are copied when the game starts, so that only the running games hold transposition tables.
+					NegamaxPlayer dwarves = population.get(first);
+					NegamaxPlayer trolls = population.get(second);
+					Random random = gameRandom(pairings.size());
+					gameTasks.add(() -> playGame(contender(dwarves), contender(trolls), randomOpening(random), MAX_MOVES, null));
+					pairings.add(new int[]
+					{
+						first, second
+					});
+				}
+			}
+		}
+
+		long start = System.nanoTime();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try
+		{
+			// The results are added up in the order of the games, whichever ends first.
+			List<Future<Integer>> scores = executor.invokeAll(gameTasks);
+			for (NegamaxPlayer player : population)
+			{
+				player.fitness = 0;
+			}
+			for (int game = 0; game < scores.size(); game++)
+			{
+				int score = scores.get(game).get();
+				population.get(pairings.get(game)[0]).fitness += score;
+				population.get(pairings.get(game)[1]).fitness -= score;
+			}
+		} catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("The tournament was interrupted.", ex);
+		} catch (ExecutionException ex)
+		{
+			throw new IllegalStateException("A game failed.", ex.getCause());
+		} finally
+		{
+			executor.shutdown();
+		}
+		games += gameTasks.size();
+		playingTime += System.nanoTime() - start;
+
+		// The stable sort keeps the order of the players of equal fitness.
+		population.sort(Comparator.comparingInt((NegamaxPlayer player) -> player.fitness).reversed());
+
+		// The survivors, their children, and new players.
+		generation++;
+		List<NegamaxPlayer> nextGeneration = new ArrayList<>(population.subList(0, SURVIVORS));
+		for (int first = 0; first < SURVIVORS; first++)
+		{
+			for (int second = first + 1; second < SURVIVORS; second++)
+			{
+				nextGeneration.add((NegamaxPlayer) population.get(first).makeChild(population.get(second)));
+			}
+		}
+		Random random = generationRandom();
+		while (nextGeneration.size() < POPULATION)
+		{
+			NegamaxPlayer player = new NegamaxPlayer();
+			player.randomize(random);
+			nextGeneration.add(player);
+		}
+		population = nextGeneration;
+	}
+
+	/**
+	 @param random The game's random generator.
+	 @return A copy of the tournament's board, after a few random moves.
+	 */
+	private Board randomOpening(Random random)
+	{
+		Board result = board.cloneBoard();
+		for (int move = 0; move < OPENING_MOVES; move++)
+		{
+			List<Move> moves = result.legalMoves();
+			if (moves.isEmpty())
+			{
+				break;
+			}
+			result.makeMove(moves.get(random.nextInt(moves.size())));
+		}
+		return result;
+	}
+
+	/**
+	 @return The current players, the best first once a generation was played.
+	 */
+	public List<NegamaxPlayer> getPopulation()
+	{
+		return population;
+	}
+
+	/**
+	 @return The number of generations played.
+	 */
+	public int getGeneration()
+	{
+		return generation;
+	}
+
+	/**
+	 @return The number of games played per hour so far, all threads included.
+	 */
+	public double getGamesPerHour()
+	{
+		return playingTime == 0 ? 0 : games * 3600e9 / playingTime;
+	}
+
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length < 2)
+		{
+			System.err.println("Usage: CalibrationTournament board.thud generations [depth] [threads] [seed]");
+			System.exit(1);
+		}
+
+		Board board = Board.readFromFile(new File(args[0]));
+		int generations = Integer.parseInt(args[1]);
+		int depth = args.length > 2 ? Integer.parseInt(args[2]) : NegamaxPlayer.MAX_DEPTH;
+		int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+		long seed = args.length > 4 ? Long.parseLong(args[4]) : System.currentTimeMillis();
+
+		System.out.println("Seed: " + seed);
+		CalibrationTournament tournament = new CalibrationTournament(board, new SearchSettings(depth, 0, 0,
+			NegamaxPlayer.QUIESCENCE_DEPTH, 1, 16), threads, seed);
+		for (int i = 0; i < generations; i++)
+		{
+			tournament.iterate();
+			System.out.println("Generation " + i + ": " + tournament.getPopulation().get(0)
+				+ ", " + (long) tournament.getGamesPerHour() + " games per hour");
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package org.saucistophe.thud.model.players;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ Publishes the search statistics as Java Flight Recorder events, which can be
+ recorded in production, e.g. with -XX:StartFlightRecording, and read with JDK
+ Mission Control. The events cost nearly nothing when not recorded.
+
+ Requires a JVM with the jdk.jfr module: Java 11, or Java 8 from update 272.
+ */
+class FlightRecorderListener implements SearchListener
+{
+	@Override
+	public void iterationCompleted(SearchStatistics statistics)
+	{
+		IterationEvent event = new IterationEvent();
+		if (event.isEnabled())
+		{
+			event.fill(statistics);
+			event.commit();
+		}
+	}
+
+	@Override
+	public void searchCompleted(SearchStatistics statistics)
+	{
+		SearchEvent event = new SearchEvent();
+		if (event.isEnabled())
+		{
+			event.fill(statistics);
+			event.commit();
+		}
+	}
+
+	/**
+	 The fields shared by both events.
+	 */
+	@Category(
+		{
+			"Thud", "Search"
+		})
+	abstract static class StatisticsEvent extends Event
+	{
+		@Label("Depth")
+		int depth;
+
+		@Label("Score")
+		int score;
+
+		@Label("Nodes")
+		long nodes;
+
+		@Label("Quiescence Nodes")
+		@Description("The positions visited beyond the set depth, to resolve the captures")
+		long quiescenceNodes;
+
+		@Label("Evaluations")
+		long evaluations;
+
+		@Label("Time")
+		@Timespan(Timespan.MILLISECONDS)
+		long time;
+
+		@Label("Nodes per Second")
+		long nodesPerSecond;
+
+		@Label("Branching Factor")
+		@Description("The nodes of the last iteration divided by those of the previous one")
+		double branchingFactor;
+
+		@Label("Cutoff Rate")
+		@Description("The share of the searched positions that had a beta cutoff")
+		double cutoffRate;
+
+		@Label("First Move Cutoff Rate")
+		@Description("The share of the cutoffs caused by the first move searched")
+		double firstMoveCutoffRate;
+
+		@Label("Transposition Hit Rate")
+		double transpositionHitRate;
+
+		void fill(SearchStatistics statistics)
+		{
+			depth = statistics.getDepth();
+			score = statistics.getScore();
+			nodes = statistics.getNodes();
+			quiescenceNodes = statistics.getQuiescenceNodes();
+			evaluations = statistics.getEvaluations();
+			time = statistics.getTime();
+			nodesPerSecond = statistics.getNodesPerSecond();
+			branchingFactor = statistics.getBranchingFactor();
+			cutoffRate = statistics.getCutoffRate();
+			firstMoveCutoffRate = statistics.getFirstMoveCutoffRate();
+			transpositionHitRate = statistics.getTranspositionHitRate();
+		}
+	}
+
+	@Name("org.saucistophe.thud.SearchIteration")
+	@Label("Search Iteration")
+	@Description("An iteration of the AI's search, at a given depth")
+	static class IterationEvent extends StatisticsEvent
+	{
+	}
+
+	@Name("org.saucistophe.thud.Search")
+	@Label("Search")
+	@Description("A whole search of the AI for a move")
+	static class SearchEvent extends StatisticsEvent
+	{
+	}
+}
@@ -0,0 +1,578 @@
+package org.saucistophe.thud.model.players;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.saucistophe.annotations.SettingsField;
+import org.saucistophe.math.genetics.Individual;
+import org.saucistophe.thud.model.Move;
+import org.saucistophe.thud.model.MoveList;
+import static org.saucistophe.thud.model.Piece.DWARF;
+import static org.saucistophe.thud.model.Piece.TROLL;
+import org.saucistophe.thud.model.boards.Board;
+
+/**
+ A Monte Carlo Tree Search player: instead of searching all the moves to a
+ given depth, it plays many quick random games, or playouts, from the current
+ position, and grows a tree of the moves that led to the best results, using
+ the UCT formula to balance the most promising moves and the least explored
+ ones.
+
+ The threads share the same tree. A thread going down a node counts its visit
+ at once, before its playout's result is known, which lowers the node's score
+ meanwhile: this virtual loss leads the other threads towards other moves.
+
+ Thud's games are long, so a playout stops after a few moves, and is scored by
+ the material left, as in the game's final count: a dwarf is worth 1, a troll 4.
+ */
+public class MctsPlayer extends Player
+{
+	/**
+	 This class' logger.
+	 */
+	public static Logger LOGGER = Logger.getLogger(MctsPlayer.class.getName());
+
+	@SettingsField(category = "Monte Carlo AI", name = "Playouts per move (0 for a time limit only)", minValue = 0, maxValue = Integer.MAX_VALUE)
+	public static int MOVE_PLAYOUTS = 0;
+
+	@SettingsField(category = "Monte Carlo AI", name = "Time per move in ms (0 for a playouts limit only)", minValue = 0, maxValue = 3600000)
+	public static int MOVE_TIME = 5000;
+
+	@SettingsField(category = "Monte Carlo AI", name = "Playout threads", minValue = 1, maxValue = 256)
+	public static int PLAYOUT_THREADS = Runtime.getRuntime().availableProcessors();
+
+	@SettingsField(category = "Monte Carlo AI", name = "Moves per playout", minValue = 1, maxValue = 1000)
+	public static int PLAYOUT_LENGTH = 20;
+
+	@SettingsField(category = "Monte Carlo AI", name = "Exploration (in hundredths)", minValue = 0, maxValue = 1000)
+	public static int EXPLORATION = 100;
+
+	@SettingsField(category = "Monte Carlo AI", name = "Chance to play a capture in playouts (%)", minValue = 0, maxValue = 100)
+	public static int CAPTURE_BIAS = 80;
+
+	/**
+	 The playouts per move when neither the time nor the playouts are limited.
+	 */
+	public static final int DEFAULT_PLAYOUTS = 10000;
+
+	/**
+	 The rewards are summed as fixed point numbers, in millionths.
+	 */
+	private static final long REWARD_UNIT = 1_000_000;
+
+	/**
+	 The material difference, in the game's points, worth about three chances
+	 out of four to win. A troll is worth 4, so losing one lowers the reward noticeably.
+	 */
+	private static final double REWARD_SCALE = 4;
+
+	/**
+	 The seeds of the threads' random generators.
+	 */
+	private final SplittableRandom seeds;
+
+	/**
+	 The budget of the current search.
+	 */
+	private volatile SearchBudget budget;
+
+	/**
+	 The number of playouts of the last search, and their rate.
+	 */
+	private long lastPlayouts = 0;
+	private double lastPlayoutsPerSecond = 0;
+
+	public MctsPlayer()
+	{
+		this(new SplittableRandom().nextLong());
+	}
+
+	/**
+	 @param seed The seed of the playouts' randomness; with a single thread, a player always plays the same moves.
+	 */
+	public MctsPlayer(long seed)
+	{
+		seeds = new SplittableRandom(seed);
+	}
+
+	/**
+	 Scores the board as in the end of a game: 1 point per dwarf, 4 per troll.
+	 */
+	@Override
+	public int evaluate(Board evaluatedBoard)
+	{
+		int result = material(evaluatedBoard);
+		return evaluatedBoard.dwarvesTurn ? result : -result;
+	}
+
+	/**
+	 @param board A board.
+	 @return The dwarves' points, minus the trolls' ones.
+	 */
+	private static int material(Board board)
+	{
+		return board.numberOf(DWARF) - 4 * board.numberOf(TROLL);
+	}
+
+	/**
+	 @return A budget for a move following the settings, or of DEFAULT_PLAYOUTS playouts if they set no limit.
+	 */
+	static SearchBudget newBudget()
+	{
+		long time = MOVE_TIME;
+		long playouts = MOVE_PLAYOUTS;
+		return new SearchBudget(time, time == 0 && playouts == 0 ? DEFAULT_PLAYOUTS : playouts);
+	}
+
+	@Override
+	public Board makeBestMove(Board evaluatedBoard)
+	{
+		Move result = search(evaluatedBoard, newBudget(), PLAYOUT_THREADS);
+		if (result != null)
+		{
+			evaluatedBoard.makeMove(result);
+		}
+		return evaluatedBoard;
+	}
+
+	/**
+	 Searches the best move of a position, without playing it.
+
+	 @param evaluatedBoard The board to search, left unchanged.
+	 @param searchBudget The time and playouts allowed, which can also be aborted to stop the search.
+	 @param threads The number of threads running playouts.
+	 @return The most explored move, or null if there is none.
+	 */
+	public Move search(Board evaluatedBoard, SearchBudget searchBudget, int threads)
+	{
+		budget = searchBudget;
+		long searchStart = System.currentTimeMillis();
+
+		Node root = new Node(null, 0, !evaluatedBoard.dwarvesTurn);
+		Board rootBoard = evaluatedBoard.cloneBoard();
+		root.expand(rootBoard, new MoveList());
+		if (root.children.length == 0)
+		{
+			return null;
+		}
+
+		// Without a limit, a search would never end.
+		if (!searchBudget.isLimited())
+		{
+			throw new IllegalArgumentException("A Monte Carlo search needs a time or playouts limit.");
+		}
+
+		if (threads == 1)
+		{
+			new Worker(root, rootBoard, seeds.split(), true).run();
+		}
+		else
+		{
+			List<Callable<Void>> workers = new ArrayList<>();
+			for (int i = 0; i < threads; i++)
+			{
+				Worker worker = new Worker(root, rootBoard.cloneBoard(), seeds.split(), i == 0);
+				workers.add(() ->
+				{
+					worker.run();
+					return null;
+				});
+			}
+			ExecutorService executor = Executors.newFixedThreadPool(threads);
+			try
+			{
+				for (Future<Void> worker : executor.invokeAll(workers))
+				{
+					worker.get();
+				}
+			} catch (InterruptedException ex)
+			{
+				Thread.currentThread().interrupt();
+				searchBudget.abort();
+			} catch (ExecutionException ex)
+			{
+				throw new IllegalStateException("A playout failed.", ex.getCause());
+			} finally
+			{
+				executor.shutdown();
+			}
+		}
+
+		// The most visited move is the safest: its score is the most reliable.
+		Node best = root.children[0];
+		for (Node child : root.children)
+		{
+			if (child.visits > best.visits || child.visits == best.visits && child.reward > best.reward)
+			{
+				best = child;
+			}
+		}
+
+		long elapsed = Math.max(1, System.currentTimeMillis() - searchStart);
+		lastPlayouts = root.visits;
+		lastPlayoutsPerSecond = lastPlayouts * 1000.0 / elapsed;
+		if (LOGGER.isLoggable(Level.FINE))
+		{
+			LOGGER.log(Level.FINE, "{0} playouts in {1} ms ({2} per second), {3} played {4} times, winning {5}%", new Object[]
+			{
+				lastPlayouts, elapsed, (long) lastPlayoutsPerSecond, rootBoard.moveText(Move.unpack(best.move)),
+				best.visits, best.visits == 0 ? 0 : 100 * best.reward / REWARD_UNIT / best.visits
+			});
+		}
+
+		return Move.unpack(best.move);
+	}
+
+	/**
+	 Stops the current search, if any, which then returns the best move found so far.
+	 */
+	public void stopSearch()
+	{
+		SearchBudget searchBudget = budget;
+		if (searchBudget != null)
+		{
+			searchBudget.abort();
+		}
+	}
+
+	/**
+	 @return The number of playouts of the last search.
+	 */
+	public long getLastPlayouts()
+	{
+		return lastPlayouts;
+	}
+
+	/**
+	 @return The number of playouts per second of the last search, all threads included.
+	 */
+	public double getLastPlayoutsPerSecond()
+	{
+		return lastPlayoutsPerSecond;
+	}
+
+	/**
+	 A position of the tree, reached by a move from its parent.
+	 */
+	private static final class Node
+	{
+		private static final AtomicIntegerFieldUpdater<Node> VISITS = AtomicIntegerFieldUpdater.newUpdater(Node.class, "visits");
+		private static final AtomicLongFieldUpdater<Node> REWARD = AtomicLongFieldUpdater.newUpdater(Node.class, "reward");
+
+		private final Node parent;
+
+		/**
+		 The move leading to this position, packed, and the side that played it.
+		 */
+		private final int move;
+		private final boolean dwarfMove;
+
+		/**
+		 The playouts that went through this position, including the ones still running.
+		 */
+		private volatile int visits = 0;
+
+		/**
+		 The rewards of the finished playouts, for the side that played the move, in REWARD_UNIT.
+		 */
+		private volatile long reward = 0;
+
+		/**
+		 The positions after each move, or null until the position is expanded.
+		 */
+		private volatile Node[] children = null;
+
+		Node(Node parent, int move, boolean dwarfMove)
+		{
+			this.parent = parent;
+			this.move = move;
+			this.dwarfMove = dwarfMove;
+		}
+
+		/**
+		 Adds the children of this node, unless another thread did.
+
+		 @param board The position of this node.
+		 @param moves A list to generate the moves in.
+		 */
+		synchronized void expand(Board board, MoveList moves)
+		{
+			if (children != null)
+			{
+				return;
+			}
+
+			// Once a side is wiped out, the game is over.
+			Node[] newChildren;
+			if (board.numberOf(DWARF) == 0 || board.numberOf(TROLL) == 0)
+			{
+				newChildren = new Node[0];
+			}
+			else
+			{
+				board.generateMoves(moves);
+				newChildren = new Node[moves.size()];
+				for (int i = 0; i < moves.size(); i++)
+				{
+					newChildren[i] = new Node(this, moves.get(i), board.dwarvesTurn);
+				}
+			}
+			children = newChildren;
+		}
+
+		/**
+		 @param exploration The weight of the exploration.
+		 @return The child with the best upper confidence bound, or the first one never visited.
+		 */
+		Node select(double exploration)
+		{
+			double logVisits = Math.log(Math.max(1, visits));
+			Node best = null;
+			double bestValue = Double.NEGATIVE_INFINITY;
+			for (Node child : children)
+			{
+				int childVisits = child.visits;
+				if (childVisits == 0)
+				{
+					return child;
+				}
+				double value = (double) child.reward / REWARD_UNIT / childVisits + exploration * Math.sqrt(logVisits / childVisits);
+				if (value > bestValue)
+				{
+					bestValue = value;
+					best = child;
+				}
+			}
+			return best;
+		}
+	}
+
+	/**
+	 A thread's share of the search: it repeatedly goes down the tree, expands
+	 it, plays a playout, and updates the nodes it went through.
+	 */
+	private final class Worker
+	{
+		private final Node root;
+		private final Board board;
+		private final SplittableRandom random;
+		private final MoveList moves = new MoveList();
+
+		/**
+		 True for the worker reporting the progress.
+		 */
+		private final boolean reporting;
+
+		/**
+		 The dwarves' points minus the trolls' ones at the root.
+		 */
+		private final int rootMaterial;
+
+		/**
+		 The moves played from the root, packed, to unmake them after the playout.
+		 */
+		private int[] path = new int[64];
+		private int pathLength;
+
+		Worker(Node root, Board board, SplittableRandom random, boolean reporting)
+		{
+			this.root = root;
+			this.board = board;
+			this.random = random;
+			this.reporting = reporting;
+			rootMaterial = material(board);
+		}
+
+		void run()
+		{
+			double exploration = EXPLORATION / 100.0;
+			int playoutLength = PLAYOUT_LENGTH;
+			int captureBias = CAPTURE_BIAS;
+			int lastProgress = -1;
+
+			do
+			{
+				pathLength = 0;
+
+				// Selection: go down the tree, counting the visits at once as virtual losses.
+				Node node = root;
+				Node.VISITS.incrementAndGet(node);
+				while (node.children != null && node.children.length > 0)
+				{
+					node = node.select(exploration);
+					Node.VISITS.incrementAndGet(node);
+					play(node.move);
+				}
+
+				// Expansion: add the children of the reached position, and go down one of them.
+				node.expand(board, moves);
+				if (node.children.length > 0)
+				{
+					node = node.children[random.nextInt(node.children.length)];
+					Node.VISITS.incrementAndGet(node);
+					play(node.move);
+				}
+
+				// Simulation, from the dwarves' point of view.
+				double dwarfReward = playout(playoutLength, captureBias);
+
+				// Backpropagation.
+				long dwarfRewardUnits = (long) (dwarfReward * REWARD_UNIT);
+				for (; node != null; node = node.parent)
+				{
+					Node.REWARD.addAndGet(node, node.dwarfMove ? dwarfRewardUnits : REWARD_UNIT - dwarfRewardUnits);
+				}
+
+				while (pathLength > 0)
+				{
+					board.unmakeMove(path[--pathLength]);
+				}
+
+				if (reporting && progressCallback != null && budget.progress() != lastProgress)
+				{
+					lastProgress = budget.progress();
+					progressCallback.accept(lastProgress);
+				}
+			} while (!budget.spend(1));
+		}
+
+		/**
+		 @param packedMove A move to make on the board, and to unmake later.
+		 */
+		private void play(int packedMove)
+		{
+			if (pathLength == path.length)
+			{
+				path = Arrays.copyOf(path, 2 * pathLength);
+			}
+			path[pathLength++] = packedMove;
+			board.makeMove(packedMove);
+		}
+
+		/**
+		 Plays random moves, preferring captures, until the game ends or the playout is long enough.
+
+		 @param playoutLength The maximal number of moves.
+		 @param captureBias The chance, in percents, to play a capture when there's one.
+		 @return The reward of the dwarves, from 0 for a loss to 1 for a win.
+		 */
+		private double playout(int playoutLength, int captureBias)
+		{
+			for (int ply = 0; ply < playoutLength; ply++)
+			{
+				if (board.numberOf(DWARF) == 0 || board.numberOf(TROLL) == 0)
+				{
+					break;
+				}
+				board.generateMoves(moves);
+				if (moves.size() == 0)
+				{
+					break;
+				}
+
+				int captures = 0;
+				if (random.nextInt(100) < captureBias)
+				{
+					for (int i = 0; i < moves.size(); i++)
+					{
+						if (Move.numberOfCaptures(moves.get(i)) > 0)
+						{
+							captures++;
+						}
+					}
+				}
+
+				int chosenMove;
+				if (captures > 0)
+				{
+					int capture = random.nextInt(captures);
+					int i = 0;
+					while (Move.numberOfCaptures(moves.get(i)) == 0 || capture-- > 0)
+					{
+						i++;
+					}
+					chosenMove = moves.get(i);
+				}
+				else
+				{
+					chosenMove = moves.get(random.nextInt(moves.size()));
+				}
+				play(chosenMove);
+			}
+
+			if (board.numberOf(TROLL) == 0)
+			{
+				return 1;
+			}
+			if (board.numberOf(DWARF) == 0)
+			{
+				return 0;
+			}
+			return 1 / (1 + Math.exp(-(material(board) - rootMaterial) / REWARD_SCALE));
+		}
+	}
+
+	/**
+	 Plays a game between two Monte Carlo players, each move with a budget following the settings.
+
+	 @param dwarves The dwarves' player.
+	 @param trolls The trolls' player.
+	 @param board The starting board, played on.
+	 @param maxMoves The maximal number of moves of the game.
+	 @return The dwarves' points minus the trolls' ones at the end of the game.
+	 */
+	static int playGame(MctsPlayer dwarves, MctsPlayer trolls, Board board, int maxMoves)
+	{
+		for (int move = 0; move < maxMoves && board.numberOf(DWARF) > 0 && board.numberOf(TROLL) > 0; move++)
+		{
+			MctsPlayer player = board.dwarvesTurn ? dwarves : trolls;
+			Move bestMove = player.search(board, newBudget(), PLAYOUT_THREADS);
+			if (bestMove == null)
+			{
+				break;
+			}
+			board.makeMove(bestMove);
+		}
+		return material(board);
+	}
+
+	/**
+	 The Monte Carlo player has no calibration values.
+	 */
+	@Override
+	public void randomize()
+	{
+	}
+
+	/**
+	 The Monte Carlo player has no calibration values: a child only differs by its randomness.
+	 */
+	@Override
+	public Individual makeChild(Individual otherIndividual)
+	{
+		return new MctsPlayer(seeds.nextLong());
+	}
+
+	@Override
+	public void fight(Individual otherIndividual)
+	{
+		MctsPlayer otherMctsPlayer = (MctsPlayer) otherIndividual;
+
+		// Since the dwarves play first, the first player, me, plays the dwarves.
+		int score = playGame(this, otherMctsPlayer, CalibrationTournament.defaultBoard(), CalibrationTournament.MAX_MOVES);
+
+		// Update the fitnesses of the players.
+		fitness += score;
+		otherMctsPlayer.fitness -= score;
+	}
+}
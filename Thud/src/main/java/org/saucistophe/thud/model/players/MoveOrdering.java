@@ -0,0 +1,182 @@
+package org.saucistophe.thud.model.players;
+
+import java.util.Arrays;
+import org.saucistophe.thud.model.Move;
+import org.saucistophe.thud.model.MoveList;
+import org.saucistophe.thud.model.boards.Board;
+
+/**
+ Orders the moves of a position so that the ones most likely to be the best
+ are searched first, which is where alpha-beta pruning pays off. The moves come
+ by stages: the best move known from the transposition table, then the
+ captures by number of victims, then the killer moves, i.e. quiet moves that
+ caused a cutoff at the same ply, and finally the other quiet moves, by their
+ history of cutoffs.
+ */
+public class MoveOrdering
+{
+	/**
+	 The scores of the stages. Quiet moves are scored by their history, below KILLER.
+	 */
+	private static final int TRANSPOSITION_MOVE = Integer.MAX_VALUE, CAPTURE = 1 << 30, KILLER = 1 << 29;
+
+	/**
+	 The number of killer moves kept per ply.
+	 */
+	private static final int KILLERS_PER_PLY = 2;
+
+	/**
+	 The number of squares of the largest board.
+	 */
+	private static final int SQUARES = Board.MAX_SIZE * Board.MAX_SIZE;
+
+	/**
+	 The killer moves, packed, for each ply.
+	 */
+	private final int[][] killers = new int[TranspositionTable.MAX_DEPTH + 1][KILLERS_PER_PLY];
+
+	/**
+	 The history of cutoffs caused by each move, indexed by side, then origin and destination.
+	 */
+	private final int[][] history = new int[2][SQUARES * SQUARES];
+
+	/**
+	 The moves being sorted with their scores, reused from one sort to another.
+	 */
+	private long[] scoredMoves = new long[0];
+	private int[] originalMoves = new int[0];
+
+	/**
+	 Prepares for a new search: killer moves are forgotten, and the history ages.
+	 */
+	public void newSearch()
+	{
+		for (int[] plyKillers : killers)
+		{
+			Arrays.fill(plyKillers, 0);
+		}
+		for (int[] sideHistory : history)
+		{
+			for (int i = 0; i < sideHistory.length; i++)
+			{
+				sideHistory[i] /= 2;
+			}
+		}
+	}
+
+	/**
+	 Forgets the killer moves and the history, e.g. before a new game.
+	 */
+	public void clear()
+	{
+		for (int[] plyKillers : killers)
+		{
+			Arrays.fill(plyKillers, 0);
+		}
+		for (int[] sideHistory : history)
+		{
+			Arrays.fill(sideHistory, 0);
+		}
+	}
+
+	/**
+	 Sorts the moves, the most promising first.
+
+	 @param moves The moves to sort.
+	 @param transpositionEntry The transposition table's entry of the position, or 0.
+	 @param ply The ply of the position in the search.
+	 @param dwarvesTurn True if the dwarves are playing.
+	 */
+	public void sort(MoveList moves, long transpositionEntry, int ply, boolean dwarvesTurn)
+	{
+		int[] sideHistory = history[dwarvesTurn ? 0 : 1];
+		int[] plyKillers = killers[ply];
+
+		int size = moves.size();
+		if (scoredMoves.length < size)
+		{
+			scoredMoves = new long[size];
+			originalMoves = new int[size];
+		}
+
+		// Score each move, then sort by decreasing scores.
+		for (int i = 0; i < size; i++)
+		{
+			int move = moves.get(i);
+			originalMoves[i] = move;
+			int score;
+			if (transpositionEntry != 0 && TranspositionTable.isBestMove(transpositionEntry, move))
+			{
+				score = TRANSPOSITION_MOVE;
+			}
+			else if (Move.numberOfCaptures(move) > 0)
+			{
+				score = CAPTURE + Move.numberOfCaptures(move);
+			}
+			else if (isKiller(plyKillers, move))
+			{
+				score = KILLER;
+			}
+			else
+			{
+				score = sideHistory[Move.origin(move) * SQUARES + Move.destination(move)];
+			}
+
+			// Keep the original index in the lower bits, so that ties keep the generation order.
+			scoredMoves[i] = (long) -score << 32 | i;
+		}
+		Arrays.sort(scoredMoves, 0, size);
+
+		for (int i = 0; i < size; i++)
+		{
+			moves.set(i, originalMoves[(int) scoredMoves[i]]);
+		}
+	}
+
+	/**
+	 @param plyKillers The killer moves of a ply.
+	 @param packedMove A packed move.
+	 @return True if the move is one of the killer moves.
+	 */
+	private static boolean isKiller(int[] plyKillers, int packedMove)
+	{
+		for (int killer : plyKillers)
+		{
+			if (killer == packedMove)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 Records a move that caused a beta cutoff.
+
+	 @param packedMove The packed move.
+	 @param ply The ply of the position in the search.
+	 @param remainingDepth The depth searched below the position.
+	 @param dwarvesTurn True if the dwarves were playing.
+	 */
+	public void cutoff(int packedMove, int ply, int remainingDepth, boolean dwarvesTurn)
+	{
+		// Captures are already searched first.
+		if (Move.numberOfCaptures(packedMove) > 0)
+		{
+			return;
+		}
+
+		// Keep the newest killer moves.
+		int[] plyKillers = killers[ply];
+		if (plyKillers[0] != packedMove)
+		{
+			System.arraycopy(plyKillers, 0, plyKillers, 1, KILLERS_PER_PLY - 1);
+			plyKillers[0] = packedMove;
+		}
+
+		// Deep cutoffs weigh more, but keep the history below the killers' score.
+		int[] sideHistory = history[dwarvesTurn ? 0 : 1];
+		int index = Move.origin(packedMove) * SQUARES + Move.destination(packedMove);
+		sideHistory[index] = Math.min(KILLER - 1, sideHistory[index] + remainingDepth * remainingDepth);
+	}
+}
@@ -2,17 +2,36 @@ package org.saucistophe.thud.model.players;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.saucistophe.annotations.SettingsField;
-import org.saucistophe.math.genetics.BasicNaturalSelection;
-import static org.saucistophe.math.genetics.BasicNaturalSelection.MIXING_FACTOR;
 import org.saucistophe.math.genetics.Individual;
 import org.saucistophe.stats.ImprovedRandom;
+import org.saucistophe.thud.model.Move;
+import org.saucistophe.thud.model.MoveList;
 import static org.saucistophe.thud.model.Piece.DWARF;
 import static org.saucistophe.thud.model.Piece.TROLL;
 import org.saucistophe.thud.model.boards.Board;
+import org.saucistophe.thud.model.boards.GameRecordWriter;
+import org.saucistophe.thud.model.boards.OpeningBook;
+import org.saucistophe.thud.model.boards.Tablebase;
 import static org.saucistophe.thud.model.boards.Board.INFINITY;
 
 /**
@@ -20,192 +39,1330 @@ import static org.saucistophe.thud.model.boards.Board.INFINITY;
  */
 public class NegamaxPlayer extends Player
 {
+	/**
+	 This class' logger.
+	 */
+	public static Logger LOGGER = Logger.getLogger(NegamaxPlayer.class.getName());
+
 	public static ImprovedRandom random = new ImprovedRandom();
 
-	@SettingsField(category = "AI", name = "Processing depth", minValue = 1, maxValue = 6)
-	public static int MAX_DEPTH = 3;
+	@SettingsField(category = "AI", name = "Processing depth", minValue = 1, maxValue = 6)
+	public static int MAX_DEPTH = 3;
+
+	@SettingsField(category = "AI", name = "Transposition table size (MB)", minValue = 1, maxValue = 4096)
+	public static int TRANSPOSITION_TABLE_SIZE = 64;
+
+	@SettingsField(category = "AI", name = "Time per move in ms (0 for a fixed depth)", minValue = 0, maxValue = 3600000)
+	public static int MOVE_TIME = 0;
+
+	@SettingsField(category = "AI", name = "Nodes per move (0 for a fixed depth)", minValue = 0, maxValue = Integer.MAX_VALUE)
+	public static int MOVE_NODES = 0;
+
+	@SettingsField(category = "AI", name = "Captures searched beyond the depth (0 for none)", minValue = 0, maxValue = 16)
+	public static int QUIESCENCE_DEPTH = 4;
+
+	@SettingsField(category = "AI", name = "Search threads", minValue = 1, maxValue = 256)
+	public static int SEARCH_THREADS = Runtime.getRuntime().availableProcessors();
+
+	@SettingsField(category = "AI", name = "Minimal depth to share a position between threads", minValue = 2, maxValue = 63)
+	public static int SPLIT_DEPTH = SearchSettings.DEFAULT_SPLIT_DEPTH;
+
+	/**
+	 The pool running the parallel searches, shared by all the players without their own.
+	 */
+	private static ForkJoinPool sharedSearchPool = null;
+
+	// Calibration values.
+	int dwarfMaterialRatio = 13;
+	int trollMaterialRatio = 15;
+	int dwarfClusteringRatio = 0;
+	int trollClusteringRatio = 2;
+	int dwarfMobilityRatio = 0;
+	int trollMobilityRatio = 1;
+	int absoluteVictoryBonus = 172;
+
+	/**
+	 The best move found by the last search iteration.
+	 */
+	private Move bestMove = null;
+
+	/**
+	 The moves at the root of the search, ordered by the scores of the previous iteration.
+	 */
+	private List<Move> rootMoves;
+
+	/**
+	 The scores of the root moves found by the current iteration.
+	 */
+	private final Map<Move, Integer> rootScores = new HashMap<>();
+
+	/**
+	 The depth of the current search iteration.
+	 */
+	private int searchDepth;
+
+	/**
+	 The depth of the last iteration of the current search.
+	 */
+	private int maxDepth;
+
+	/**
+	 This player's own search settings, or null to follow the global settings.
+	 */
+	private volatile SearchSettings searchSettings = null;
+
+	/**
+	 This player's own pool for parallel searches, or null to use the shared one.
+	 */
+	private volatile ForkJoinPool searchPool = null;
+
+	/**
+	 The solved endgames probed before searching, or null.
+	 */
+	private volatile Tablebase tablebase = null;
+
+	/**
+	 The opening book probed before searching, or null.
+	 */
+	private volatile OpeningBook openingBook = null;
+
+	/**
+	 The writer recording the games this player fights, if any.
+	 */
+	private GameRecordWriter gameRecords = null;
+
+	/**
+	 The number of captures searched beyond the depth of the current search.
+	 */
+	private int quiescenceDepth;
+
+	/**
+	 The number of threads of the current search, the depth from which it shares nodes, and the pool running it.
+	 */
+	private int threads;
+	private int splitDepth;
+	private ForkJoinPool activePool;
+
+	/**
+	 The budget of the current search, shared with the helpers.
+	 */
+	private volatile SearchBudget budget;
+
+	/**
+	 The number of nodes searched since the last report to the budget.
+	 */
+	private int unreportedNodes;
+
+	/**
+	 The players searching in parallel with this one, sharing its transposition
+	 table and budget, but each with its own killer moves, history and principal variations.
+	 */
+	private final List<NegamaxPlayer> helpers = new ArrayList<>();
+
+	/**
+	 The player whose move is being searched: this one, or the one this helper works for.
+	 */
+	private NegamaxPlayer master = this;
+
+	/**
+	 The helpers currently free to search the moves of a split point.
+	 */
+	private final Deque<NegamaxPlayer> idleSearchers = new ConcurrentLinkedDeque<>();
+
+	/**
+	 The split point whose move this helper is searching, if any.
+	 */
+	private SplitPoint split = null;
+
+	/**
+	 The best score of the current iteration, when searching the root moves in parallel.
+	 */
+	private int rootBestScore;
+
+	/**
+	 The positions already searched, kept from one move to another.
+	 */
+	private TranspositionTable transpositionTable = null;
+
+	/**
+	 The size of the transposition table, to reallocate it when the setting changes.
+	 */
+	private int transpositionTableSize = 0;
+
+	/**
+	 The killer moves and history used to order moves.
+	 */
+	private final MoveOrdering moveOrdering = new MoveOrdering();
+
+	/**
+	 The principal variations found below each ply of the current iteration,
+	 i.e. the expected best sequence of moves, packed, and their lengths.
+	 */
+	private final int[][] principalVariations = new int[TranspositionTable.MAX_DEPTH + 1][TranspositionTable.MAX_DEPTH + 1];
+	private final int[] principalVariationLengths = new int[TranspositionTable.MAX_DEPTH + 1];
+
+	/**
+	 The principal variation of the last completed iteration, and its score.
+	 */
+	private List<Move> principalVariation = new ArrayList<>();
+	private int principalVariationScore;
+
+	/**
+	 The moves of the position searched at each ply, reused from one position to another.
+	 */
+	private final MoveList[] plyMoves = new MoveList[TranspositionTable.MAX_DEPTH + 1];
+
+	/**
+	 The listeners to the statistics of the searches.
+	 */
+	private final List<SearchListener> searchListeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 The statistics of this player's part of the current search.
+	 */
+	private final SearchCounters counters = new SearchCounters();
+
+	/**
+	 Publishes the search statistics as flight recorder events, if the JVM supports them.
+	 */
+	private static final SearchListener FLIGHT_RECORDER_LISTENER = flightRecorderListener();
+
+	/**
+	 Calibrates the negamax player, using basic natural selection algorithms,
+	 the games of each generation being played on all the cores.
+	 */
+	public static void calibrate()
+	{
+		long seed = System.currentTimeMillis();
+		System.out.println("Seed: " + seed);
+		SearchSettings settings = new SearchSettings(MAX_DEPTH, 0, 0, QUIESCENCE_DEPTH, 1, 16);
+		CalibrationTournament tournament = new CalibrationTournament(CalibrationTournament.defaultBoard(), settings,
+			Runtime.getRuntime().availableProcessors(), seed);
+
+		for (int i = 0; i < 1000; i++)
+		{
+			tournament.iterate();
+			System.out.println("Iteration " + i + ": " + tournament.getPopulation().get(0)
+				+ ", " + (long) tournament.getGamesPerHour() + " games per hour");
+		}
+	}
+
+	// TODO depends of the board type.
+	@Override
+	public int evaluate(Board evaluatedBoard)
+	{
+		int result;
+
+		int numberOfDwarves = evaluatedBoard.numberOf(DWARF);
+		int numberOfTrolls = evaluatedBoard.numberOf(TROLL);
+
+		// Pure material advantage
+		int materialAdvantage = dwarfMaterialRatio * numberOfDwarves - trollMaterialRatio * numberOfTrolls;
+		result = materialAdvantage;
+
+		// Clustering values, kept up to date by the board.
+		int dwarfClusteringValue = evaluatedBoard.clustering(DWARF);
+		int trollClusteringValue = evaluatedBoard.clustering(TROLL);
+		result += dwarfClusteringRatio * dwarfClusteringValue - trollClusteringRatio * trollClusteringValue;
+
+		// Mobility, only computed when it counts, as it requires generating the moves.
+		int dwarfMobilityValue = dwarfMobilityRatio == 0 ? 0 : evaluatedBoard.mobility(DWARF);
+		int trollMobilityValue = trollMobilityRatio == 0 ? 0 : evaluatedBoard.mobility(TROLL);
+
+		result += dwarfMobilityRatio * dwarfMobilityValue - trollMobilityRatio * trollMobilityValue;
+
+		// If there's no piece left, add a big malus/bonus.
+		if (numberOfTrolls == 0)
+		{
+			result += absoluteVictoryBonus;
+		}
+		else if (numberOfDwarves == 0)
+		{
+			result -= absoluteVictoryBonus;
+		}
+
+		return evaluatedBoard.dwarvesTurn ? result : -result;
+	}
+
+	@Override
+	public Board makeBestMove(Board evaluatedBoard)
+	{
+		// Without a budget, search to the set depth; with one, search as deep as possible.
+		SearchSettings settings = getSearchSettings();
+		SearchBudget moveBudget = settings.newBudget();
+		Move result = search(evaluatedBoard, settings.lastDepth(moveBudget), moveBudget);
+
+		// Apply the move, which switches turns.
+		if (result != null)
+		{
+			evaluatedBoard.makeMove(result);
+		}
+
+		return evaluatedBoard;
+	}
+
+	/**
+	 Searches the best move of a position, without playing it.
+
+	 @param evaluatedBoard The board to search, left unchanged.
+	 @param maxDepth The depth of the last iteration.
+	 @param searchBudget The time and nodes allowed, which can also be aborted to stop the search.
+	 @return The best move found, or null if there is none.
+	 */
+	public Move search(Board evaluatedBoard, int maxDepth, SearchBudget searchBudget)
+	{
+		SearchSettings settings = getSearchSettings();
+		if (transpositionTable == null || transpositionTableSize != settings.getTranspositionTableSize())
+		{
+			transpositionTable = new TranspositionTable(settings.getTranspositionTableSize());
+			transpositionTableSize = settings.getTranspositionTableSize();
+		}
+		transpositionTable.newSearch();
+		moveOrdering.newSearch();
+
+		// Search on a copy, moves being applied and reverted on it.
+		Board searchedBoard = evaluatedBoard.cloneBoard();
+		MoveList sortedMoves = movesAt(0);
+		searchedBoard.generateMoves(sortedMoves);
+		long rootEntry = fromCanonical(transpositionTable.probe(searchedBoard.getCanonicalKey()), searchedBoard);
+		moveOrdering.sort(sortedMoves, rootEntry, 0, searchedBoard.dwarvesTurn);
+		rootMoves = new ArrayList<>(sortedMoves.size());
+
+		// Once a side is wiped out, the game is over, and there's no move to play.
+		boolean gameOver = searchedBoard.numberOf(DWARF) == 0 || searchedBoard.numberOf(TROLL) == 0;
+		for (int i = 0; i < (gameOver ? 0 : sortedMoves.size()); i++)
+		{
+			rootMoves.add(Move.unpack(sortedMoves.get(i)));
+		}
+
+		// In the opening, the book gives the move at once.
+		OpeningBook book = openingBook;
+		if (book != null && !rootMoves.isEmpty())
+		{
+			int bookMove = book.probe(searchedBoard);
+			if (bookMove != 0)
+			{
+				return Move.unpack(bookMove);
+			}
+		}
+
+		// In a solved endgame, the tablebase gives the best move, or at least the moves that keep the draw.
+		Tablebase endgames = tablebase;
+		if (endgames != null && !rootMoves.isEmpty() && endgames.covers(searchedBoard))
+		{
+			Move solvedMove = probeTablebase(endgames, searchedBoard);
+			if (solvedMove != null)
+			{
+				return solvedMove;
+			}
+		}
+
+		budget = searchBudget;
+		unreportedNodes = 0;
+		this.maxDepth = Math.min(maxDepth, TranspositionTable.MAX_DEPTH);
+
+		// With a single thread, the search is sequential, hence deterministic.
+		quiescenceDepth = settings.getQuiescenceDepth();
+		threads = settings.getThreads();
+		splitDepth = settings.getSplitDepth();
+		boolean parallel = threads > 1;
+		if (parallel)
+		{
+			activePool = searchPool != null ? searchPool : getSharedSearchPool(threads);
+			prepareHelpers();
+		}
+
+		// Gather statistics for the listeners.
+		long searchStart = System.currentTimeMillis();
+		SearchCounters searchCounters = new SearchCounters();
+		long previousNodes = 0;
+		double branchingFactor = 0;
+		int completedDepth = 0;
+		collectCounters();
+		principalVariation = new ArrayList<>();
+		principalVariationScore = 0;
+
+		// Iterative deepening: each iteration orders the root moves, and fills the transposition table, for the next one.
+		Move result = null;
+		for (searchDepth = 1; searchDepth <= this.maxDepth && !rootMoves.isEmpty(); searchDepth++)
+		{
+			bestMove = null;
+			rootScores.clear();
+			long iterationStart = System.currentTimeMillis();
+			int score = parallel && rootMoves.size() > 1
+				? parallelRootSearch(searchedBoard)
+				: negaMax(searchedBoard, -INFINITY, INFINITY, 0);
+			SearchCounters iterationCounters = collectCounters();
+			searchCounters.add(iterationCounters);
+
+			// An interrupted iteration is only used if none was completed.
+			if (budget.isAborted())
+			{
+				if (result == null)
+				{
+					result = bestMove != null ? bestMove : rootMoves.get(0);
+				}
+				break;
+			}
+			result = bestMove;
+			principalVariation = new ArrayList<>();
+			for (int i = 0; i < principalVariationLengths[0]; i++)
+			{
+				principalVariation.add(Move.unpack(principalVariations[0][i]));
+			}
+			principalVariationScore = score;
+			completedDepth = searchDepth;
+			branchingFactor = previousNodes == 0 ? 0 : (double) iterationCounters.nodes / previousNodes;
+			previousNodes = iterationCounters.nodes;
+			if (LOGGER.isLoggable(Level.FINE))
+			{
+				LOGGER.log(Level.FINE, "Depth {0}, score {1}: {2}", new Object[]
+				{
+					searchDepth, score, principalVariationText(searchedBoard)
+				});
+			}
+			if (FLIGHT_RECORDER_LISTENER != null || !searchListeners.isEmpty())
+			{
+				SearchStatistics statistics = new SearchStatistics(searchDepth, score, principalVariation, iterationCounters,
+					System.currentTimeMillis() - iterationStart, branchingFactor);
+				forEachListener(listener -> listener.iterationCompleted(statistics));
+			}
+
+			// Search the best moves first in the next iteration. Moves left after a winning one were not searched.
+			rootMoves.sort(Comparator.comparingInt((Move move) -> rootScores.getOrDefault(move, -INFINITY)).reversed());
+		}
+
+		if (FLIGHT_RECORDER_LISTENER != null || !searchListeners.isEmpty())
+		{
+			SearchStatistics statistics = new SearchStatistics(completedDepth, principalVariationScore, principalVariation, searchCounters,
+				System.currentTimeMillis() - searchStart, branchingFactor);
+			forEachListener(listener -> listener.searchCompleted(statistics));
+		}
+
+		return result;
+	}
+
+	/**
+	 Looks up the root moves in a tablebase: the fastest win, if any, or else
+	 the slowest loss if there's no draw. With several drawing moves, only those
+	 are left to the search, to pick the one with the best material.
+
+	 @param endgames The tablebase, which covers the board.
+	 @param board The searched board.
+	 @return The best move, or null if the draws are left to the search.
+	 */
+	private Move probeTablebase(Tablebase endgames, Board board)
+	{
+		Move result = null;
+		int bestDistance = 0;
+		List<Move> draws = new ArrayList<>();
+		for (Move move : rootMoves)
+		{
+			// The number of moves to the end of the game, positive if won, negative if lost.
+			int distance = 1;
+			board.makeMove(move);
+			if (board.numberOf(DWARF) > 0 && board.numberOf(TROLL) > 0)
+			{
+				int value = -endgames.probe(board);
+				distance = value + Integer.signum(value);
+			}
+			board.unmakeMove(move);
+
+			if (distance == 0)
+			{
+				draws.add(move);
+			}
+			else if (result == null || distance > 0 && (bestDistance < 0 || distance < bestDistance)
+				|| distance < 0 && bestDistance < 0 && distance < bestDistance)
+			{
+				result = move;
+				bestDistance = distance;
+			}
+		}
+
+		if (LOGGER.isLoggable(Level.FINE))
+		{
+			LOGGER.log(Level.FINE, "Tablebase: {0} drawing moves, best other move {1} in {2}", new Object[]
+			{
+				draws.size(), result == null ? null : board.moveText(result), bestDistance
+			});
+		}
+
+		if (bestDistance > 0 || draws.isEmpty())
+		{
+			return result;
+		}
+		rootMoves = draws;
+		return draws.size() == 1 ? draws.get(0) : null;
+	}
+
+	/**
+	 Stops the current search, if any, which then returns the best move found so far.
+	 */
+	public void stopSearch()
+	{
+		SearchBudget searchBudget = budget;
+		if (searchBudget != null)
+		{
+			searchBudget.abort();
+		}
+	}
+
+	/**
+	 @return The settings this player searches with: its own, or the global ones.
+	 */
+	public SearchSettings getSearchSettings()
+	{
+		SearchSettings settings = searchSettings;
+		return settings != null ? settings : SearchSettings.fromGlobalSettings();
+	}
+
+	/**
+	 @param settings The settings this player searches with, or null to follow the global settings.
+	 */
+	public void setSearchSettings(SearchSettings settings)
+	{
+		searchSettings = settings;
+	}
+
+	/**
+	 Gives this player its own pool for parallel searches, e.g. to share a
+	 bounded number of workers between several games. The pool can have less
+	 threads than the searches: the helpers then take turns.
+
+	 @param pool The pool, or null to use the pool shared by all the players, sized by the number of search threads.
+	 */
+	public void setSearchPool(ForkJoinPool pool)
+	{
+		searchPool = pool;
+	}
+
+	/**
+	 @param tablebase The solved endgames to play perfectly, or null to always search.
+	 */
+	public void setTablebase(Tablebase tablebase)
+	{
+		this.tablebase = tablebase;
+	}
+
+	/**
+	 Sets the opening book, closing the previous one. A search still probing
+	 the previous book can go on, its entries staying mapped.
+
+	 @param openingBook The book giving the moves of the first positions of a game, or null to always search.
+	 @throws IOException If the previous book can't be closed.
+	 */
+	public void setOpeningBook(OpeningBook openingBook) throws IOException
+	{
+		OpeningBook previous = this.openingBook;
+		this.openingBook = openingBook;
+		if (previous != null && previous != openingBook)
+		{
+			previous.close();
+		}
+	}
+
+	/**
+	 @param gameRecords The writer to record the games this player fights as the dwarves, or null.
+	 */
+	public void setGameRecords(GameRecordWriter gameRecords)
+	{
+		this.gameRecords = gameRecords;
+	}
+
+	/**
+	 @param listener A listener to the statistics of this player's searches.
+	 */
+	public void addSearchListener(SearchListener listener)
+	{
+		searchListeners.add(listener);
+	}
+
+	/**
+	 @param listener A listener added by addSearchListener.
+	 */
+	public void removeSearchListener(SearchListener listener)
+	{
+		searchListeners.remove(listener);
+	}
+
+	/**
+	 @param action What to tell the listeners, including the flight recorder.
+	 */
+	private void forEachListener(Consumer<SearchListener> action)
+	{
+		if (FLIGHT_RECORDER_LISTENER != null)
+		{
+			action.accept(FLIGHT_RECORDER_LISTENER);
+		}
+		searchListeners.forEach(action);
+	}
+
+	/**
+	 @return The flight recorder listener, or null if the JVM has no flight recorder.
+	 */
+	private static SearchListener flightRecorderListener()
+	{
+		try
+		{
+			Class.forName("jdk.jfr.Event");
+			return new FlightRecorderListener();
+		} catch (ClassNotFoundException | LinkageError ex)
+		{
+			LOGGER.log(Level.FINE, "No flight recorder, the search events are disabled.", ex);
+			return null;
+		}
+	}
+
+	/**
+	 Sums the counters of this player and its helpers, and resets them. Must
+	 only be called when no helper is searching.
+
+	 @return The counters since the last call.
+	 */
+	private SearchCounters collectCounters()
+	{
+		SearchCounters result = new SearchCounters();
+		result.add(counters);
+		counters.clear();
+		for (NegamaxPlayer helper : helpers)
+		{
+			result.add(helper.counters);
+			helper.counters.clear();
+		}
+		for (NegamaxPlayer searcher : idleSearchers)
+		{
+			result.add(searcher.counters);
+			searcher.counters.clear();
+		}
+		return result;
+	}
+
+	/**
+	 Forgets what was learnt from the previous searches, e.g. before a new
+	 game, so that the next search doesn't depend on them.
+	 */
+	public void newGame()
+	{
+		if (transpositionTable != null)
+		{
+			transpositionTable.clear();
+		}
+		moveOrdering.clear();
+		for (NegamaxPlayer helper : helpers)
+		{
+			helper.moveOrdering.clear();
+		}
+		for (NegamaxPlayer searcher : idleSearchers)
+		{
+			searcher.moveOrdering.clear();
+		}
+	}
+
+	/**
+	 @return The principal variation found by the last search, i.e. the expected
+	 sequence of best moves, starting with the move played.
+	 */
+	public List<Move> getPrincipalVariation()
+	{
+		return new ArrayList<>(principalVariation);
+	}
+
+	/**
+	 @return The score of the principal variation found by the last search, for the side that played.
+	 */
+	public int getPrincipalVariationScore()
+	{
+		return principalVariationScore;
+	}
+
+	/**
+	 @param board The board the last search started from.
+	 @return The principal variation of the last search, as readable moves.
+	 */
+	public String principalVariationText(Board board)
+	{
+		Board playedBoard = board.cloneBoard();
+		StringBuilder result = new StringBuilder();
+		for (Move move : principalVariation)
+		{
+			result.append(result.length() == 0 ? "" : " ").append(playedBoard.moveText(move));
+			playedBoard.makeMove(move);
+		}
+		return result.toString();
+	}
+
+	/**
+	 @param ply A ply of the search.
+	 @return The list for the moves of the position searched at this ply.
+	 */
+	private MoveList movesAt(int ply)
+	{
+		if (plyMoves[ply] == null)
+		{
+			plyMoves[ply] = new MoveList();
+		}
+		return plyMoves[ply];
+	}
 
-	// Calibration values.
-	int dwarfMaterialRatio = 13;
-	int trollMaterialRatio = 15;
-	int dwarfClusteringRatio = 0;
-	int trollClusteringRatio = 2;
-	int dwarfMobilityRatio = 0;
-	int trollMobilityRatio = 1;
-	int absoluteVictoryBonus = 172;
+	/**
+	 Searches the position after one of the moves of a node. This is a plain
+	 alpha-beta search, meant to be refined by subclasses.
 
-	private static Board initialTestBoard = null;
+	 @param evaluatedBoard The board, the move being applied.
+	 @param alpha The alpha parameter of the node.
+	 @param beta The beta parameter of the node.
+	 @param depth The depth of the node.
+	 @param moveIndex The index of the move in the node's sorted moves.
+	 @return The score of the move, for the node's playing side.
+	 */
+	protected int searchMove(Board evaluatedBoard, int alpha, int beta, int depth, int moveIndex)
+	{
+		// The negamax, a specific implementation of the Minimax, requires switching and inverting values here.
+		return -negaMax(evaluatedBoard, -beta, -alpha, depth + 1);
+	}
 
-	static
+	/**
+	 @return A new player of the same kind, for parallel searches. Subclasses
+	 changing the search or the evaluation must override it.
+	 */
+	protected NegamaxPlayer newInstance()
 	{
-		try
+		return new NegamaxPlayer();
+	}
+
+	/**
+	 Creates or removes helpers to match the number of threads, and shares the current search with them.
+	 */
+	private void prepareHelpers()
+	{
+		while (helpers.size() > threads)
+		{
+			helpers.remove(helpers.size() - 1);
+		}
+		while (helpers.size() < threads)
 		{
-			initialTestBoard = Board.readFromStream(NegamaxPlayer.class.getClassLoader().getResourceAsStream("micro.thud"));
-		} catch (IOException ex)
+			helpers.add(newHelper());
+		}
+
+		for (NegamaxPlayer helper : helpers)
 		{
-			Logger.getLogger(NegamaxPlayer.class.getName()).log(Level.SEVERE, null, ex);
+			shareSearch(helper);
 		}
 	}
 
 	/**
-	 Calibrates the negamax player, using basic natural selection algorithms.
+	 @return A new helper, evaluating positions like this player.
 	 */
-	public static void calibrate()
+	private NegamaxPlayer newHelper()
 	{
-		BasicNaturalSelection geneticAlgorithm = new BasicNaturalSelection();
-		geneticAlgorithm.individuals = new ArrayList<>();
+		NegamaxPlayer helper = newInstance();
+		helper.master = this;
+		helper.dwarfMaterialRatio = dwarfMaterialRatio;
+		helper.trollMaterialRatio = trollMaterialRatio;
+		helper.dwarfClusteringRatio = dwarfClusteringRatio;
+		helper.trollClusteringRatio = trollClusteringRatio;
+		helper.dwarfMobilityRatio = dwarfMobilityRatio;
+		helper.trollMobilityRatio = trollMobilityRatio;
+		helper.absoluteVictoryBonus = absoluteVictoryBonus;
+		return helper;
+	}
+
+	/**
+	 Shares the current search with a helper, resetting it if it comes from a previous search.
 
-		for (int i = 0; i < MIXING_FACTOR * (MIXING_FACTOR + 2); i++)
+	 @param helper The helper.
+	 */
+	private void shareSearch(NegamaxPlayer helper)
+	{
+		helper.searchDepth = searchDepth;
+		helper.transpositionTable = transpositionTable;
+		if (helper.budget != budget)
 		{
-			NegamaxPlayer player = new NegamaxPlayer();
-			player.randomize();
-			geneticAlgorithm.individuals.add(player);
+			helper.budget = budget;
+			helper.unreportedNodes = 0;
+			helper.moveOrdering.newSearch();
 		}
+	}
 
-		for (int i = 0; i < 1000; i++)
+	/**
+	 @return A free helper to search a move of a split point.
+	 */
+	private NegamaxPlayer acquireSearcher()
+	{
+		NegamaxPlayer searcher = idleSearchers.poll();
+		if (searcher == null)
 		{
-			System.out.println("Iteration " + i);
-			geneticAlgorithm.iterate();
+			searcher = newHelper();
 		}
+		shareSearch(searcher);
+		return searcher;
 	}
 
-	// TODO depends of the board type.
-	@Override
-	public int evaluate(Board evaluatedBoard)
+	/**
+	 @param searcher A helper done with its move.
+	 */
+	private void releaseSearcher(NegamaxPlayer searcher)
 	{
-		int result;
+		searcher.split = null;
+		idleSearchers.push(searcher);
+	}
 
-		int numberOfDwarves = evaluatedBoard.numberOf(DWARF);
-		int numberOfTrolls = evaluatedBoard.numberOf(TROLL);
+	/**
+	 @param depth The depth of a node.
+	 @param remainingDepth The depth to search below the node.
+	 @param numberOfMoves The number of moves of the node.
+	 @return True if the moves of the node, after the eldest one, are worth sharing between threads.
+	 */
+	private boolean canSplit(int depth, int remainingDepth, int numberOfMoves)
+	{
+		return depth > 0
+			&& remainingDepth >= master.splitDepth
+			&& numberOfMoves > 2
+			&& master.threads > 1
+			&& ForkJoinTask.getPool() == master.activePool;
+	}
 
-		// Pure material advantage
-		int materialAdvantage = dwarfMaterialRatio * numberOfDwarves - trollMaterialRatio * numberOfTrolls;
-		result = materialAdvantage;
+	/**
+	 Searches the moves of a node but the eldest in parallel, as tasks that
+	 idle threads can steal, each task on its own copy of the board. Tasks raise
+	 the node's alpha as they complete, and cancel the others on a cutoff.
 
-		// Clustering values;
-		int dwarfClusteringValue = evaluatedBoard.getPiecesStream(DWARF).mapToInt(dwarf -> evaluatedBoard.getNearby(DWARF, dwarf.width, dwarf.height).size()).sum();
-		int trollClusteringValue = evaluatedBoard.getPiecesStream(TROLL).mapToInt(troll -> evaluatedBoard.getNearby(TROLL, troll.width, troll.height).size()).sum();
-		result += dwarfClusteringRatio * dwarfClusteringValue - trollClusteringRatio * trollClusteringValue;
+	 @param board The board of the node, left unchanged.
+	 @param moves The moves of the node, the eldest one being already searched.
+	 @param alpha The alpha parameter of the node, after the eldest move.
+	 @param beta The beta parameter of the node.
+	 @param depth The depth of the node.
+	 @return The searches of the moves, following the eldest one.
+	 */
+	private SiblingSearch[] searchSiblings(Board board, MoveList moves, int alpha, int beta, int depth)
+	{
+		SplitPoint splitPoint = new SplitPoint(split, board, depth, alpha, beta);
+		SiblingSearch[] siblings = new SiblingSearch[moves.size() - 1];
+		for (int i = 0; i < siblings.length; i++)
+		{
+			siblings[i] = new SiblingSearch(master, splitPoint, moves.get(i + 1), i + 1);
+		}
+		ForkJoinTask.invokeAll(siblings);
+		return siblings;
+	}
+
+	/**
+	 The search of one of the moves of a split point, by a free helper.
+	 */
+	private static final class SiblingSearch extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
 
-		// Mobility
-		int dwarfMobilityValue = 0, trollMobilityValue = 0;
+		private final NegamaxPlayer master;
+		private final SplitPoint splitPoint;
+		private final int move;
+		private final int moveIndex;
 
-		evaluatedBoard.getPiecesStream(DWARF)
-			.map(pieceToMove -> evaluatedBoard.validMoves(pieceToMove.width, pieceToMove.height, null))
-			.mapToInt(List::size)
-			.sum();
+		/**
+		 The alpha parameter the move was searched with, and the score found.
+		 */
+		private int alpha, score;
 
-		trollMobilityValue = evaluatedBoard.getPiecesStream(TROLL)
-			.map(pieceToMove -> evaluatedBoard.validMoves(pieceToMove.width, pieceToMove.height, null))
-			.mapToInt(List::size)
-			.sum();
+		/**
+		 The principal variation found after the move.
+		 */
+		private int[] principalVariation;
 
-		result += dwarfMobilityRatio * dwarfMobilityValue - trollMobilityRatio * trollMobilityValue;
+		/**
+		 True if the search was not cancelled, so its score is meaningful.
+		 */
+		private boolean completed = false;
 
-		// If there's no piece left, add a big malus/bonus.
-		if (numberOfTrolls == 0)
+		SiblingSearch(NegamaxPlayer master, SplitPoint splitPoint, int move, int moveIndex)
 		{
-			result += absoluteVictoryBonus;
+			this.master = master;
+			this.splitPoint = splitPoint;
+			this.move = move;
+			this.moveIndex = moveIndex;
 		}
-		else if (numberOfDwarves == 0)
+
+		@Override
+		protected void compute()
 		{
-			result -= absoluteVictoryBonus;
+			if (splitPoint.isCancelled())
+			{
+				return;
+			}
+
+			NegamaxPlayer searcher = master.acquireSearcher();
+			searcher.split = splitPoint;
+			Board board = splitPoint.board.cloneBoard();
+			board.makeMove(move);
+			alpha = splitPoint.alpha.get();
+			score = searcher.searchMove(board, alpha, splitPoint.beta, splitPoint.depth, moveIndex);
+
+			if (!searcher.isStopped())
+			{
+				int childDepth = splitPoint.depth + 1;
+				principalVariation = Arrays.copyOf(searcher.principalVariations[childDepth], searcher.principalVariationLengths[childDepth]);
+				completed = true;
+				splitPoint.raiseAlpha(score);
+			}
+			master.releaseSearcher(searcher);
 		}
+	}
 
-		return evaluatedBoard.dwarvesTurn ? result : -result;
+	/**
+	 @param threads The number of search threads.
+	 @return The shared pool for parallel searches, with as many threads.
+	 */
+	private static synchronized ForkJoinPool getSharedSearchPool(int threads)
+	{
+		if (sharedSearchPool == null || sharedSearchPool.getParallelism() != threads)
+		{
+			if (sharedSearchPool != null)
+			{
+				sharedSearchPool.shutdown();
+			}
+			sharedSearchPool = new ForkJoinPool(threads);
+		}
+		return sharedSearchPool;
 	}
 
-	@Override
-	public Board makeBestMove(Board evaluatedBoard)
+	/**
+	 Searches the root moves in parallel. The first move, expected to be the
+	 best, is searched alone to get a bound for the others. Then each helper
+	 takes the next move to search, on its own copy of the board, the bound being
+	 raised as soon as a better move is found.
+
+	 @param board The board to search.
+	 @return The best score, or a meaningless value if the search was aborted.
+	 */
+	private int parallelRootSearch(Board board)
+	{
+		rootBestScore = -INFINITY;
+		AtomicInteger alpha = new AtomicInteger(-INFINITY);
+		AtomicInteger nextMove = new AtomicInteger(1);
+		AtomicInteger searchedMoves = new AtomicInteger(0);
+
+		// Even alone, the first move is searched in the pool, so that its positions can be split.
+		activePool.invoke(ForkJoinTask.adapt(() -> searchRootMove(this, board, 0, alpha, searchedMoves)));
+
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for (NegamaxPlayer helper : helpers)
+		{
+			Board helperBoard = board.cloneBoard();
+			tasks.add(() ->
+			{
+				for (int moveIndex = nextMove.getAndIncrement(); moveIndex < rootMoves.size() && !budget.isAborted(); moveIndex = nextMove.getAndIncrement())
+				{
+					searchRootMove(helper, helperBoard, moveIndex, alpha, searchedMoves);
+				}
+				return null;
+			});
+		}
+
+		try
+		{
+			for (Future<Void> task : activePool.invokeAll(tasks))
+			{
+				task.get();
+			}
+		} catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+			budget.abort();
+		} catch (ExecutionException ex)
+		{
+			throw new IllegalStateException("The parallel search failed.", ex.getCause());
+		}
+
+		if (!budget.isAborted())
+		{
+			transpositionTable.store(board.getCanonicalKey(), rootBestScore, TranspositionTable.EXACT, searchDepth,
+				board.transformMove(bestMove.pack(), board.getCanonicalSymmetry()));
+		}
+		return rootBestScore;
+	}
+
+	/**
+	 Searches one of the root moves, and keeps it if it's the best so far.
+
+	 @param searcher The player searching the move, this one or a helper.
+	 @param board The searcher's board.
+	 @param moveIndex The index of the move in the root moves.
+	 @param alpha The best score so far, shared by the searchers.
+	 @param searchedMoves The number of root moves searched, for progress.
+	 */
+	private void searchRootMove(NegamaxPlayer searcher, Board board, int moveIndex, AtomicInteger alpha, AtomicInteger searchedMoves)
+	{
+		Move move = rootMoves.get(moveIndex);
+		searcher.searchDepth = searchDepth;
+
+		board.makeMove(move);
+		int score = searcher.searchMove(board, alpha.get(), INFINITY, 0, moveIndex);
+		board.unmakeMove(move);
+
+		if (budget.isAborted())
+		{
+			return;
+		}
+
+		synchronized (this)
+		{
+			rootScores.put(move, score);
+			if (score > rootBestScore)
+			{
+				rootBestScore = score;
+				bestMove = move;
+				principalVariations[0][0] = move.pack();
+				System.arraycopy(searcher.principalVariations[1], 0, principalVariations[0], 1, searcher.principalVariationLengths[1]);
+				principalVariationLengths[0] = searcher.principalVariationLengths[1] + 1;
+			}
+			alpha.accumulateAndGet(score, Math::max);
+		}
+
+		if (progressCallback != null)
+		{
+			progressCallback.accept(progress(searchedMoves.incrementAndGet(), rootMoves.size()));
+		}
+	}
+
+	/**
+	 Counts a searched node, and checks if the search budget is spent.
+
+	 @return True if the search must stop.
+	 */
+	private boolean outOfBudget()
 	{
-		Board bestMove = evaluatedBoard.cloneBoard();
-		negaMax(evaluatedBoard, bestMove, -INFINITY, INFINITY, 0);
+		if (++unreportedNodes >= SearchBudget.CHECK_INTERVAL)
+		{
+			budget.spend(unreportedNodes);
+			unreportedNodes = 0;
+		}
+		return isStopped();
+	}
+
+	/**
+	 @return True if the search is over, or if the move this helper searches was cancelled.
+	 */
+	private boolean isStopped()
+	{
+		return budget.isAborted() || split != null && split.isCancelled();
+	}
 
-		// Copy its data, and switch turns.
-		evaluatedBoard.squares = bestMove.squares;
-		evaluatedBoard.dwarvesTurn = bestMove.dwarvesTurn;
+	/**
+	 @param searchedMoves The number of root moves already searched.
+	 @param numberOfMoves The number of root moves.
+	 @return The progress of the search, in percents.
+	 */
+	private int progress(int searchedMoves, int numberOfMoves)
+	{
+		if (budget.isLimited())
+		{
+			return budget.progress();
+		}
 
-		return bestMove;
+		// At a fixed depth, the last iteration takes most of the time.
+		return searchDepth == maxDepth ? 100 * searchedMoves / numberOfMoves : 0;
 	}
 
 	/**
 	 Alpha-Beta Negamax algorithm. Go check on wikipedia!
+	 The best move found at depth zero is stored in bestMove. Positions are
+	 looked up in, and stored into, the transposition table. The search stops,
+	 returning meaningless values, as soon as the budget is spent.
 
-	 @param evaluatedBoard The board currently evaluated.
-	 @param resultBoard (Optional) The board that will store the result of the best move.
+	 @param evaluatedBoard The board currently evaluated. Moves are applied and reverted on it, so it is left unchanged.
 	 @param alpha Alpha parameter, to cut some leaves on the multiverse tree.
 	 @param beta Alpha parameter, to cut even more leaves on the multiverse tree.
 	 @param depth The current depth of the reflexion.
 
 	 @return The best you can do with the worst the other player can do with the best you can do with...
 	 */
-	public int negaMax(Board evaluatedBoard, Board resultBoard, int alpha, int beta, int depth)
+	public int negaMax(Board evaluatedBoard, int alpha, int beta, int depth)
 	{
-		// If it's a leaf, evaluate.
-		if (depth == MAX_DEPTH || evaluatedBoard.numberOf(DWARF) == 0 || evaluatedBoard.numberOf(TROLL) == 0)
+		principalVariationLengths[depth] = 0;
+		counters.nodes++;
+		if (outOfBudget())
+		{
+			return 0;
+		}
+
+		// Check if the position, or a symmetric one, was already searched deep enough.
+		int remainingDepth = searchDepth - depth;
+		long key = evaluatedBoard.getCanonicalKey();
+		long entry = transpositionTable.probe(key);
+		counters.transpositionProbes++;
+		if (entry != 0)
 		{
-			return evaluate(evaluatedBoard);
+			counters.transpositionHits++;
 		}
+		if (entry != 0 && depth > 0 && TranspositionTable.depth(entry) >= remainingDepth)
+		{
+			int storedScore = TranspositionTable.score(entry);
+			switch (TranspositionTable.bound(entry))
+			{
+				case TranspositionTable.EXACT:
+					return storedScore;
+				case TranspositionTable.LOWER_BOUND:
+					alpha = Math.max(alpha, storedScore);
+					break;
+				case TranspositionTable.UPPER_BOUND:
+					beta = Math.min(beta, storedScore);
+					break;
+			}
+			if (alpha >= beta)
+			{
+				return storedScore;
+			}
+		}
+
+		// If the game is finished, evaluate: its score holds whatever the depth.
+		boolean gameOver = evaluatedBoard.numberOf(DWARF) == 0 || evaluatedBoard.numberOf(TROLL) == 0;
+		if (gameOver)
+		{
+			int score = evaluate(evaluatedBoard);
+			counters.evaluations++;
+			transpositionTable.store(key, score, TranspositionTable.EXACT, TranspositionTable.MAX_DEPTH, 0);
+			return score;
+		}
+		int originalAlpha = alpha;
 
-		List<Board> childrenBoards = evaluatedBoard.childrenBoards();
-		/* Map<Board, Integer> boardValues = new HashMap<>();
-		 for (Board childrenBoard : childrenBoards)
-		 {
-		 boardValues.put(childrenBoard, evaluate(childrenBoard));
-		 }
+		// If it's a leaf, evaluate once the captures are resolved.
+		if (remainingDepth == 0)
+		{
+			int score = quiesce(evaluatedBoard, alpha, beta, depth, 0);
+			if (isStopped())
+			{
+				return 0;
+			}
+			int bound = score <= originalAlpha ? TranspositionTable.UPPER_BOUND
+				: score >= beta ? TranspositionTable.LOWER_BOUND
+					: TranspositionTable.EXACT;
+			transpositionTable.store(key, score, bound, 0, 0);
+			return score;
+		}
 
-		 // Sort those boards with the evaluation method, to evaluate the most interesting moves.
-		 Collections.sort(childrenBoards, (board1, board2) -> Integer.compare(boardValues.get(board2), boardValues.get(board1))); */
+		// Search the most promising moves first. Root moves are already sorted.
+		MoveList moves = movesAt(depth);
+		if (depth == 0)
+		{
+			moves.clear();
+			for (Move rootMove : rootMoves)
+			{
+				moves.add(rootMove.pack());
+			}
+		}
+		else
+		{
+			evaluatedBoard.generateMoves(moves);
+			moveOrdering.sort(moves, fromCanonical(entry, evaluatedBoard), depth, evaluatedBoard.dwarvesTurn);
+		}
 
-		// Look for the best value on children boards.
-		int boardIndex;
+		// Look for the best value on children moves.
+		counters.expandedNodes++;
+		int moveIndex;
 		int bestValue = -INFINITY;
-		for (boardIndex = 0; boardIndex < childrenBoards.size(); boardIndex++)
+		int nodeBestMove = 0;
+		SiblingSearch[] siblings = null;
+		for (moveIndex = 0; moveIndex < moves.size(); moveIndex++)
 		{
 			// Update the progress callback, if any.
 			if (depth == 0 && progressCallback != null)
 			{
-				progressCallback.accept(100 * boardIndex / childrenBoards.size());
+				progressCallback.accept(progress(moveIndex, moves.size()));
+			}
+
+			// Young brothers wait: once the eldest move is searched, the others can be searched in parallel.
+			if (moveIndex == 1 && canSplit(depth, remainingDepth, moves.size()))
+			{
+				siblings = searchSiblings(evaluatedBoard, moves, alpha, beta, depth);
+				if (isStopped())
+				{
+					return 0;
+				}
+			}
+
+			int move = moves.get(moveIndex);
+			// Get the score of the child.
+			int score;
+			boolean failedLow = false;
+			if (siblings != null)
+			{
+				// Moves cancelled by a cutoff are skipped, the cutoff being found further.
+				SiblingSearch sibling = siblings[moveIndex - 1];
+				if (!sibling.completed)
+				{
+					continue;
+				}
+				score = sibling.score;
+				// A move searched with an alpha raised by the following ones is only bounded.
+				failedLow = score <= sibling.alpha;
+				System.arraycopy(sibling.principalVariation, 0, principalVariations[depth + 1], 0, sibling.principalVariation.length);
+				principalVariationLengths[depth + 1] = sibling.principalVariation.length;
 			}
+			else
+			{
+				evaluatedBoard.makeMove(move);
+				score = searchMove(evaluatedBoard, alpha, beta, depth, moveIndex);
+				evaluatedBoard.unmakeMove(move);
 
-			Board childBoard = childrenBoards.get(boardIndex);
-			// Get the score of the child. The negamax, a specific implementation of the Minimax, requires switching and inverting values here.
-			int score = -negaMax(childBoard, null, -beta, -alpha, depth + 1);
+				if (isStopped())
+				{
+					return 0;
+				}
+			}
+			if (depth == 0)
+			{
+				rootScores.put(rootMoves.get(moveIndex), score);
+			}
 
 			if (score > bestValue)
 			{
 				bestValue = score;
-				// If we're at depth zero, keep track of the best board.
+				nodeBestMove = move;
+				// If we're at depth zero, keep track of the best move.
 				if (depth == 0)
 				{
-					if (resultBoard != null)
-					{
-						resultBoard.set(childBoard);
-					}
+					bestMove = rootMoves.get(moveIndex);
 				}
 			}
 
+			if (failedLow)
+			{
+				continue;
+			}
+
+			// Keep track of the expected line of play.
+			if (score > alpha)
+			{
+				principalVariations[depth][0] = move;
+				System.arraycopy(principalVariations[depth + 1], 0, principalVariations[depth], 1, principalVariationLengths[depth + 1]);
+				principalVariationLengths[depth] = principalVariationLengths[depth + 1] + 1;
+			}
+
 			// Alpha-beta pruning
 			alpha = Math.max(alpha, score);
 			if (alpha >= beta)
 			{
+				counters.cutoffs++;
+				if (moveIndex == 0)
+				{
+					counters.firstMoveCutoffs++;
+				}
+				moveOrdering.cutoff(move, depth, remainingDepth, evaluatedBoard.dwarvesTurn);
 				break;
 			}
 		}
 
+		// Store the result, which is only a bound if it's outside the alpha-beta window.
+		int bound = bestValue <= originalAlpha ? TranspositionTable.UPPER_BOUND
+			: bestValue >= beta ? TranspositionTable.LOWER_BOUND
+				: TranspositionTable.EXACT;
+		transpositionTable.store(key, bestValue, bound, remainingDepth,
+			evaluatedBoard.transformMove(nodeBestMove, evaluatedBoard.getCanonicalSymmetry()));
+
+		return bestValue;
+	}
+
+	/**
+	 @param entry An entry of the transposition table for a board, or 0.
+	 @param board The board, whose canonical form the entry was stored for.
+	 @return The entry, its best move turned back into a move of the board.
+	 */
+	private static long fromCanonical(long entry, Board board)
+	{
+		int move = TranspositionTable.move(entry);
+		return move == 0 ? entry : TranspositionTable.withMove(entry, board.inverseTransformMove(move, board.getCanonicalSymmetry()));
+	}
+
+	/**
+	 Quiescence search: extends a leaf with the captures only, until the
+	 position is quiet, so that it isn't evaluated in the middle of an exchange.
+	 The side to move can also stand pat, i.e. keep the static evaluation, as it
+	 usually has a quiet move at least as good. Bounded by the quiescence depth.
+
+	 @param evaluatedBoard The board. Moves are applied and reverted on it, so it is left unchanged.
+	 @param alpha The alpha parameter.
+	 @param beta The beta parameter.
+	 @param ply The ply of the position in the search.
+	 @param captures The number of captures already searched beyond the depth.
+	 @return The score of the position once quiet, or a meaningless value if the search was stopped.
+	 */
+	private int quiesce(Board evaluatedBoard, int alpha, int beta, int ply, int captures)
+	{
+		principalVariationLengths[ply] = 0;
+		if (captures > 0)
+		{
+			counters.nodes++;
+			counters.quiescenceNodes++;
+			if (outOfBudget())
+			{
+				return 0;
+			}
+		}
+
+		int standPat = evaluate(evaluatedBoard);
+		counters.evaluations++;
+		boolean gameOver = evaluatedBoard.numberOf(DWARF) == 0 || evaluatedBoard.numberOf(TROLL) == 0;
+		if (gameOver || standPat >= beta || captures >= master.quiescenceDepth || ply >= TranspositionTable.MAX_DEPTH)
+		{
+			return standPat;
+		}
+		alpha = Math.max(alpha, standPat);
+
+		MoveList moves = movesAt(ply);
+		evaluatedBoard.generateCaptures(moves);
+		moveOrdering.sort(moves, 0, ply, evaluatedBoard.dwarvesTurn);
+
+		int bestValue = standPat;
+		for (int moveIndex = 0; moveIndex < moves.size(); moveIndex++)
+		{
+			int move = moves.get(moveIndex);
+			evaluatedBoard.makeMove(move);
+			int score = -quiesce(evaluatedBoard, -beta, -alpha, ply + 1, captures + 1);
+			evaluatedBoard.unmakeMove(move);
+			if (isStopped())
+			{
+				return 0;
+			}
+
+			if (score > bestValue)
+			{
+				bestValue = score;
+				alpha = Math.max(alpha, score);
+				if (alpha >= beta)
+				{
+					break;
+				}
+			}
+		}
 		return bestValue;
 	}
 
 	@Override
 	public void randomize()
 	{
-		dwarfMaterialRatio = 10 + random.nextInt(10);
-		trollMaterialRatio = 10 + random.nextInt(10);
-		dwarfClusteringRatio = 0 + random.nextInt(6);
-		trollClusteringRatio = 0 + random.nextInt(6);
-		dwarfMobilityRatio = -2 + random.nextInt(8);
-		trollMobilityRatio = -2 + random.nextInt(8);
-		absoluteVictoryBonus = 80 + random.nextInt(100);
+		randomize(random);
+	}
+
+	/**
+	 @param generator The random generator giving the calibration values.
+	 */
+	public void randomize(Random generator)
+	{
+		dwarfMaterialRatio = 10 + generator.nextInt(10);
+		trollMaterialRatio = 10 + generator.nextInt(10);
+		dwarfClusteringRatio = 0 + generator.nextInt(6);
+		trollClusteringRatio = 0 + generator.nextInt(6);
+		dwarfMobilityRatio = -2 + generator.nextInt(8);
+		trollMobilityRatio = -2 + generator.nextInt(8);
+		absoluteVictoryBonus = 80 + generator.nextInt(100);
+	}
+
+	/**
+	 @return A new player with the same calibration values, and nothing of this one's searches.
+	 */
+	NegamaxPlayer copyCalibration()
+	{
+		return (NegamaxPlayer) makeChild(this);
 	}
 
 	@Override
@@ -220,6 +1377,7 @@ public class NegamaxPlayer extends Player
 		child.dwarfMobilityRatio = (dwarfMobilityRatio + otherNegamaxPlayer.dwarfMobilityRatio) / 2;
 		child.trollMobilityRatio = (trollMobilityRatio + otherNegamaxPlayer.trollMobilityRatio) / 2;
 		child.absoluteVictoryBonus = (absoluteVictoryBonus + otherNegamaxPlayer.absoluteVictoryBonus) / 2;
+		child.gameRecords = gameRecords;
 
 		return child;
 	}
@@ -229,28 +1387,11 @@ public class NegamaxPlayer extends Player
 	{
 		NegamaxPlayer otherNegamaxPlayer = (NegamaxPlayer) otherIndividual;
 
-		// Get the test ground.
-		Board testBoard = initialTestBoard.cloneBoard();
-
-		// Fight until a side wins, or a max number of turns has elapsed.
-		boolean myTurn = true;
-		int iteration = 0;
-		while (testBoard.numberOf(DWARF) > 0 && testBoard.numberOf(TROLL) > 0 && iteration++ < 1000)
-		{
-			if (myTurn)
-			{
-				makeBestMove(testBoard);
-			}
-			else
-			{
-				otherNegamaxPlayer.makeBestMove(testBoard);
-			}
-			myTurn = !myTurn;
-		}
+		// Since the dwarves play first, the first player, me, plays the dwarves.
+		int score = CalibrationTournament.playGame(this, otherNegamaxPlayer, CalibrationTournament.defaultBoard(),
+			CalibrationTournament.MAX_MOVES, gameRecords);
 
 		// Update the fitnesses of the players.
-		// Since the dwarves play first, the first player, me, scores the dzqrf side.
-		int score = testBoard.numberOf(DWARF) - 4 * testBoard.numberOf(TROLL);
 		fitness += score;
 		otherNegamaxPlayer.fitness -= score;
 	}
@@ -0,0 +1,39 @@
+package org.saucistophe.thud.model.players;
+
+import org.saucistophe.thud.model.boards.Board;
+
+/**
+ A Principal Variation Search (a.k.a. NegaScout) implementation of the Negamax
+ player. Moves being ordered, the first move of a node is assumed to be the
+ best: it is searched with the full alpha-beta window, and the other ones with
+ a null window, which only tells if they are better. Only those that are
+ get searched again with the full window.
+ */
+public class PvsPlayer extends NegamaxPlayer
+{
+	@Override
+	protected NegamaxPlayer newInstance()
+	{
+		return new PvsPlayer();
+	}
+
+	@Override
+	protected int searchMove(Board evaluatedBoard, int alpha, int beta, int depth, int moveIndex)
+	{
+		// The first move gets a full search.
+		if (moveIndex == 0)
+		{
+			return super.searchMove(evaluatedBoard, alpha, beta, depth, moveIndex);
+		}
+
+		// Check if the move beats the best one so far.
+		int score = -negaMax(evaluatedBoard, -alpha - 1, -alpha, depth + 1);
+
+		// If so, and if it doesn't cause a cutoff anyway, get its actual score.
+		if (score > alpha && score < beta)
+		{
+			score = super.searchMove(evaluatedBoard, alpha, beta, depth, moveIndex);
+		}
+		return score;
+	}
+}
@@ -0,0 +1,104 @@
+package org.saucistophe.thud.model.players;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ The time and nodes a search is allowed to spend, shared by all the threads
+ taking part in the search. Threads count their nodes locally, and report them
+ by batches, so that they rarely contend on the shared counter.
+ */
+public class SearchBudget
+{
+	/**
+	 The number of nodes a thread searches between two reports, i.e. two checks of the budget.
+	 */
+	public static final int CHECK_INTERVAL = 256;
+
+	/**
+	 The time when the search started, and when it must stop.
+	 */
+	private final long start, deadline;
+
+	/**
+	 The maximal number of nodes.
+	 */
+	private final long nodeLimit;
+
+	/**
+	 The number of nodes reported so far.
+	 */
+	private final AtomicLong nodes = new AtomicLong();
+
+	/**
+	 True when the budget is spent, or the search was stopped.
+	 */
+	private volatile boolean aborted = false;
+
+	/**
+	 @param time The time allowed in milliseconds, or 0 for no limit.
+	 @param maxNodes The number of nodes allowed, or 0 for no limit.
+	 */
+	public SearchBudget(long time, long maxNodes)
+	{
+		start = System.currentTimeMillis();
+		deadline = time > 0 ? start + time : Long.MAX_VALUE;
+		nodeLimit = maxNodes > 0 ? maxNodes : Long.MAX_VALUE;
+	}
+
+	/**
+	 @return True if the search is limited by time or nodes, false if it only stops at a given depth.
+	 */
+	public boolean isLimited()
+	{
+		return deadline != Long.MAX_VALUE || nodeLimit != Long.MAX_VALUE;
+	}
+
+	/**
+	 Reports searched nodes, and checks the budget.
+
+	 @param searchedNodes The number of nodes searched since the last report.
+	 @return True if the search must stop.
+	 */
+	public boolean spend(long searchedNodes)
+	{
+		if (nodes.addAndGet(searchedNodes) >= nodeLimit || System.currentTimeMillis() >= deadline)
+		{
+			aborted = true;
+		}
+		return aborted;
+	}
+
+	/**
+	 Stops the search.
+	 */
+	public void abort()
+	{
+		aborted = true;
+	}
+
+	/**
+	 @return True if the search must stop.
+	 */
+	public boolean isAborted()
+	{
+		return aborted;
+	}
+
+	/**
+	 @return The number of nodes reported so far.
+	 */
+	public long getNodes()
+	{
+		return nodes.get();
+	}
+
+	/**
+	 @return The progress of the search in percents, according to its time or nodes limit.
+	 */
+	public int progress()
+	{
+		long timeProgress = deadline == Long.MAX_VALUE ? 0 : 100 * (System.currentTimeMillis() - start) / (deadline - start);
+		long nodesProgress = nodeLimit == Long.MAX_VALUE ? 0 : 100 * nodes.get() / nodeLimit;
+		return (int) Math.min(100, Math.max(timeProgress, nodesProgress));
+	}
+}
@@ -0,0 +1,53 @@
+package org.saucistophe.thud.model.players;
+
+/**
+ The counters of a searching thread, summed into SearchStatistics at the end
+ of each iteration. Each thread has its own, so they're plain fields.
+ */
+class SearchCounters
+{
+	/**
+	 The positions visited, the leaves evaluated, and the positions whose moves were searched.
+	 */
+	long nodes, evaluations, expandedNodes;
+
+	/**
+	 The positions visited by the quiescence search, beyond the set depth, included in nodes.
+	 */
+	long quiescenceNodes;
+
+	/**
+	 The positions where a move caused a beta cutoff, and where it was the first one searched.
+	 */
+	long cutoffs, firstMoveCutoffs;
+
+	/**
+	 The lookups in the transposition table, and those that found the position.
+	 */
+	long transpositionProbes, transpositionHits;
+
+	/**
+	 @param other Counters to add to these ones.
+	 */
+	void add(SearchCounters other)
+	{
+		nodes += other.nodes;
+		evaluations += other.evaluations;
+		expandedNodes += other.expandedNodes;
+		quiescenceNodes += other.quiescenceNodes;
+		cutoffs += other.cutoffs;
+		firstMoveCutoffs += other.firstMoveCutoffs;
+		transpositionProbes += other.transpositionProbes;
+		transpositionHits += other.transpositionHits;
+	}
+
+	/**
+	 Resets all the counters.
+	 */
+	void clear()
+	{
+		nodes = evaluations = expandedNodes = quiescenceNodes = 0;
+		cutoffs = firstMoveCutoffs = 0;
+		transpositionProbes = transpositionHits = 0;
+	}
+}
@@ -0,0 +1,22 @@
+package org.saucistophe.thud.model.players;
+
+/**
+ Listens to the progress of a NegamaxPlayer's searches. Called from the
+ thread that asked for the move, while the search is running, so it must be quick.
+ */
+public interface SearchListener
+{
+	/**
+	 Called each time an iteration of the search is completed, i.e. once per depth.
+
+	 @param statistics The statistics of the iteration.
+	 */
+	void iterationCompleted(SearchStatistics statistics);
+
+	/**
+	 Called once the search is over, and the move chosen.
+
+	 @param statistics The statistics of the whole search, at the depth of the last completed iteration.
+	 */
+	void searchCompleted(SearchStatistics statistics);
+}
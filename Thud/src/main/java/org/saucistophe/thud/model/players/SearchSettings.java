@@ -0,0 +1,148 @@
+package org.saucistophe.thud.model.players;
+
+/**
+ How a NegamaxPlayer searches its moves: the depth, time and nodes per move,
+ the captures searched beyond the depth, the number of threads and the depth
+ from which they share a node, and the memory of its transposition table. Players use
+ the global AI settings by default, but can be given their own, e.g. when
+ several games are played at once.
+ */
+public class SearchSettings
+{
+	private final int maxDepth;
+	private final long moveTime;
+	private final long moveNodes;
+	private final int quiescenceDepth;
+	private final int threads;
+	private final int splitDepth;
+	private final int transpositionTableSize;
+
+	/**
+	 The depth from which a node is shared between threads, unless told otherwise.
+	 */
+	public static final int DEFAULT_SPLIT_DEPTH = 2;
+
+	/**
+	 @param maxDepth The depth searched when there's no time or nodes limit.
+	 @param moveTime The time per move in ms, or 0 for a fixed depth.
+	 @param moveNodes The nodes per move, or 0 for a fixed depth.
+	 @param quiescenceDepth The number of captures searched beyond the depth, 0 for none.
+	 @param threads The number of search threads.
+	 @param transpositionTableSize The size of the transposition table, in MB.
+	 */
+	public SearchSettings(int maxDepth, long moveTime, long moveNodes, int quiescenceDepth, int threads, int transpositionTableSize)
+	{
+		this(maxDepth, moveTime, moveNodes, quiescenceDepth, threads, DEFAULT_SPLIT_DEPTH, transpositionTableSize);
+	}
+
+	/**
+	 @param maxDepth The depth searched when there's no time or nodes limit.
+	 @param moveTime The time per move in ms, or 0 for a fixed depth.
+	 @param moveNodes The nodes per move, or 0 for a fixed depth.
+	 @param quiescenceDepth The number of captures searched beyond the depth, 0 for none.
+	 @param threads The number of search threads.
+	 @param splitDepth The minimal depth left below a node for its moves to be shared between threads.
+	 @param transpositionTableSize The size of the transposition table, in MB.
+	 */
+	public SearchSettings(int maxDepth, long moveTime, long moveNodes, int quiescenceDepth, int threads, int splitDepth,
+		int transpositionTableSize)
+	{
+		if (maxDepth < 1 || moveTime < 0 || moveNodes < 0 || quiescenceDepth < 0 || threads < 1 || splitDepth < 1
+			|| transpositionTableSize < 1)
+		{
+			throw new IllegalArgumentException("Invalid search settings: depth " + maxDepth + ", time " + moveTime
+				+ ", nodes " + moveNodes + ", quiescence depth " + quiescenceDepth + ", threads " + threads
+				+ ", split depth " + splitDepth + ", table size " + transpositionTableSize + ".");
+		}
+		this.maxDepth = Math.min(maxDepth, TranspositionTable.MAX_DEPTH);
+		this.moveTime = moveTime;
+		this.moveNodes = moveNodes;
+		this.quiescenceDepth = quiescenceDepth;
+		this.threads = threads;
+		this.splitDepth = splitDepth;
+		this.transpositionTableSize = transpositionTableSize;
+	}
+
+	/**
+	 @return The current global AI settings.
+	 */
+	public static SearchSettings fromGlobalSettings()
+	{
+		return new SearchSettings(NegamaxPlayer.MAX_DEPTH, NegamaxPlayer.MOVE_TIME, NegamaxPlayer.MOVE_NODES,
+			NegamaxPlayer.QUIESCENCE_DEPTH, NegamaxPlayer.SEARCH_THREADS, NegamaxPlayer.SPLIT_DEPTH,
+			NegamaxPlayer.TRANSPOSITION_TABLE_SIZE);
+	}
+
+	/**
+	 @return The depth searched when there's no time or nodes limit.
+	 */
+	public int getMaxDepth()
+	{
+		return maxDepth;
+	}
+
+	/**
+	 @return The time per move in ms, or 0 for a fixed depth.
+	 */
+	public long getMoveTime()
+	{
+		return moveTime;
+	}
+
+	/**
+	 @return The nodes per move, or 0 for a fixed depth.
+	 */
+	public long getMoveNodes()
+	{
+		return moveNodes;
+	}
+
+	/**
+	 @return The number of captures searched beyond the depth, 0 for none.
+	 */
+	public int getQuiescenceDepth()
+	{
+		return quiescenceDepth;
+	}
+
+	/**
+	 @return The number of search threads.
+	 */
+	public int getThreads()
+	{
+		return threads;
+	}
+
+	/**
+	 @return The minimal depth left below a node for its moves to be shared between threads.
+	 */
+	public int getSplitDepth()
+	{
+		return splitDepth;
+	}
+
+	/**
+	 @return The size of the transposition table, in MB.
+	 */
+	public int getTranspositionTableSize()
+	{
+		return transpositionTableSize;
+	}
+
+	/**
+	 @return A new budget for a move, following these settings.
+	 */
+	public SearchBudget newBudget()
+	{
+		return new SearchBudget(moveTime, moveNodes);
+	}
+
+	/**
+	 @param budget A budget following these settings.
+	 @return The depth of the last iteration: the set depth without a limit, as deep as possible with one.
+	 */
+	public int lastDepth(SearchBudget budget)
+	{
+		return budget.isLimited() ? TranspositionTable.MAX_DEPTH : maxDepth;
+	}
+}
@@ -0,0 +1,191 @@
+package org.saucistophe.thud.model.players;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.saucistophe.thud.model.Move;
+
+/**
+ The statistics of a search iteration, or of a whole search: what was found,
+ and how much work it took.
+ */
+public class SearchStatistics
+{
+	private final int depth;
+	private final int score;
+	private final List<Move> principalVariation;
+	private final long nodes, evaluations, expandedNodes, quiescenceNodes, cutoffs, firstMoveCutoffs, transpositionProbes, transpositionHits;
+	private final long time;
+	private final double branchingFactor;
+
+	/**
+	 @param depth The depth searched.
+	 @param score The score of the best move.
+	 @param principalVariation The expected best sequence of moves.
+	 @param counters The counters of all the searching threads.
+	 @param time The time spent, in milliseconds.
+	 @param branchingFactor The effective branching factor.
+	 */
+	SearchStatistics(int depth, int score, List<Move> principalVariation, SearchCounters counters, long time, double branchingFactor)
+	{
+		this.depth = depth;
+		this.score = score;
+		this.principalVariation = Collections.unmodifiableList(new ArrayList<>(principalVariation));
+		this.nodes = counters.nodes;
+		this.evaluations = counters.evaluations;
+		this.expandedNodes = counters.expandedNodes;
+		this.quiescenceNodes = counters.quiescenceNodes;
+		this.cutoffs = counters.cutoffs;
+		this.firstMoveCutoffs = counters.firstMoveCutoffs;
+		this.transpositionProbes = counters.transpositionProbes;
+		this.transpositionHits = counters.transpositionHits;
+		this.time = time;
+		this.branchingFactor = branchingFactor;
+	}
+
+	/**
+	 @return The depth searched.
+	 */
+	public int getDepth()
+	{
+		return depth;
+	}
+
+	/**
+	 @return The score of the best move, for the side that plays it.
+	 */
+	public int getScore()
+	{
+		return score;
+	}
+
+	/**
+	 @return The expected best sequence of moves, starting with the best move.
+	 */
+	public List<Move> getPrincipalVariation()
+	{
+		return principalVariation;
+	}
+
+	/**
+	 @return The number of positions visited.
+	 */
+	public long getNodes()
+	{
+		return nodes;
+	}
+
+	/**
+	 @return The number of leaves evaluated.
+	 */
+	public long getEvaluations()
+	{
+		return evaluations;
+	}
+
+	/**
+	 @return The number of positions whose moves were searched.
+	 */
+	public long getExpandedNodes()
+	{
+		return expandedNodes;
+	}
+
+	/**
+	 @return The number of positions visited by the quiescence search, beyond the set depth.
+	 */
+	public long getQuiescenceNodes()
+	{
+		return quiescenceNodes;
+	}
+
+	/**
+	 @return The number of positions where a move caused a beta cutoff.
+	 */
+	public long getCutoffs()
+	{
+		return cutoffs;
+	}
+
+	/**
+	 @return The number of positions where the first move searched caused a beta cutoff.
+	 */
+	public long getFirstMoveCutoffs()
+	{
+		return firstMoveCutoffs;
+	}
+
+	/**
+	 @return The number of lookups in the transposition table.
+	 */
+	public long getTranspositionProbes()
+	{
+		return transpositionProbes;
+	}
+
+	/**
+	 @return The number of lookups that found the position in the transposition table.
+	 */
+	public long getTranspositionHits()
+	{
+		return transpositionHits;
+	}
+
+	/**
+	 @return The time spent, in milliseconds.
+	 */
+	public long getTime()
+	{
+		return time;
+	}
+
+	/**
+	 @return The number of positions visited per second.
+	 */
+	public long getNodesPerSecond()
+	{
+		return time == 0 ? 0 : nodes * 1000 / time;
+	}
+
+	/**
+	 @return The ratio of the nodes of this iteration to those of the previous one,
+	 i.e. how much harder each additional ply is. 0 for the first iteration.
+	 */
+	public double getBranchingFactor()
+	{
+		return branchingFactor;
+	}
+
+	/**
+	 @return The share of the searched positions that had a beta cutoff.
+	 */
+	public double getCutoffRate()
+	{
+		return expandedNodes == 0 ? 0 : (double) cutoffs / expandedNodes;
+	}
+
+	/**
+	 @return The share of the cutoffs caused by the first move, which tells how good the move ordering is.
+	 */
+	public double getFirstMoveCutoffRate()
+	{
+		return cutoffs == 0 ? 0 : (double) firstMoveCutoffs / cutoffs;
+	}
+
+	/**
+	 @return The share of the lookups that found the position in the transposition table.
+	 */
+	public double getTranspositionHitRate()
+	{
+		return transpositionProbes == 0 ? 0 : (double) transpositionHits / transpositionProbes;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("depth %d, score %d, %d nodes in %d ms (%d/s), %d in quiescence, %d evaluations, branching factor %.1f, "
+			+ "cutoffs %.0f%% (first move %.0f%%), transposition hits %.0f%%",
+			depth, score, nodes, time, getNodesPerSecond(), quiescenceNodes, evaluations, branchingFactor,
+			100 * getCutoffRate(), 100 * getFirstMoveCutoffRate(), 100 * getTranspositionHitRate());
+	}
+}
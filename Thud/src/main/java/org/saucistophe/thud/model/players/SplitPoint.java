@@ -0,0 +1,82 @@
+package org.saucistophe.thud.model.players;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.saucistophe.thud.model.boards.Board;
+
+/**
+ A node whose moves are searched by several threads: once its eldest move is
+ searched, the remaining ones are shared. A cutoff found by any of them
+ cancels the others, along with all the split points below them.
+ */
+class SplitPoint
+{
+	/**
+	 The split point the node was found under, if any.
+	 */
+	private final SplitPoint parent;
+
+	/**
+	 The board of the node, left unchanged until all its moves are searched.
+	 */
+	final Board board;
+
+	/**
+	 The depth of the node, and its beta parameter.
+	 */
+	final int depth, beta;
+
+	/**
+	 The best score found so far, raised as the moves are searched.
+	 */
+	final AtomicInteger alpha;
+
+	/**
+	 True when a cutoff made the remaining moves useless.
+	 */
+	private volatile boolean cancelled = false;
+
+	/**
+	 @param parent The split point the node was found under, or null.
+	 @param board The board of the node.
+	 @param depth The depth of the node.
+	 @param alpha The alpha parameter of the node, after its eldest move.
+	 @param beta The beta parameter of the node.
+	 */
+	SplitPoint(SplitPoint parent, Board board, int depth, int alpha, int beta)
+	{
+		this.parent = parent;
+		this.board = board;
+		this.depth = depth;
+		this.alpha = new AtomicInteger(alpha);
+		this.beta = beta;
+	}
+
+	/**
+	 Records the score of a searched move, and cancels the others on a cutoff.
+
+	 @param score The score of the move.
+	 */
+	void raiseAlpha(int score)
+	{
+		alpha.accumulateAndGet(score, Math::max);
+		if (score >= beta)
+		{
+			cancelled = true;
+		}
+	}
+
+	/**
+	 @return True if this split point, or one it was found under, was cancelled.
+	 */
+	boolean isCancelled()
+	{
+		for (SplitPoint splitPoint = this; splitPoint != null; splitPoint = splitPoint.parent)
+		{
+			if (splitPoint.cancelled)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+}
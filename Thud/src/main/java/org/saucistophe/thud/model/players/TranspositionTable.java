@@ -0,0 +1,217 @@
+package org.saucistophe.thud.model.players;
+
+import java.util.Arrays;
+
+/**
+ A fixed-size hash table of already searched positions, indexed by their
+ Zobrist key. Each entry stores the score found for a position, whether it is
+ an exact value or a bound, the depth it was searched to, and its best move.
+
+ Entries are grouped by buckets of two: when storing a new position, the entry
+ for the same position is replaced if present, otherwise the least valuable
+ entry of the bucket, i.e. the shallowest one or one left by an older search.
+
+ Entries are packed in a long, to avoid any allocation: the score in the upper
+ 32 bits, then the best move on 24 bits, the depth on 6 bits and the bound on 2.
+
+ The table can be shared by several searching threads without locks: each
+ key is stored XORed with its data, so that an entry half-written by another
+ thread doesn't match its key anymore, and is simply ignored.
+ */
+public class TranspositionTable
+{
+	/**
+	 The bound types. A zero bound means an empty entry.
+	 */
+	public static final int EXACT = 1, LOWER_BOUND = 2, UPPER_BOUND = 3;
+
+	/**
+	 The number of entries per bucket.
+	 */
+	private static final int BUCKET_SIZE = 2;
+
+	/**
+	 The size of an entry in bytes: its key, its data, and its generation.
+	 */
+	private static final int ENTRY_SIZE = 8 + 8 + 1;
+
+	/**
+	 The part of a packed move that is stored: the squares and captured dwarves, without the flags.
+	 */
+	private static final int MOVE_MASK = 0xFFFFFF;
+
+	/**
+	 The maximal depth that can be stored.
+	 */
+	public static final int MAX_DEPTH = 63;
+
+	private final long[] keys;
+	private final long[] data;
+	private final byte[] generations;
+
+	/**
+	 The mask giving the first entry of a bucket from a key.
+	 */
+	private final int bucketMask;
+
+	/**
+	 The current search generation, used to replace entries of older searches first.
+	 */
+	private byte generation = 0;
+
+	/**
+	 @param sizeInMegabytes The approximate memory used by the table.
+	 */
+	public TranspositionTable(int sizeInMegabytes)
+	{
+		// Use the largest power of two of buckets that fits in the given size.
+		long buckets = Long.highestOneBit(Math.max(1, (long) sizeInMegabytes * 1024 * 1024 / (ENTRY_SIZE * BUCKET_SIZE)));
+		buckets = Math.min(buckets, Integer.MAX_VALUE / BUCKET_SIZE + 1);
+		int entries = (int) buckets * BUCKET_SIZE;
+
+		keys = new long[entries];
+		data = new long[entries];
+		generations = new byte[entries];
+		bucketMask = (int) (buckets - 1) * BUCKET_SIZE;
+	}
+
+	/**
+	 Starts a new search, which makes the current entries older.
+	 */
+	public void newSearch()
+	{
+		generation++;
+	}
+
+	/**
+	 Removes all the entries.
+	 */
+	public void clear()
+	{
+		Arrays.fill(keys, 0);
+		Arrays.fill(data, 0);
+		Arrays.fill(generations, (byte) 0);
+	}
+
+	/**
+	 @param key The Zobrist key of a position.
+	 @return The packed data stored for this position, or 0 if not found.
+	 */
+	public long probe(long key)
+	{
+		int bucket = (int) key & bucketMask;
+		for (int entry = bucket; entry < bucket + BUCKET_SIZE; entry++)
+		{
+			long entryData = data[entry];
+			if ((keys[entry] ^ entryData) == key && entryData != 0)
+			{
+				return entryData;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 Stores the result of a search.
+
+	 @param key The Zobrist key of the position.
+	 @param score The score found.
+	 @param bound The type of the score, EXACT, LOWER_BOUND or UPPER_BOUND.
+	 @param depth The depth of the search that found the score.
+	 @param bestMove The best move found, packed, or 0 if none.
+	 */
+	public void store(long key, int score, int bound, int depth, int bestMove)
+	{
+		int bucket = (int) key & bucketMask;
+
+		// Find the entry to replace: the same position, or the least valuable one.
+		int replaced = bucket;
+		int lowestValue = Integer.MAX_VALUE;
+		for (int entry = bucket; entry < bucket + BUCKET_SIZE; entry++)
+		{
+			if ((keys[entry] ^ data[entry]) == key)
+			{
+				replaced = entry;
+				break;
+			}
+
+			// Entries of older searches are worth less.
+			int value = depth(data[entry]) - (generations[entry] == generation ? 0 : MAX_DEPTH + 1);
+			if (value < lowestValue)
+			{
+				lowestValue = value;
+				replaced = entry;
+			}
+		}
+
+		// Keep the best move of a previous search of the position if none was found.
+		long replacedData = data[replaced];
+		int packedMove = bestMove != 0
+			? bestMove & MOVE_MASK
+			: (keys[replaced] ^ replacedData) == key ? move(replacedData) : 0;
+
+		long entryData = ((long) score << 32)
+			| ((long) packedMove << 8)
+			| (Math.min(depth, MAX_DEPTH) << 2)
+			| bound;
+		data[replaced] = entryData;
+		keys[replaced] = key ^ entryData;
+		generations[replaced] = generation;
+	}
+
+	/**
+	 @param entry Packed data returned by probe.
+	 @return The stored score.
+	 */
+	public static int score(long entry)
+	{
+		return (int) (entry >> 32);
+	}
+
+	/**
+	 @param entry Packed data returned by probe.
+	 @return The stored best move, packed without its flags, or 0 if none.
+	 */
+	public static int move(long entry)
+	{
+		return (int) (entry >>> 8) & MOVE_MASK;
+	}
+
+	/**
+	 @param entry Packed data returned by probe.
+	 @param packedMove A packed move.
+	 @return The entry, with this move as its best move.
+	 */
+	public static long withMove(long entry, int packedMove)
+	{
+		return entry & ~((long) MOVE_MASK << 8) | (long) (packedMove & MOVE_MASK) << 8;
+	}
+
+	/**
+	 @param entry Packed data returned by probe.
+	 @param packedMove A packed move.
+	 @return True if the move is the stored best move.
+	 */
+	public static boolean isBestMove(long entry, int packedMove)
+	{
+		return move(entry) == (packedMove & MOVE_MASK);
+	}
+
+	/**
+	 @param entry Packed data returned by probe.
+	 @return The depth of the search the entry comes from.
+	 */
+	public static int depth(long entry)
+	{
+		return (int) (entry >>> 2) & MAX_DEPTH;
+	}
+
+	/**
+	 @param entry Packed data returned by probe.
+	 @return The bound type of the score.
+	 */
+	public static int bound(long entry)
+	{
+		return (int) entry & 3;
+	}
+}
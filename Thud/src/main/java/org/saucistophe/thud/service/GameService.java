@@ -0,0 +1,228 @@
+package org.saucistophe.thud.service;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.saucistophe.thud.model.Move;
+import org.saucistophe.thud.model.boards.Board;
+import org.saucistophe.thud.model.players.NegamaxPlayer;
+import org.saucistophe.thud.model.players.SearchBudget;
+import org.saucistophe.thud.model.players.SearchSettings;
+
+/**
+ Hosts many games at once in the same JVM, each in its own session, with its
+ own board and AI settings.
+
+ Sessions cost nothing while waiting for their player: they only run a task
+ while the AI thinks, on a virtual thread when the JVM has them, on a pooled
+ thread otherwise. The searches themselves run on a bounded pool of workers,
+ shared by all the sessions; a fair semaphore limits the number of searches
+ running at once, the others waiting for their turn in order of arrival.
+ */
+public class GameService implements AutoCloseable
+{
+	/**
+	 This class' logger.
+	 */
+	public static Logger LOGGER = Logger.getLogger(GameService.class.getName());
+
+	/**
+	 The workers running the searches.
+	 */
+	private final ForkJoinPool searchPool;
+
+	/**
+	 The searches allowed to run at once, given in order of request.
+	 */
+	private final Semaphore searchPermits;
+
+	/**
+	 The threads running the sessions' tasks.
+	 */
+	private final ExecutorService sessionExecutor = newSessionExecutor();
+
+	private final Map<Long, GameSession> sessions = new ConcurrentHashMap<>();
+	private final AtomicLong nextSessionId = new AtomicLong(1);
+
+	/**
+	 A service with a search worker per processor, each running a search.
+	 */
+	public GameService()
+	{
+		this(Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 @param searchWorkers The number of threads running the searches.
+	 @param concurrentSearches The number of searches running at once.
+	 */
+	public GameService(int searchWorkers, int concurrentSearches)
+	{
+		searchPool = new ForkJoinPool(searchWorkers);
+		searchPermits = new Semaphore(concurrentSearches, true);
+	}
+
+	/**
+	 @return An executor starting a virtual thread per task if the JVM supports them, or a thread pool.
+	 */
+	private static ExecutorService newSessionExecutor()
+	{
+		try
+		{
+			// Virtual threads come with Java 21, so they're looked up at runtime.
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException ex)
+		{
+			LOGGER.log(Level.FINE, "No virtual threads, the sessions run on a thread pool.", ex);
+			return Executors.newCachedThreadPool(task ->
+			{
+				Thread thread = new Thread(task, "Thud session");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 Starts a new game.
+
+	 @param board The starting position, copied.
+	 @param settings The settings of the game's AI.
+	 @return The new session.
+	 */
+	public GameSession newSession(Board board, SearchSettings settings)
+	{
+		NegamaxPlayer player = new NegamaxPlayer();
+		player.setSearchSettings(settings);
+		player.setSearchPool(searchPool);
+
+		GameSession session = new GameSession(this, nextSessionId.getAndIncrement(), board.cloneBoard(), player);
+		sessions.put(session.getId(), session);
+		return session;
+	}
+
+	/**
+	 @param id The id of a session.
+	 @return The session, or null if there's none, or if it was closed.
+	 */
+	public GameSession getSession(long id)
+	{
+		return sessions.get(id);
+	}
+
+	/**
+	 @return The number of open sessions.
+	 */
+	public int getSessionCount()
+	{
+		return sessions.size();
+	}
+
+	/**
+	 @param session A session being closed.
+	 */
+	void removeSession(GameSession session)
+	{
+		sessions.remove(session.getId());
+	}
+
+	/**
+	 @param task A task of a session.
+	 @param <T> The type of the task's result.
+	 @return The task's future result.
+	 */
+	<T> Future<T> submit(Callable<T> task)
+	{
+		return sessionExecutor.submit(task);
+	}
+
+	/**
+	 Searches the best move of a position on the search workers, once it's the session's turn.
+
+	 @param session The session.
+	 @param player The session's player.
+	 @param board The position, left unchanged.
+	 @return The best move, or null if there's none, or if the session was closed while waiting.
+	 @throws InterruptedException If interrupted while waiting, the search being then stopped.
+	 */
+	Move search(GameSession session, NegamaxPlayer player, Board board) throws InterruptedException
+	{
+		searchPermits.acquire();
+		try
+		{
+			// The session may have been closed while waiting for its turn.
+			if (session.isClosed())
+			{
+				return null;
+			}
+			SearchSettings settings = player.getSearchSettings();
+			SearchBudget budget = settings.newBudget();
+			Future<Move> search = searchPool.submit(() -> player.search(board, settings.lastDepth(budget), budget));
+			try
+			{
+				return search.get();
+			} catch (InterruptedException ex)
+			{
+				// The search may not have started yet: aborting its budget stops it either way. The permit
+				// is only given back once it has stopped, so that no more searches than allowed run at once.
+				budget.abort();
+				awaitEnd(search);
+				throw ex;
+			}
+		} catch (ExecutionException ex)
+		{
+			throw new IllegalStateException("The search failed.", ex.getCause());
+		} finally
+		{
+			searchPermits.release();
+		}
+	}
+
+	/**
+	 Waits for a task to end, whatever its result, even if interrupted.
+
+	 @param task A task.
+	 */
+	private static void awaitEnd(Future<?> task)
+	{
+		while (true)
+		{
+			try
+			{
+				task.get();
+				return;
+			} catch (InterruptedException ex)
+			{
+				// The caller was already interrupted, and is told so.
+			} catch (ExecutionException | CancellationException ex)
+			{
+				return;
+			}
+		}
+	}
+
+	/**
+	 Closes all the sessions, and stops the threads.
+	 */
+	@Override
+	public void close()
+	{
+		for (GameSession session : sessions.values())
+		{
+			session.close();
+		}
+		sessionExecutor.shutdown();
+		searchPool.shutdown();
+	}
+}
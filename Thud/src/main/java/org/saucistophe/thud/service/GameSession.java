@@ -0,0 +1,148 @@
+package org.saucistophe.thud.service;
+
+import java.util.List;
+import java.util.concurrent.Future;
+import org.saucistophe.thud.model.Move;
+import org.saucistophe.thud.model.boards.Board;
+import org.saucistophe.thud.model.players.NegamaxPlayer;
+
+/**
+ A game hosted by a GameService, between a remote player and the AI. The
+ session owns its board and its player, with their own settings and
+ transposition table, so that the games don't interfere with each other.
+ */
+public class GameSession
+{
+	private final GameService service;
+	private final long id;
+	private final Board board;
+	private final NegamaxPlayer player;
+
+	/**
+	 The AI's move being searched, if any.
+	 */
+	private Future<Move> pendingMove = null;
+
+	private volatile boolean closed = false;
+
+	GameSession(GameService service, long id, Board board, NegamaxPlayer player)
+	{
+		this.service = service;
+		this.id = id;
+		this.board = board;
+		this.player = player;
+	}
+
+	/**
+	 @return The id of the session in its service.
+	 */
+	public long getId()
+	{
+		return id;
+	}
+
+	/**
+	 @return A copy of the current position.
+	 */
+	public synchronized Board getBoard()
+	{
+		return board.cloneBoard();
+	}
+
+	/**
+	 @return The legal moves of the current position.
+	 */
+	public synchronized List<Move> legalMoves()
+	{
+		return board.legalMoves();
+	}
+
+	/**
+	 Plays a move of the remote player.
+
+	 @param move The move, which must be legal.
+	 */
+	public synchronized void play(Move move)
+	{
+		checkIdle();
+		if (!board.legalMoves().contains(move))
+		{
+			throw new IllegalArgumentException("Illegal move: " + board.moveText(move));
+		}
+		board.makeMove(move);
+	}
+
+	/**
+	 Lets the AI play the next move, in the background.
+
+	 @return The move played, or null if there was none, once searched and played.
+	 */
+	public synchronized Future<Move> playAi()
+	{
+		checkIdle();
+		Board searchedBoard = board.cloneBoard();
+		pendingMove = service.submit(() ->
+		{
+			// Even if the search fails, or is cancelled, the session can play again.
+			Move move = null;
+			try
+			{
+				move = closed ? null : service.search(this, player, searchedBoard);
+			} finally
+			{
+				synchronized (this)
+				{
+					if (move != null && !closed)
+					{
+						board.makeMove(move);
+					}
+					pendingMove = null;
+				}
+			}
+			return move;
+		});
+		return pendingMove;
+	}
+
+	/**
+	 Checks that the session is open, and not waiting for the AI.
+	 */
+	private void checkIdle()
+	{
+		if (closed)
+		{
+			throw new IllegalStateException("The session " + id + " is closed.");
+		}
+		if (pendingMove != null)
+		{
+			throw new IllegalStateException("The AI is playing.");
+		}
+	}
+
+	/**
+	 @return True once the session is closed.
+	 */
+	boolean isClosed()
+	{
+		return closed;
+	}
+
+	/**
+	 Ends the game, stopping the AI if it's thinking, or waiting for its turn.
+	 */
+	public void close()
+	{
+		Future<Move> pending;
+		synchronized (this)
+		{
+			closed = true;
+			pending = pendingMove;
+		}
+		if (pending != null)
+		{
+			pending.cancel(true);
+		}
+		player.stopSearch();
+		service.removeSession(this);
+	}
+}
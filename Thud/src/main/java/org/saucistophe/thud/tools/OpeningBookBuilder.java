@@ -0,0 +1,247 @@
+package org.saucistophe.thud.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.saucistophe.thud.model.Move;
+import org.saucistophe.thud.model.MoveList;
+import org.saucistophe.thud.model.boards.Board;
+import org.saucistophe.thud.model.boards.GameRecordReader;
+import org.saucistophe.thud.model.boards.OpeningBook;
+import org.saucistophe.thud.model.boards.PositionCodec;
+import org.saucistophe.thud.model.players.NegamaxPlayer;
+import org.saucistophe.thud.model.players.SearchBudget;
+import org.saucistophe.thud.model.players.SearchSettings;
+
+/**
+ Builds an OpeningBook, from self-play games and from recorded games.
+
+ Self-play games are played ply by ply, all at once: the distinct positions
+ the games reach are searched in parallel, each by a new player, and each game
+ then plays the best move of its position, or sometimes a random move, so that
+ the games spread over the likely openings. Each time a game reaches a
+ position, the weight of its best move grows. As each search starts afresh,
+ and the randomness of each game comes from the seed, the book doesn't depend
+ on the number of threads.
+
+ Usage: OpeningBookBuilder board.thud output.book plies games [depth] [threads] [seed] [records.thudgames...]
+ */
+public class OpeningBookBuilder
+{
+	/**
+	 The chance, in percent, that a self-play game plays a random move instead of the best one.
+	 */
+	public static final int DEVIATION = 25;
+
+	private final Board board;
+	private final PositionCodec codec;
+
+	/**
+	 The weight of each move, by position, both in the canonical form.
+	 */
+	private final Map<Long, Map<Integer, Integer>> weights = new HashMap<>();
+
+	/**
+	 @param board A board of the book's shape, usually the initial position.
+	 */
+	public OpeningBookBuilder(Board board)
+	{
+		this.board = board.cloneBoard();
+		codec = PositionCodec.of(board);
+	}
+
+	/**
+	 @param position A position.
+	 @param packedMove One of its moves.
+	 @param weight The weight added to the move.
+	 */
+	private void addMove(Board position, int packedMove, int weight)
+	{
+		int move = position.transformMove(packedMove, position.getCanonicalSymmetry());
+		weights.computeIfAbsent(position.getCanonicalKey(), key -> new HashMap<>()).merge(move, weight, Integer::sum);
+	}
+
+	/**
+	 Plays self-play games from the builder's board.
+
+	 @param plies The number of plies of each game, i.e. the depth of the book.
+	 @param games The number of games.
+	 @param settings The search settings of the players.
+	 @param threads The number of positions searched at once.
+	 @param seed The seed of the games' randomness.
+	 */
+	public void selfPlay(int plies, int games, SearchSettings settings, int threads, long seed)
+	{
+		List<Board> boards = new ArrayList<>();
+		List<Random> randoms = new ArrayList<>();
+		for (int game = 0; game < games; game++)
+		{
+			boards.add(board.cloneBoard());
+			randoms.add(new Random(seed * 31 + game));
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try
+		{
+			MoveList moves = new MoveList();
+			for (int ply = 0; ply < plies && !boards.isEmpty(); ply++)
+			{
+				// The distinct positions, in the order of the games.
+				Map<Long, Board> positions = new LinkedHashMap<>();
+				for (Board game : boards)
+				{
+					positions.putIfAbsent(game.getCanonicalKey(), game);
+				}
+				List<Callable<Integer>> searches = new ArrayList<>();
+				for (Board position : positions.values())
+				{
+					Board searched = position.cloneBoard();
+					searches.add(() -> bestMove(searched, settings));
+				}
+				List<Future<Integer>> results = executor.invokeAll(searches);
+				Map<Long, Integer> bestMoves = new HashMap<>();
+				int searchIndex = 0;
+				for (Map.Entry<Long, Board> position : positions.entrySet())
+				{
+					Board searched = position.getValue();
+					int move = results.get(searchIndex++).get();
+					bestMoves.put(position.getKey(), searched.transformMove(move, searched.getCanonicalSymmetry()));
+				}
+
+				// Each game plays its move, and ends if there is none.
+				for (int game = boards.size() - 1; game >= 0; game--)
+				{
+					Board position = boards.get(game);
+					int move = position.inverseTransformMove(bestMoves.get(position.getCanonicalKey()), position.getCanonicalSymmetry());
+					if (move == 0)
+					{
+						boards.remove(game);
+						randoms.remove(game);
+						continue;
+					}
+					addMove(position, move, 1);
+
+					Random random = randoms.get(game);
+					if (random.nextInt(100) < DEVIATION)
+					{
+						position.generateMoves(moves);
+						move = moves.get(random.nextInt(moves.size()));
+					}
+					position.makeMove(move);
+				}
+			}
+		} catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("The self-play was interrupted.", ex);
+		} catch (ExecutionException ex)
+		{
+			throw new IllegalStateException("A search failed.", ex.getCause());
+		} finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 @param position A position.
+	 @param settings The search settings.
+	 @return The best move of the position, found by a new player, packed, or 0 if there's none.
+	 */
+	private static int bestMove(Board position, SearchSettings settings)
+	{
+		NegamaxPlayer player = new NegamaxPlayer();
+		player.setSearchSettings(settings);
+		SearchBudget budget = settings.newBudget();
+		Move move = player.search(position, settings.lastDepth(budget), budget);
+		return move == null ? 0 : move.pack();
+	}
+
+	/**
+	 Adds the first moves of recorded games, each weighing as much as a self-play
+	 visit. Games on another shape, or with other rocks, are skipped.
+
+	 @param reader The recorded games, read up to their end.
+	 @param plies The number of plies of each game added to the book.
+	 @throws IOException If the games can't be read.
+	 */
+	public void addGames(GameRecordReader reader, int plies) throws IOException
+	{
+		while (reader.nextGame())
+		{
+			if (!codec.accepts(reader.getStartPosition()))
+			{
+				continue;
+			}
+			int[] ply = new int[1];
+			reader.replay((position, move) ->
+			{
+				if (ply[0]++ < plies)
+				{
+					addMove(position, move, 1);
+				}
+			});
+		}
+	}
+
+	/**
+	 @return The number of positions in the book.
+	 */
+	public int getPositions()
+	{
+		return weights.size();
+	}
+
+	/**
+	 @param file The file to write the book to.
+	 @throws IOException If the file can't be written.
+	 */
+	public void write(File file) throws IOException
+	{
+		OpeningBook.write(file, board, weights);
+	}
+
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length < 4)
+		{
+			System.err.println("Usage: OpeningBookBuilder board.thud output.book plies games [depth] [threads] [seed] [records.thudgames...]");
+			System.exit(1);
+		}
+
+		Board board = Board.readFromFile(new File(args[0]));
+		File file = new File(args[1]);
+		int plies = Integer.parseInt(args[2]);
+		int games = Integer.parseInt(args[3]);
+		int depth = args.length > 4 ? Integer.parseInt(args[4]) : NegamaxPlayer.MAX_DEPTH;
+		int threads = args.length > 5 ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+		long seed = args.length > 6 ? Long.parseLong(args[6]) : System.currentTimeMillis();
+
+		long start = System.nanoTime();
+		OpeningBookBuilder builder = new OpeningBookBuilder(board);
+		builder.selfPlay(plies, games, new SearchSettings(depth, 0, 0, NegamaxPlayer.QUIESCENCE_DEPTH, 1, 16), threads, seed);
+		for (int i = 7; i < args.length; i++)
+		{
+			try (GameRecordReader reader = GameRecordReader.open(new File(args[i])))
+			{
+				builder.addGames(reader, plies);
+			}
+		}
+		builder.write(file);
+
+		System.out.println("Seed: " + seed);
+		System.out.println("Positions: " + builder.getPositions());
+		System.out.println("Time: " + (System.nanoTime() - start) / 1000000 + " ms");
+		System.out.println("File: " + file + ", " + file.length() + " bytes");
+	}
+}
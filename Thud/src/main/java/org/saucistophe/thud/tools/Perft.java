@@ -0,0 +1,158 @@
+package org.saucistophe.thud.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.saucistophe.thud.model.Move;
+import org.saucistophe.thud.model.MoveList;
+import org.saucistophe.thud.model.boards.Board;
+
+/**
+ Counts the positions reachable from a board in a given number of moves, a
+ well-known way to check a move generator, and to measure its speed. The
+ counts of each first move can be detailed ("divide"), which points to the
+ faulty moves when two generators disagree.
+
+ Usage: Perft board.thud depth [threads]
+ */
+public class Perft
+{
+	private Perft()
+	{
+	}
+
+	/**
+	 @param board The board to start from, left unchanged.
+	 @param depth The number of moves to play.
+	 @return The number of positions reached after exactly this number of moves.
+	 */
+	public static long count(Board board, int depth)
+	{
+		MoveList[] plyMoves = new MoveList[Math.max(depth, 1)];
+		for (int ply = 0; ply < plyMoves.length; ply++)
+		{
+			plyMoves[ply] = new MoveList();
+		}
+		return count(board, depth, plyMoves);
+	}
+
+	/**
+	 @param board The board, moves being applied and reverted on it.
+	 @param depth The number of moves left to play.
+	 @param plyMoves The lists of moves for each remaining depth.
+	 @return The number of positions reached.
+	 */
+	private static long count(Board board, int depth, MoveList[] plyMoves)
+	{
+		if (depth == 0)
+		{
+			return 1;
+		}
+
+		MoveList moves = plyMoves[depth - 1];
+		board.generateMoves(moves);
+
+		// The last moves don't need to be played to be counted.
+		if (depth == 1)
+		{
+			return moves.size();
+		}
+
+		long result = 0;
+		for (int i = 0; i < moves.size(); i++)
+		{
+			int move = moves.get(i);
+			board.makeMove(move);
+			result += count(board, depth - 1, plyMoves);
+			board.unmakeMove(move);
+		}
+		return result;
+	}
+
+	/**
+	 Counts the positions reached after each first move, the first moves being shared between threads.
+
+	 @param board The board to start from, left unchanged.
+	 @param depth The number of moves to play, at least 1.
+	 @param threads The number of threads.
+	 @return The number of positions reached after each first move, in the order of generation.
+	 */
+	public static Map<Move, Long> divide(Board board, int depth, int threads)
+	{
+		if (depth < 1)
+		{
+			throw new IllegalArgumentException("Can't divide a perft of depth " + depth + ".");
+		}
+
+		List<Move> moves = board.legalMoves();
+		List<Callable<Long>> tasks = new ArrayList<>();
+		for (Move move : moves)
+		{
+			tasks.add(() ->
+			{
+				Board child = board.cloneBoard();
+				child.makeMove(move);
+				return count(child, depth - 1);
+			});
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try
+		{
+			Map<Move, Long> result = new LinkedHashMap<>();
+			List<Future<Long>> counts = executor.invokeAll(tasks);
+			for (int i = 0; i < moves.size(); i++)
+			{
+				result.put(moves.get(i), counts.get(i).get());
+			}
+			return result;
+		} catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("The perft was interrupted.", ex);
+		} catch (ExecutionException ex)
+		{
+			throw new IllegalStateException("The perft failed.", ex.getCause());
+		} finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length < 2)
+		{
+			System.err.println("Usage: Perft board.thud depth [threads]");
+			System.exit(1);
+		}
+
+		Board board = Board.readFromFile(new File(args[0]));
+		int depth = Integer.parseInt(args[1]);
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+		long start = System.nanoTime();
+		Map<Move, Long> counts = divide(board, depth, threads);
+		long time = System.nanoTime() - start;
+
+		long total = 0;
+		for (Map.Entry<Move, Long> count : counts.entrySet())
+		{
+			System.out.println(board.moveText(count.getKey()) + ": " + count.getValue());
+			total += count.getValue();
+		}
+		System.out.println();
+		System.out.println("Moves: " + counts.size());
+		System.out.println("Positions: " + total);
+		System.out.println("Time: " + time / 1000000 + " ms");
+		System.out.println("Positions per second: " + (long) (total / (time / 1e9)));
+	}
+}
@@ -0,0 +1,223 @@
+package org.saucistophe.thud.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.saucistophe.thud.model.MoveList;
+import static org.saucistophe.thud.model.Piece.DWARF;
+import static org.saucistophe.thud.model.Piece.TROLL;
+import org.saucistophe.thud.model.boards.Board;
+import org.saucistophe.thud.model.boards.Tablebase;
+
+/**
+ Solves the endgames of a board shape, and writes them as a Tablebase.
+
+ The tables are solved by increasing material, as a capture always leads to a
+ table already solved. Within a table, each pass n finds the positions won or
+ lost in exactly n moves: a position is won in n if a move leads to a position
+ lost in n - 1 for the opponent, or to the capture of its last piece; it is lost
+ in n if all its moves lead to positions won in n - 1 at most. The passes stop
+ once none finds anything, and the longest results of the smaller tables are
+ reached; the positions left are draws. Each pass is shared between threads.
+
+ The values are written straight into the memory-mapped file, so that the size
+ of the tables isn't limited by the heap.
+
+ Usage: TablebaseGenerator board.thud dwarves trolls output.tb [threads]
+ */
+public class TablebaseGenerator
+{
+	/**
+	 The number of positions solved by a task of a pass.
+	 */
+	private static final int CHUNK_SIZE = 4096;
+
+	private TablebaseGenerator()
+	{
+	}
+
+	/**
+	 @param board A board of the shape to solve.
+	 @param maxDwarves The maximal number of dwarves.
+	 @param maxTrolls The maximal number of trolls.
+	 @param file The file to write the tablebase to.
+	 @param threads The number of threads.
+	 @return The tablebase, open to be probed.
+	 @throws IOException If the file can't be written.
+	 */
+	public static Tablebase generate(Board board, int maxDwarves, int maxTrolls, File file, int threads) throws IOException
+	{
+		Tablebase tablebase = Tablebase.create(file, board, maxDwarves, maxTrolls);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try
+		{
+			// The longest win or loss of the tables already solved.
+			int longestResult = 0;
+			for (int dwarves = 1; dwarves <= maxDwarves; dwarves++)
+			{
+				for (int trolls = 1; trolls <= maxTrolls; trolls++)
+				{
+					int longestPass = 0;
+					for (int pass = 1; pass <= longestResult + 1 || longestPass == pass - 1; pass++)
+					{
+						if (solvePass(tablebase, board, dwarves, trolls, pass, executor) > 0)
+						{
+							longestPass = pass;
+						}
+					}
+					longestResult = Math.max(longestResult, longestPass);
+				}
+			}
+		} catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("The generation was interrupted.", ex);
+		} catch (ExecutionException ex)
+		{
+			throw new IllegalStateException("The generation failed.", ex.getCause());
+		} finally
+		{
+			executor.shutdown();
+			tablebase.flush();
+			tablebase.close();
+		}
+
+		return Tablebase.open(file);
+	}
+
+	/**
+	 Finds the positions of a table won or lost in a given number of moves.
+
+	 @param tablebase The tablebase being generated, whose smaller tables are solved.
+	 @param board A board of the solved shape.
+	 @param dwarves The number of dwarves of the table.
+	 @param trolls The number of trolls of the table.
+	 @param pass The number of moves.
+	 @param executor The threads.
+	 @return The number of positions found.
+	 */
+	private static long solvePass(Tablebase tablebase, Board board, int dwarves, int trolls, int pass,
+		ExecutorService executor) throws InterruptedException, ExecutionException
+	{
+		int size = tablebase.size(dwarves, trolls);
+		List<Callable<Long>> tasks = new ArrayList<>();
+		for (int chunkStart = 0; chunkStart < size; chunkStart += CHUNK_SIZE)
+		{
+			int start = chunkStart;
+			int end = (int) Math.min(size, (long) chunkStart + CHUNK_SIZE);
+			tasks.add(() -> solveChunk(tablebase, board.cloneBoard(), dwarves, trolls, pass, start, end));
+		}
+
+		long result = 0;
+		for (Future<Long> found : executor.invokeAll(tasks))
+		{
+			result += found.get();
+		}
+		return result;
+	}
+
+	/**
+	 Finds the positions of a range won or lost in a given number of moves.
+
+	 @param tablebase The tablebase being generated.
+	 @param board A board of the solved shape, to put the positions on.
+	 @param dwarves The number of dwarves of the table.
+	 @param trolls The number of trolls of the table.
+	 @param pass The number of moves.
+	 @param start The first index of the range.
+	 @param end The index after the range.
+	 @return The number of positions found.
+	 */
+	private static long solveChunk(Tablebase tablebase, Board board, int dwarves, int trolls, int pass, int start, int end)
+	{
+		MoveList moves = new MoveList();
+		long result = 0;
+		for (int index = start; index < end; index++)
+		{
+			if (tablebase.get(dwarves, trolls, index) != 0)
+			{
+				continue;
+			}
+
+			tablebase.setPosition(board, dwarves, trolls, index);
+			board.generateMoves(moves);
+
+			// The values found by this pass, all equal to it, are ignored, so that the threads don't interfere.
+			boolean won = false;
+			boolean lost = moves.size() > 0;
+			for (int i = 0; i < moves.size() && !won; i++)
+			{
+				int move = moves.get(i);
+				board.makeMove(move);
+				if (board.numberOf(DWARF) == 0 || board.numberOf(TROLL) == 0)
+				{
+					won = true;
+				}
+				else
+				{
+					int value = tablebase.probe(board);
+					won = value < 0 && -value < pass;
+					lost &= value > 0 && value < pass;
+				}
+				board.unmakeMove(move);
+			}
+
+			if (won || lost)
+			{
+				tablebase.set(dwarves, trolls, index, won ? pass : -pass);
+				result++;
+			}
+		}
+		return result;
+	}
+
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length < 4)
+		{
+			System.err.println("Usage: TablebaseGenerator board.thud dwarves trolls output.tb [threads]");
+			System.exit(1);
+		}
+
+		Board board = Board.readFromFile(new File(args[0]));
+		int maxDwarves = Integer.parseInt(args[1]);
+		int maxTrolls = Integer.parseInt(args[2]);
+		File file = new File(args[3]);
+		int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+
+		long start = System.nanoTime();
+		try (Tablebase tablebase = generate(board, maxDwarves, maxTrolls, file, threads))
+		{
+			long time = System.nanoTime() - start;
+			long total = 0;
+			for (int dwarves = 1; dwarves <= maxDwarves; dwarves++)
+			{
+				for (int trolls = 1; trolls <= maxTrolls; trolls++)
+				{
+					long won = 0, lost = 0, longest = 0;
+					for (int index = 0; index < tablebase.size(dwarves, trolls); index++)
+					{
+						int value = tablebase.get(dwarves, trolls, index);
+						won += value > 0 ? 1 : 0;
+						lost += value < 0 ? 1 : 0;
+						longest = Math.max(longest, Math.abs(value));
+					}
+					int size = tablebase.size(dwarves, trolls);
+					total += size;
+					System.out.println(dwarves + " dwarves, " + trolls + " trolls: " + size + " positions, " + won + " won, "
+						+ lost + " lost, " + (size - won - lost) + " drawn, longest in " + longest + " moves");
+				}
+			}
+			System.out.println();
+			System.out.println("Positions: " + total);
+			System.out.println("Time: " + time / 1000000 + " ms");
+			System.out.println("File: " + file + ", " + file.length() + " bytes");
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package org.saucistophe.thud.engine;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ Drives the engine through its text protocol.
+ */
+public class TextEngineTest
+{
+	private static String run(String commands) throws IOException
+	{
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		new TextEngine(new ByteArrayInputStream(commands.getBytes(StandardCharsets.UTF_8)), new PrintStream(output, true, "UTF-8")).run();
+		return output.toString("UTF-8");
+	}
+
+	@Test
+	public void searchTest() throws IOException
+	{
+		String output = run("uci\nposition file nano.thud\ngo depth 2\n");
+		assertTrue(output, output.startsWith("id name Thud\n"));
+		assertTrue(output, output.contains("uciok\n"));
+		assertTrue(output, output.contains("info depth 2 score "));
+		assertTrue(output, output.contains("\nbestmove "));
+	}
+
+	@Test
+	public void movesTest() throws IOException
+	{
+		String output = run("position startpos moves a6-b6 g7-g6\nposition startpos moves a6-a7\n");
+		assertEquals("info string Illegal move: a6-a7\n", output);
+	}
+
+	@Test
+	public void endlessSearchTest() throws IOException
+	{
+		// The input ends without stopping the search, which must then end by itself.
+		String output = run("position file nano.thud\ngo infinite\n");
+		assertTrue(output, output.contains("bestmove "));
+	}
+}
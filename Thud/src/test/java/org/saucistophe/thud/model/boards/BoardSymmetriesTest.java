@@ -0,0 +1,111 @@
+package org.saucistophe.thud.model.boards;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import org.saucistophe.thud.model.MoveList;
+import org.saucistophe.thud.model.Piece;
+
+/**
+ Checks that symmetric positions share their canonical key, and the same moves once in canonical form.
+ */
+public class BoardSymmetriesTest
+{
+	/**
+	 @param board A board.
+	 @param transform A symmetry of the square: 4 to transpose, then 1 to flip the X axis, and 2 the Y axis.
+	 @return The board's image by the symmetry, or null if its shape isn't symmetric that way.
+	 */
+	private static Board image(Board board, int transform)
+	{
+		int width = board.getWidth(), height = board.getHeight();
+		if ((transform & 4) != 0 && width != height)
+		{
+			return null;
+		}
+		Board result = Board.emptyBoard(board.getGeometry(), board.rocks());
+		for (int x = 0; x < width; x++)
+		{
+			for (int y = 0; y < height; y++)
+			{
+				int imageX = (transform & 4) != 0 ? y : x;
+				int imageY = (transform & 4) != 0 ? x : y;
+				imageX = (transform & 1) != 0 ? width - 1 - imageX : imageX;
+				imageY = (transform & 2) != 0 ? height - 1 - imageY : imageY;
+				if (board.getPiece(x, y) != result.getPiece(imageX, imageY))
+				{
+					if (board.getPiece(x, y) != Piece.DWARF && board.getPiece(x, y) != Piece.TROLL)
+					{
+						return null;
+					}
+					result.setPiece(imageX, imageY, board.getPiece(x, y));
+				}
+			}
+		}
+		result.dwarvesTurn = board.dwarvesTurn;
+		return result;
+	}
+
+	/**
+	 @param board A board.
+	 @return Its moves, in canonical form.
+	 */
+	private static Set<Integer> canonicalMoves(Board board)
+	{
+		MoveList moves = new MoveList();
+		board.generateMoves(moves);
+		Set<Integer> result = new HashSet<>();
+		for (int i = 0; i < moves.size(); i++)
+		{
+			int move = board.transformMove(moves.get(i), board.getCanonicalSymmetry());
+			assertEquals(moves.get(i), board.inverseTransformMove(move, board.getCanonicalSymmetry()));
+			result.add(move);
+		}
+		return result;
+	}
+
+	@Test
+	public void symmetryTest() throws IOException
+	{
+		Random random = new Random(0);
+		MoveList moves = new MoveList();
+		for (String name : new String[]
+		{
+			"nano.thud", "mini.thud", "regular.thud"
+		})
+		{
+			Board board = Board.readFromFile(new File(name));
+			int images = 0;
+			for (int ply = 0; ply < 60; ply++)
+			{
+				for (int transform = 0; transform < 8; transform++)
+				{
+					Board image = image(board, transform);
+					if (image != null)
+					{
+						images++;
+						assertEquals(board.getCanonicalKey(), image.getCanonicalKey());
+						assertEquals(canonicalMoves(board), canonicalMoves(image));
+					}
+				}
+
+				board.generateMoves(moves);
+				if (moves.size() == 0)
+				{
+					break;
+				}
+				board.makeMove(moves.get(random.nextInt(moves.size())));
+			}
+
+			// The regular board has the 8 symmetries of the square.
+			if (name.equals("regular.thud"))
+			{
+				assertEquals(8 * 60, images);
+			}
+		}
+	}
+}
@@ -0,0 +1,320 @@
+package org.saucistophe.thud.model.boards;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.saucistophe.thud.model.Coordinate;
+import org.saucistophe.thud.model.Move;
+import org.saucistophe.thud.model.MoveList;
+import org.saucistophe.thud.model.Piece;
+import static org.saucistophe.thud.model.Piece.DWARF;
+import static org.saucistophe.thud.model.Piece.TROLL;
+import org.saucistophe.thud.model.players.TranspositionTable;
+
+/**
+ Plays random games on boards of several shapes, and checks that what the
+ board updates as the pieces move matches a board read from scratch.
+ */
+public class BoardTest
+{
+	private static final String[] FILES =
+	{
+		"nano.thud", "mini.thud", "regular.thud"
+	};
+	private static final int GAMES = 3;
+	private static final int PLIES = 60;
+
+	/**
+	 A check of a position.
+	 */
+	private interface PositionCheck
+	{
+		void check(Board board) throws IOException;
+	}
+
+	/**
+	 Plays random games, checking each position before its move.
+
+	 @param check The check, which must leave the board as it found it.
+	 */
+	private static void playRandomGames(PositionCheck check) throws IOException
+	{
+		Random random = new Random(0);
+		MoveList moves = new MoveList();
+		for (String file : FILES)
+		{
+			for (int game = 0; game < GAMES; game++)
+			{
+				Board board = Board.readFromFile(new File(file));
+				for (int ply = 0; ply < PLIES; ply++)
+				{
+					check.check(board);
+					board.generateMoves(moves);
+					if (moves.size() == 0)
+					{
+						break;
+					}
+					board.makeMove(moves.get(random.nextInt(moves.size())));
+				}
+			}
+		}
+	}
+
+	/**
+	 @param board A board.
+	 @return The board, written to a file and read again.
+	 */
+	private static Board reread(Board board) throws IOException
+	{
+		File file = File.createTempFile("board", ".thud");
+		try
+		{
+			board.writeToFile(file);
+			return Board.readFromFile(file);
+		} finally
+		{
+			file.delete();
+		}
+	}
+
+	@Test
+	public void makeUnmakeTest() throws IOException
+	{
+		MoveList moves = new MoveList();
+		playRandomGames(board ->
+		{
+			Board before = reread(board);
+			board.generateMoves(moves);
+			for (int i = 0; i < moves.size(); i++)
+			{
+				board.makeMove(moves.get(i));
+				board.unmakeMove(moves.get(i));
+				assertEquals(before, board);
+				assertEquals(before.getZobristKey(), board.getZobristKey());
+			}
+		});
+
+		// A whole game, unmade, leads back to the start.
+		Random random = new Random(1);
+		for (String file : FILES)
+		{
+			Board board = Board.readFromFile(new File(file));
+			MoveList game = new MoveList();
+			for (int ply = 0; ply < PLIES; ply++)
+			{
+				board.generateMoves(moves);
+				if (moves.size() == 0)
+				{
+					break;
+				}
+				game.add(moves.get(random.nextInt(moves.size())));
+				board.makeMove(game.get(game.size() - 1));
+			}
+			for (int ply = game.size() - 1; ply >= 0; ply--)
+			{
+				board.unmakeMove(game.get(ply));
+			}
+			Board start = Board.readFromFile(new File(file));
+			assertEquals(file, start, board);
+			assertEquals(start.getZobristKey(), board.getZobristKey());
+		}
+	}
+
+	@Test
+	public void zobristTest() throws IOException
+	{
+		TranspositionTable table = new TranspositionTable(1);
+		MoveList moves = new MoveList();
+		playRandomGames(board ->
+		{
+			// The keys updated move after move are those of the position read from scratch.
+			Board read = reread(board);
+			assertEquals(read.getZobristKey(), board.getZobristKey());
+			assertEquals(read.getCanonicalKey(), board.getCanonicalKey());
+
+			// The table finds the entries of the children stored by the packed moves, from the children boards.
+			// The table drops the flags of the moves, and a shove and a step of a troll can lead to the same
+			// child, so a move matching the entry must lead to the child.
+			table.clear();
+			board.generateMoves(moves);
+			for (int i = 0; i < moves.size(); i++)
+			{
+				board.makeMove(moves.get(i));
+				table.store(board.getZobristKey(), 0, TranspositionTable.EXACT, 1, moves.get(i));
+				board.unmakeMove(moves.get(i));
+			}
+			for (Board child : board.childrenBoards())
+			{
+				long entry = table.probe(child.getZobristKey());
+				assertTrue(entry != 0);
+				boolean found = false;
+				for (int i = 0; i < moves.size() && !found; i++)
+				{
+					if (TranspositionTable.isBestMove(entry, moves.get(i)))
+					{
+						board.makeMove(moves.get(i));
+						found = board.equals(child);
+						board.unmakeMove(moves.get(i));
+					}
+				}
+				assertTrue(found);
+			}
+		});
+	}
+
+	/**
+	 @param board A board.
+	 @return The same position, its pieces put one by one on an empty board.
+	 */
+	private static Board rebuild(Board board)
+	{
+		Board result = Board.emptyBoard(board.getGeometry(), board.rocks());
+		for (int x = 0; x < board.getWidth(); x++)
+		{
+			for (int y = 0; y < board.getHeight(); y++)
+			{
+				if (board.isPiece(DWARF, x, y) || board.isPiece(TROLL, x, y))
+				{
+					result.setPiece(x, y, board.getPiece(x, y));
+				}
+			}
+		}
+		result.dwarvesTurn = board.dwarvesTurn;
+		return result;
+	}
+
+	/**
+	 Checks the counters and the piece lists of a board against those of the same position built from scratch.
+
+	 @param board A board.
+	 @param read The same position, built from scratch.
+	 */
+	private static void checkCounters(Board board, Board read)
+	{
+		assertEquals(read, board);
+		for (Piece piece : new Piece[]
+		{
+			DWARF, TROLL
+		})
+		{
+			assertEquals(piece.name(), read.numberOf(piece), board.numberOf(piece));
+			assertEquals(piece.name(), read.clustering(piece), board.clustering(piece));
+			assertEquals(piece.name(), read.mobility(piece), board.mobility(piece));
+
+			// The piece lists hold each piece of the bitboards once.
+			List<Coordinate> pieces = board.getPiecesStream(piece).collect(Collectors.toList());
+			assertEquals(piece.name(), read.getPiecesStream(piece).collect(Collectors.toList()), pieces);
+			assertEquals(piece.name(), board.numberOf(piece), pieces.stream().distinct().count());
+			for (Coordinate coordinate : pieces)
+			{
+				assertTrue(board.isPiece(piece, coordinate.width, coordinate.height));
+			}
+		}
+	}
+
+	@Test
+	public void countersTest() throws IOException
+	{
+		MoveList moves = new MoveList();
+		playRandomGames(board ->
+		{
+			Board read = reread(board);
+			checkCounters(board, read);
+
+			// The counters follow each move, and are restored by unmaking it.
+			board.generateMoves(moves);
+			for (int i = 0; i < moves.size(); i++)
+			{
+				board.makeMove(moves.get(i));
+				checkCounters(board, rebuild(board));
+				board.unmakeMove(moves.get(i));
+			}
+			checkCounters(board, read);
+		});
+	}
+
+	/**
+	 @param board A board.
+	 @return The moves of the playing side found piece by piece by validMoves, as the legal moves were before
+	 the packed moves, packed.
+	 */
+	private static List<Integer> referenceMoves(Board board)
+	{
+		List<Integer> result = new ArrayList<>();
+		for (int x = 0; x < board.getWidth(); x++)
+		{
+			for (int y = 0; y < board.getHeight(); y++)
+			{
+				if (!board.isPiece(board.dwarvesTurn ? DWARF : TROLL, x, y))
+				{
+					continue;
+				}
+				int origin = board.squareIndex(x, y);
+				List<Coordinate> trollShovings = board.dwarvesTurn ? null : new ArrayList<>();
+				for (Coordinate destination : board.validMoves(x, y, trollShovings))
+				{
+					int index = board.squareIndex(destination.width, destination.height);
+					if (board.dwarvesTurn)
+					{
+						result.add(Move.pack(origin, index, 0, board.isPiece(TROLL, destination.width, destination.height), false));
+						continue;
+					}
+
+					// A shove captures all the dwarves around, a step only one of them.
+					int victims = board.nearbyDwarves(index);
+					boolean shove = trollShovings.contains(destination);
+					if (victims == 0 || shove)
+					{
+						result.add(Move.pack(origin, index, victims, false, shove));
+					}
+					else
+					{
+						for (int victim = victims; victim != 0; victim &= victim - 1)
+						{
+							result.add(Move.pack(origin, index, Integer.lowestOneBit(victim), false, false));
+						}
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	@Test
+	public void movesTest() throws IOException
+	{
+		MoveList moves = new MoveList();
+		playRandomGames(board ->
+		{
+			// The packed moves are those found piece by piece, the pieces being taken in the order of their lists.
+			board.generateMoves(moves);
+			List<Integer> packedMoves = new ArrayList<>();
+			for (int i = 0; i < moves.size(); i++)
+			{
+				packedMoves.add(moves.get(i));
+			}
+			List<Integer> expectedMoves = referenceMoves(board);
+			Collections.sort(expectedMoves);
+			Collections.sort(packedMoves);
+			assertEquals(expectedMoves, packedMoves);
+
+			// They lead to the children boards.
+			List<Board> children = board.childrenBoards();
+			assertEquals(moves.size(), children.size());
+			for (int i = 0; i < moves.size(); i++)
+			{
+				board.makeMove(moves.get(i));
+				assertEquals(children.get(i), board);
+				assertEquals(children.get(i).getZobristKey(), board.getZobristKey());
+				board.unmakeMove(moves.get(i));
+			}
+		});
+	}
+}
@@ -0,0 +1,158 @@
+package org.saucistophe.thud.model.boards;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.saucistophe.thud.model.MoveList;
+
+/**
+ Records random games, and replays them.
+ */
+public class GameRecordTest
+{
+	@Test
+	public void replayTest() throws IOException
+	{
+		Random random = new Random(0);
+		List<Board> finalPositions = new ArrayList<>();
+		List<Integer> lengths = new ArrayList<>();
+		ByteArrayOutputStream archive = new ByteArrayOutputStream();
+
+		try (GameRecordWriter writer = new GameRecordWriter(archive))
+		{
+			MoveList moves = new MoveList();
+			for (int game = 0; game < 30; game++)
+			{
+				// Games on several shapes, some recorded by their moves, and the others by their positions.
+				Board board = Board.readFromFile(new File(game % 3 == 0 ? "regular.thud" : game % 3 == 1 ? "mini.thud" : "nano.thud"));
+				writer.startGame(board);
+				int length = random.nextInt(200);
+				for (int ply = 0; ply < length; ply++)
+				{
+					board.generateMoves(moves);
+					if (moves.size() == 0)
+					{
+						length = ply;
+						break;
+					}
+					int move = moves.get(random.nextInt(moves.size()));
+					board.makeMove(move);
+					if (game % 2 == 0)
+					{
+						writer.addMove(move);
+					}
+					else
+					{
+						writer.addPosition(board);
+					}
+				}
+				finalPositions.add(board);
+				lengths.add(length);
+
+				// The last game is left running.
+				if (game < 29)
+				{
+					writer.endGame();
+				}
+			}
+			writer.flush();
+		}
+
+		try (GameRecordReader reader = new GameRecordReader(new ByteArrayInputStream(archive.toByteArray())))
+		{
+			for (int game = 0; game < 30; game++)
+			{
+				assertTrue(reader.nextGame());
+				assertTrue(reader.isComplete());
+				assertEquals((int) lengths.get(game), reader.getMoves().size());
+				int[] plies = new int[1];
+				Board position = reader.replay((board, move) -> plies[0]++);
+				assertEquals(finalPositions.get(game), position);
+				assertEquals((int) lengths.get(game), plies[0]);
+			}
+			assertFalse(reader.nextGame());
+		}
+	}
+
+	@Test
+	public void truncatedTest() throws IOException
+	{
+		Board board = Board.readFromFile(new File("mini.thud"));
+		ByteArrayOutputStream archive = new ByteArrayOutputStream();
+		GameRecordWriter writer = new GameRecordWriter(archive);
+		writer.startGame(board);
+		MoveList moves = new MoveList();
+		for (int ply = 0; ply < 10; ply++)
+		{
+			board.generateMoves(moves);
+			writer.addMove(moves.get(0));
+			board.makeMove(moves.get(0));
+		}
+		writer.flush();
+
+		// The game was being played, and the last move is cut.
+		byte[] bytes = archive.toByteArray();
+		try (GameRecordReader reader = new GameRecordReader(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 2))))
+		{
+			assertTrue(reader.nextGame());
+			assertFalse(reader.isComplete());
+			assertEquals(9, reader.getMoves().size());
+			board.unmakeMove(moves.get(0));
+			assertEquals(board, reader.replay(null));
+			assertFalse(reader.nextGame());
+		}
+	}
+
+	@Test
+	public void cutGameTest() throws IOException
+	{
+		// A game is cut, e.g. because the program stopped, then the archive is appended to.
+		Board board = Board.readFromFile(new File("mini.thud"));
+		ByteArrayOutputStream archive = new ByteArrayOutputStream();
+		GameRecordWriter writer = new GameRecordWriter(archive);
+		writer.startGame(board);
+		MoveList moves = new MoveList();
+		for (int ply = 0; ply < 5; ply++)
+		{
+			board.generateMoves(moves);
+			writer.addMove(moves.get(0));
+			board.makeMove(moves.get(0));
+		}
+		writer.flush();
+		Board cutPosition = board.cloneBoard();
+
+		writer = new GameRecordWriter(archive);
+		board = Board.readFromFile(new File("nano.thud"));
+		writer.startGame(board);
+		for (int ply = 0; ply < 7; ply++)
+		{
+			board.generateMoves(moves);
+			writer.addMove(moves.get(moves.size() - 1));
+			board.makeMove(moves.get(moves.size() - 1));
+		}
+		writer.close();
+
+		try (GameRecordReader reader = new GameRecordReader(new ByteArrayInputStream(archive.toByteArray())))
+		{
+			assertTrue(reader.nextGame());
+			assertFalse(reader.isComplete());
+			assertEquals(5, reader.getMoves().size());
+			assertEquals(cutPosition, reader.replay(null));
+
+			assertTrue(reader.nextGame());
+			assertTrue(reader.isComplete());
+			assertEquals(7, reader.getMoves().size());
+			assertEquals(board, reader.replay(null));
+			assertFalse(reader.nextGame());
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package org.saucistophe.thud.model.boards;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.saucistophe.thud.model.Move;
+
+/**
+ Stores the positions of random games, and reads them back.
+ */
+public class PositionStoreTest
+{
+	/**
+	 @param board The initial board.
+	 @param random The random generator.
+	 @param count The number of positions.
+	 @return Positions of random games from the board.
+	 */
+	private static List<Board> randomPositions(Board board, Random random, int count)
+	{
+		List<Board> result = new ArrayList<>();
+		Board position = board.cloneBoard();
+		while (result.size() < count)
+		{
+			List<Move> moves = position.legalMoves();
+			if (moves.isEmpty())
+			{
+				position = board.cloneBoard();
+				continue;
+			}
+			position.makeMove(moves.get(random.nextInt(moves.size())));
+			result.add(position.cloneBoard());
+		}
+		return result;
+	}
+
+	@Test
+	public void roundTripTest() throws IOException
+	{
+		Random random = new Random(0);
+		for (String name : new String[]
+		{
+			"nano.thud", "mini.thud", "regular.thud"
+		})
+		{
+			Board board = Board.readFromFile(new File(name));
+			List<Board> positions = randomPositions(board, random, 5000);
+			File file = File.createTempFile("positions", ".thps");
+			file.deleteOnExit();
+
+			try (PositionStore store = PositionStore.create(file, board))
+			{
+				for (Board position : positions)
+				{
+					store.add(position);
+				}
+				// Reading flushes the positions.
+				assertEquals(positions.get(4321), store.get(4321));
+			}
+
+			try (PositionStore store = PositionStore.open(file))
+			{
+				assertEquals(positions.size(), store.size());
+				for (int i = 0; i < 1000; i++)
+				{
+					int index = random.nextInt(positions.size());
+					Board position = store.get(index);
+					assertEquals(positions.get(index), position);
+					assertEquals(positions.get(index).getZobristKey(), position.getZobristKey());
+				}
+				assertEquals(positions, store.stream().collect(Collectors.toList()));
+			}
+		}
+	}
+
+	@Test
+	public void appendTest() throws IOException
+	{
+		Board board = Board.readFromFile(new File("mini.thud"));
+		List<Board> positions = randomPositions(board, new Random(1), 300);
+		File file = File.createTempFile("positions", ".thps");
+		file.deleteOnExit();
+
+		try (PositionStore store = PositionStore.create(file, board))
+		{
+			positions.subList(0, 200).forEach(position -> add(store, position));
+		}
+
+		// A position cut by a crash is ignored, then overwritten.
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw"))
+		{
+			randomAccessFile.setLength(randomAccessFile.length() + 3);
+		}
+		try (PositionStore store = PositionStore.openForAppend(file))
+		{
+			assertEquals(200, store.size());
+			positions.subList(200, 300).forEach(position -> add(store, position));
+		}
+		try (PositionStore store = PositionStore.open(file))
+		{
+			assertEquals(positions, store.stream().collect(Collectors.toList()));
+
+			try
+			{
+				store.add(board);
+				fail("A read-only store accepted a position.");
+			} catch (IllegalStateException ex)
+			{
+				// Expected.
+			}
+		}
+	}
+
+	@Test
+	public void shapeTest() throws IOException
+	{
+		Board regular = Board.readFromFile(new File("regular.thud"));
+		assertEquals(42, PositionCodec.of(regular).getRecordSize());
+
+		File file = File.createTempFile("positions", ".thps");
+		file.deleteOnExit();
+		try (PositionStore store = PositionStore.create(file, Board.readFromFile(new File("mini.thud"))))
+		{
+			store.add(regular);
+			fail("A store accepted a board of another shape.");
+		} catch (IllegalArgumentException ex)
+		{
+			// Expected.
+		}
+	}
+
+	/**
+	 @param store A store.
+	 @param position A position to add to it.
+	 */
+	private static void add(PositionStore store, Board position)
+	{
+		try
+		{
+			store.add(position);
+		} catch (IOException ex)
+		{
+			throw new IllegalStateException(ex);
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package org.saucistophe.thud.model.players;
+
+import java.io.File;
+import java.io.IOException;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.saucistophe.thud.model.boards.Board;
+
+/**
+ Checks that a calibration tournament doesn't depend on its number of threads.
+ */
+public class CalibrationTournamentTest
+{
+	private static String play(int threads) throws IOException
+	{
+		CalibrationTournament tournament = new CalibrationTournament(Board.readFromFile(new File("nano.thud")),
+			new SearchSettings(2, 0, 0, 2, 4, 1), threads, 42);
+		for (int i = 0; i < 2; i++)
+		{
+			tournament.iterate();
+		}
+		assertEquals(2, tournament.getGeneration());
+		assertEquals(CalibrationTournament.POPULATION, tournament.getPopulation().size());
+		assertTrue(tournament.getGamesPerHour() > 0);
+		return tournament.getPopulation().toString();
+	}
+
+	@Test
+	public void reproducibilityTest() throws IOException
+	{
+		assertEquals(play(1), play(3));
+	}
+}
@@ -0,0 +1,87 @@
+package org.saucistophe.thud.model.players;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.saucistophe.thud.model.Move;
+import org.saucistophe.thud.model.Piece;
+import org.saucistophe.thud.model.boards.Board;
+
+/**
+ Checks that the Monte Carlo player finds a winning capture, alone and with several threads.
+ */
+public class MctsPlayerTest
+{
+	private static final int PLAYOUTS = 3000;
+
+	/**
+	 The trolls' turn, and their troll can capture the last dwarf.
+	 */
+	private static final String LAST_DWARF = "T    \n     \n T D \n     \n     \n";
+
+	private static Board lastDwarf() throws IOException
+	{
+		return Board.readFromStream(new ByteArrayInputStream(LAST_DWARF.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	private static Move search(MctsPlayer player, int threads) throws IOException
+	{
+		Board board = lastDwarf();
+		Move move = player.search(board, new SearchBudget(0, PLAYOUTS), threads);
+		assertEquals(lastDwarf(), board);
+
+		// Every thread finishes its last playout.
+		assertTrue(player.getLastPlayouts() >= PLAYOUTS && player.getLastPlayouts() < PLAYOUTS + threads);
+		assertTrue(player.getLastPlayoutsPerSecond() > 0);
+		assertTrue(move.toString(), move.numberOfCaptures() > 0);
+		return move;
+	}
+
+	@Test
+	public void singleThreadTest() throws IOException
+	{
+		assertEquals(search(new MctsPlayer(42), 1), search(new MctsPlayer(42), 1));
+	}
+
+	@Test
+	public void parallelTest() throws IOException
+	{
+		search(new MctsPlayer(), 4);
+	}
+
+	@Test
+	public void gameOverTest() throws IOException
+	{
+		Board board = lastDwarf();
+		board.makeMove(search(new MctsPlayer(), 1));
+		assertEquals(0, board.numberOf(Piece.DWARF));
+		assertEquals(null, new MctsPlayer().search(board, new SearchBudget(0, PLAYOUTS), 1));
+	}
+
+	@Test
+	public void gameTest() throws IOException
+	{
+		// Without any limit, a move gets the default playouts.
+		int moveTime = MctsPlayer.MOVE_TIME;
+		int movePlayouts = MctsPlayer.MOVE_PLAYOUTS;
+		MctsPlayer.MOVE_TIME = 0;
+		MctsPlayer.MOVE_PLAYOUTS = 0;
+		try
+		{
+			MctsPlayer dwarves = new MctsPlayer(1);
+			MctsPlayer trolls = (MctsPlayer) dwarves.makeChild(dwarves);
+			Board board = lastDwarf();
+			assertEquals(-4, MctsPlayer.playGame(dwarves, trolls, board, 10));
+			assertEquals(0, board.numberOf(Piece.DWARF));
+			long playouts = trolls.getLastPlayouts();
+			assertTrue(playouts >= MctsPlayer.DEFAULT_PLAYOUTS && playouts < MctsPlayer.DEFAULT_PLAYOUTS + MctsPlayer.PLAYOUT_THREADS);
+		} finally
+		{
+			MctsPlayer.MOVE_TIME = moveTime;
+			MctsPlayer.MOVE_PLAYOUTS = movePlayouts;
+		}
+	}
+}
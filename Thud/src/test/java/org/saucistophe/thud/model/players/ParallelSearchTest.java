@@ -0,0 +1,60 @@
+package org.saucistophe.thud.model.players;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import org.saucistophe.thud.model.MoveList;
+import org.saucistophe.thud.model.boards.Board;
+
+/**
+ Checks that the parallel searches find the same score as the sequential one,
+ at a fixed depth: splitting only at the root, and splitting the deeper nodes
+ too, with young brothers wait.
+ */
+public class ParallelSearchTest
+{
+	private static int score(Board board, int depth, int threads, int splitDepth)
+	{
+		NegamaxPlayer player = new NegamaxPlayer();
+		player.setSearchSettings(new SearchSettings(depth, 0, 0, 2, threads, splitDepth, 4));
+		Board searched = board.cloneBoard();
+		player.search(searched, depth, new SearchBudget(0, 0));
+		assertEquals(board, searched);
+		return player.getPrincipalVariationScore();
+	}
+
+	private static void checkScores(String file, int depth) throws IOException
+	{
+		// The start position, and a few positions after random moves.
+		Random random = new Random(0);
+		Board board = Board.readFromFile(new File(file));
+		MoveList moves = new MoveList();
+		for (int position = 0; position < 4; position++)
+		{
+			int score = score(board, depth, 1, SearchSettings.DEFAULT_SPLIT_DEPTH);
+			String message = file + ", position " + position;
+			assertEquals(message + ", root split", score, score(board, depth, 4, TranspositionTable.MAX_DEPTH));
+			assertEquals(message + ", 4 threads", score, score(board, depth, 4, SearchSettings.DEFAULT_SPLIT_DEPTH));
+
+			for (int ply = 0; ply < 3; ply++)
+			{
+				board.generateMoves(moves);
+				board.makeMove(moves.get(random.nextInt(moves.size())));
+			}
+		}
+	}
+
+	@Test
+	public void nanoTest() throws IOException
+	{
+		checkScores("nano.thud", 4);
+	}
+
+	@Test
+	public void miniTest() throws IOException
+	{
+		checkScores("mini.thud", 3);
+	}
+}
@@ -0,0 +1,37 @@
+package org.saucistophe.thud.model.players;
+
+import java.io.File;
+import java.io.IOException;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import org.saucistophe.thud.model.boards.Board;
+
+/**
+ Checks that the principal variation search finds the negamax score, at a fixed depth.
+ */
+public class PvsPlayerTest
+{
+	private static int score(NegamaxPlayer player, Board board, int depth)
+	{
+		// A single thread, and a new player hence a new table.
+		player.setSearchSettings(new SearchSettings(depth, 0, 0, NegamaxPlayer.QUIESCENCE_DEPTH, 1, 4));
+		Board searched = board.cloneBoard();
+		player.search(searched, depth, new SearchBudget(0, 0));
+		assertEquals(board, searched);
+		return player.getPrincipalVariationScore();
+	}
+
+	private static void checkScores(String file, int depth) throws IOException
+	{
+		Board board = Board.readFromFile(new File(file));
+		assertEquals(file, score(new NegamaxPlayer(), board, depth), score(new PvsPlayer(), board, depth));
+	}
+
+	@Test
+	public void scoresTest() throws IOException
+	{
+		checkScores("nano.thud", 4);
+		checkScores("mini.thud", 4);
+		checkScores("regular.thud", 3);
+	}
+}
@@ -0,0 +1,86 @@
+package org.saucistophe.thud.model.players;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.saucistophe.thud.model.MoveList;
+import org.saucistophe.thud.model.boards.Board;
+
+/**
+ Checks that the quiescence search sees the captures just past the depth.
+ */
+public class QuiescenceTest
+{
+	/**
+	 The dwarves' turn: whichever dwarf moves, the troll can then capture a dwarf.
+	 */
+	private static final String CAPTURE_AHEAD = "D    \n     \n T D \n     \n  D  \n";
+
+	private static Board board() throws IOException
+	{
+		return Board.readFromStream(new ByteArrayInputStream(CAPTURE_AHEAD.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 @return The statistics of a search of the board by a new player, with a single thread.
+	 */
+	private static SearchStatistics search(int depth, int quiescenceDepth) throws IOException
+	{
+		NegamaxPlayer player = new NegamaxPlayer();
+		player.setSearchSettings(new SearchSettings(depth, 0, 0, quiescenceDepth, 1, 1));
+		SearchStatistics[] statistics = new SearchStatistics[1];
+		player.addSearchListener(new SearchListener()
+		{
+			@Override
+			public void iterationCompleted(SearchStatistics iterationStatistics)
+			{
+			}
+
+			@Override
+			public void searchCompleted(SearchStatistics searchStatistics)
+			{
+				statistics[0] = searchStatistics;
+			}
+		});
+		player.search(board(), depth, new SearchBudget(0, 0));
+		return statistics[0];
+	}
+
+	@Test
+	public void horizonTest() throws IOException
+	{
+		// Without quiescence, a single ply doesn't see the capture; with it, the score is that of two plies.
+		SearchStatistics blind = search(1, 0);
+		SearchStatistics quiet = search(1, 1);
+		int twoPlies = search(2, 0).getScore();
+		assertTrue(blind.getScore() + " " + twoPlies, blind.getScore() > twoPlies);
+		assertEquals(twoPlies, quiet.getScore());
+		assertEquals(0, blind.getQuiescenceNodes());
+	}
+
+	@Test
+	public void boundTest() throws IOException
+	{
+		// With a single capture beyond the depth, the quiescence nodes are at most the captures following each move.
+		Board board = board();
+		MoveList moves = new MoveList();
+		MoveList captures = new MoveList();
+		board.generateMoves(moves);
+		long maxNodes = 0;
+		for (int i = 0; i < moves.size(); i++)
+		{
+			board.makeMove(moves.get(i));
+			board.generateCaptures(captures);
+			maxNodes += captures.size();
+			board.unmakeMove(moves.get(i));
+		}
+
+		long nodes = search(1, 1).getQuiescenceNodes();
+		assertTrue(nodes > 0);
+		assertTrue(nodes + " > " + maxNodes, nodes <= maxNodes);
+		assertTrue(search(1, 2).getQuiescenceNodes() >= nodes);
+	}
+}
@@ -0,0 +1,99 @@
+package org.saucistophe.thud.model.players;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.saucistophe.thud.model.Move;
+import org.saucistophe.thud.model.boards.Board;
+
+/**
+ Checks that a search stops when its budget is spent, and then plays the move
+ of its last completed iteration.
+ */
+public class SearchBudgetTest
+{
+	/**
+	 The statistics of each iteration of a search, and of the whole search.
+	 */
+	private static class Recorder implements SearchListener
+	{
+		final List<SearchStatistics> iterations = new ArrayList<>();
+		SearchStatistics search = null;
+
+		@Override
+		public void iterationCompleted(SearchStatistics statistics)
+		{
+			iterations.add(statistics);
+		}
+
+		@Override
+		public void searchCompleted(SearchStatistics statistics)
+		{
+			search = statistics;
+		}
+	}
+
+	/**
+	 Searches the regular board with a single thread.
+
+	 @param budget The budget of the search.
+	 @param recorder The listener of the search.
+	 @return The move found, checked to be legal.
+	 */
+	private static Move search(SearchBudget budget, Recorder recorder) throws IOException
+	{
+		Board board = Board.readFromFile(new File("regular.thud"));
+		SearchSettings settings = new SearchSettings(NegamaxPlayer.MAX_DEPTH, 0, 0, NegamaxPlayer.QUIESCENCE_DEPTH, 1, 4);
+		NegamaxPlayer player = new NegamaxPlayer();
+		player.setSearchSettings(settings);
+		player.addSearchListener(recorder);
+		Move move = player.search(board, settings.lastDepth(budget), budget);
+		assertTrue(String.valueOf(move), board.legalMoves().contains(move));
+		return move;
+	}
+
+	@Test
+	public void nodesTest() throws IOException
+	{
+		SearchBudget budget = new SearchBudget(0, 50000);
+		Recorder recorder = new Recorder();
+		Move move = search(budget, recorder);
+		assertTrue(budget.isAborted());
+
+		// The search went as deep as the nodes allowed, and played the best move of the last completed depth.
+		int completedDepth = recorder.search.getDepth();
+		assertTrue(completedDepth >= 1 && completedDepth < TranspositionTable.MAX_DEPTH);
+		assertEquals(completedDepth, recorder.iterations.size());
+		SearchStatistics lastIteration = recorder.iterations.get(completedDepth - 1);
+		assertEquals(completedDepth, lastIteration.getDepth());
+		assertEquals(lastIteration.getPrincipalVariation().get(0), move);
+	}
+
+	@Test
+	public void timeTest() throws IOException
+	{
+		long start = System.currentTimeMillis();
+		SearchBudget budget = new SearchBudget(300, 0);
+		Recorder recorder = new Recorder();
+		search(budget, recorder);
+		assertTrue(budget.isAborted());
+		assertTrue(System.currentTimeMillis() - start < 10000);
+		assertTrue(recorder.search.getDepth() < TranspositionTable.MAX_DEPTH);
+	}
+
+	@Test
+	public void abortTest() throws IOException
+	{
+		// Stopped before its first iteration, the search still plays a legal move.
+		SearchBudget budget = new SearchBudget(0, 0);
+		budget.abort();
+		Recorder recorder = new Recorder();
+		search(budget, recorder);
+		assertEquals(0, recorder.iterations.size());
+		assertEquals(0, recorder.search.getDepth());
+	}
+}
@@ -0,0 +1,79 @@
+package org.saucistophe.thud.model.players;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.saucistophe.thud.model.boards.Board;
+
+/**
+ Checks the statistics given to the listeners of a search at a fixed depth.
+ */
+public class SearchListenerTest
+{
+	private static final int DEPTH = 3;
+
+	private static void checkCounters(SearchStatistics statistics)
+	{
+		String text = "depth " + statistics.getDepth();
+		assertTrue(text, statistics.getNodes() >= statistics.getEvaluations());
+		assertTrue(text, statistics.getCutoffs() <= statistics.getExpandedNodes());
+		assertTrue(text, statistics.getFirstMoveCutoffs() <= statistics.getCutoffs());
+		assertTrue(text, statistics.getTranspositionHits() <= statistics.getTranspositionProbes());
+	}
+
+	@Test
+	public void statisticsTest() throws IOException
+	{
+		List<SearchStatistics> iterations = new ArrayList<>();
+		List<SearchStatistics> searches = new ArrayList<>();
+		NegamaxPlayer player = new NegamaxPlayer();
+		player.setSearchSettings(new SearchSettings(DEPTH, 0, 0, NegamaxPlayer.QUIESCENCE_DEPTH, 1, 4));
+		SearchListener listener = new SearchListener()
+		{
+			@Override
+			public void iterationCompleted(SearchStatistics statistics)
+			{
+				// The whole search is reported after all its iterations.
+				assertTrue(searches.isEmpty());
+				iterations.add(statistics);
+			}
+
+			@Override
+			public void searchCompleted(SearchStatistics statistics)
+			{
+				searches.add(statistics);
+			}
+		};
+		player.addSearchListener(listener);
+		player.search(Board.readFromFile(new File("mini.thud")), DEPTH, new SearchBudget(0, 0));
+
+		// An iteration per depth, in order, then the whole search.
+		assertEquals(DEPTH, iterations.size());
+		long nodes = 0;
+		for (int depth = 1; depth <= DEPTH; depth++)
+		{
+			SearchStatistics iteration = iterations.get(depth - 1);
+			assertEquals(depth, iteration.getDepth());
+			assertNotNull(iteration.getPrincipalVariation());
+			checkCounters(iteration);
+			nodes += iteration.getNodes();
+		}
+		assertEquals(1, searches.size());
+		SearchStatistics search = searches.get(0);
+		assertEquals(DEPTH, search.getDepth());
+		assertEquals(iterations.get(DEPTH - 1).getScore(), search.getScore());
+		assertEquals(nodes, search.getNodes());
+		checkCounters(search);
+
+		// A removed listener isn't called any more.
+		player.removeSearchListener(listener);
+		player.search(Board.readFromFile(new File("mini.thud")), DEPTH, new SearchBudget(0, 0));
+		assertEquals(DEPTH, iterations.size());
+		assertEquals(1, searches.size());
+	}
+}
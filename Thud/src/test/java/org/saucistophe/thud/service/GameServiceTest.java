@@ -0,0 +1,151 @@
+package org.saucistophe.thud.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.saucistophe.thud.model.Move;
+import org.saucistophe.thud.model.boards.Board;
+import org.saucistophe.thud.model.players.NegamaxPlayer;
+import org.saucistophe.thud.model.players.SearchSettings;
+
+/**
+ Plays games of different shapes and settings at once, and checks that they
+ end like the same games played alone.
+ */
+public class GameServiceTest
+{
+	private static final int MOVES = 6;
+
+	private static Board playAlone(Board board, SearchSettings settings)
+	{
+		NegamaxPlayer player = new NegamaxPlayer();
+		player.setSearchSettings(settings);
+		for (int i = 0; i < MOVES; i++)
+		{
+			player.makeBestMove(board);
+		}
+		return board;
+	}
+
+	@Test
+	public void concurrentGamesTest() throws IOException, InterruptedException, ExecutionException
+	{
+		String[] files =
+		{
+			"nano.thud", "mini.thud", "test.thud", "nano.thud", "mini.thud", "test.thud"
+		};
+		SearchSettings[] settings =
+		{
+			new SearchSettings(3, 0, 0, 0, 1, 1), new SearchSettings(2, 0, 0, 0, 1, 1), new SearchSettings(2, 0, 0, 0, 1, 1),
+			new SearchSettings(2, 0, 0, 0, 1, 1), new SearchSettings(1, 0, 0, 0, 1, 1), new SearchSettings(1, 0, 0, 0, 1, 1)
+		};
+
+		try (GameService service = new GameService(2, 2))
+		{
+			List<GameSession> sessions = new ArrayList<>();
+			for (int i = 0; i < files.length; i++)
+			{
+				sessions.add(service.newSession(Board.readFromFile(new File(files[i])), settings[i]));
+			}
+			assertEquals(files.length, service.getSessionCount());
+
+			for (int i = 0; i < MOVES; i++)
+			{
+				List<Future<?>> moves = new ArrayList<>();
+				for (GameSession session : sessions)
+				{
+					moves.add(session.playAi());
+				}
+				for (Future<?> move : moves)
+				{
+					move.get();
+				}
+			}
+
+			for (int i = 0; i < files.length; i++)
+			{
+				assertEquals(files[i], playAlone(Board.readFromFile(new File(files[i])), settings[i]), sessions.get(i).getBoard());
+			}
+		}
+	}
+
+	@Test
+	public void closeQueuedSessionTest() throws IOException, InterruptedException, ExecutionException, TimeoutException
+	{
+		try (GameService service = new GameService(1, 1))
+		{
+			// A search without limits holds the only permit, and another session waits for it.
+			GameSession busy = service.newSession(Board.readFromFile(new File("regular.thud")), new SearchSettings(30, 0, 0, 0, 1, 1));
+			Future<?> busyMove = busy.playAi();
+			Thread.sleep(200);
+			Board queuedBoard = Board.readFromFile(new File("mini.thud"));
+			GameSession queued = service.newSession(queuedBoard, new SearchSettings(30, 0, 0, 0, 1, 1));
+			Future<?> queuedMove = queued.playAi();
+			Thread.sleep(200);
+
+			// Closing the waiting session gives up its turn, and leaves its board as it was.
+			queued.close();
+			assertTrue(queuedMove.isDone());
+			assertEquals(queuedBoard, queued.getBoard());
+			assertFalse(busyMove.isDone());
+
+			// Once the busy session is closed too, the permit and the worker are free again.
+			busy.close();
+			try
+			{
+				busyMove.get(10, TimeUnit.SECONDS);
+			} catch (CancellationException ex)
+			{
+				// The search was cancelled while running.
+			}
+			GameSession next = service.newSession(Board.readFromFile(new File("nano.thud")), new SearchSettings(1, 0, 0, 0, 1, 1));
+			next.playAi().get(10, TimeUnit.SECONDS);
+			assertEquals(1, service.getSessionCount());
+		}
+	}
+
+	@Test
+	public void cancelledMoveTest() throws IOException, InterruptedException, ExecutionException, TimeoutException
+	{
+		try (GameService service = new GameService(1, 1))
+		{
+			GameSession busy = service.newSession(Board.readFromFile(new File("regular.thud")), new SearchSettings(30, 0, 0, 0, 1, 1));
+			busy.playAi();
+			Thread.sleep(200);
+			GameSession session = service.newSession(Board.readFromFile(new File("nano.thud")), new SearchSettings(1, 0, 0, 0, 1, 1));
+			Future<Move> cancelledMove = session.playAi();
+			Thread.sleep(200);
+
+			// The move is given up while waiting for its turn: its search fails, but the session can still play.
+			assertTrue(cancelledMove.cancel(true));
+			busy.close();
+			Move move = null;
+			for (int attempt = 0; move == null && attempt < 100; attempt++)
+			{
+				try
+				{
+					move = session.playAi().get(10, TimeUnit.SECONDS);
+				} catch (IllegalStateException ex)
+				{
+					// The cancelled move isn't over yet.
+					Thread.sleep(50);
+				}
+			}
+			assertNotNull(move);
+			Board expected = Board.readFromFile(new File("nano.thud"));
+			expected.makeMove(move);
+			assertEquals(expected, session.getBoard());
+		}
+	}
+}
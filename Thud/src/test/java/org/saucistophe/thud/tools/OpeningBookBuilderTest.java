@@ -0,0 +1,82 @@
+package org.saucistophe.thud.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.saucistophe.thud.model.Move;
+import org.saucistophe.thud.model.MoveList;
+import org.saucistophe.thud.model.boards.Board;
+import org.saucistophe.thud.model.boards.OpeningBook;
+import org.saucistophe.thud.model.players.NegamaxPlayer;
+import org.saucistophe.thud.model.players.SearchBudget;
+import org.saucistophe.thud.model.players.SearchSettings;
+
+/**
+ Builds a small book of the mini board, and plays from it.
+ */
+public class OpeningBookBuilderTest
+{
+	private static final SearchSettings SETTINGS = new SearchSettings(2, 0, 0, 2, 1, 1);
+
+	/**
+	 @param board The initial board.
+	 @param threads The number of threads.
+	 @return The book file.
+	 @throws IOException If the book can't be written.
+	 */
+	private static File build(Board board, int threads) throws IOException
+	{
+		File file = File.createTempFile("mini", ".book");
+		file.deleteOnExit();
+		OpeningBookBuilder builder = new OpeningBookBuilder(board);
+		builder.selfPlay(4, 12, SETTINGS, threads, 42);
+		builder.write(file);
+		return file;
+	}
+
+	@Test
+	public void miniTest() throws IOException
+	{
+		Board board = Board.readFromFile(new File("mini.thud"));
+		File file = build(board, 1);
+
+		// The book doesn't depend on the number of threads.
+		assertTrue(Arrays.equals(Files.readAllBytes(file.toPath()), Files.readAllBytes(build(board, 3).toPath())));
+
+		try (OpeningBook book = OpeningBook.open(file))
+		{
+			// All the games start with the best move, found by a search.
+			NegamaxPlayer searcher = new NegamaxPlayer();
+			searcher.setSearchSettings(SETTINGS);
+			SearchBudget budget = SETTINGS.newBudget();
+			Move bestMove = searcher.search(board, SETTINGS.lastDepth(budget), budget);
+			Map<Integer, Integer> moves = book.getMoves(board);
+			assertEquals(1, moves.size());
+			assertEquals(bestMove.pack(), book.probe(board));
+			assertEquals(12, (int) moves.get(bestMove.pack()));
+
+			// A player with the book plays it, whatever its depth.
+			NegamaxPlayer player = new NegamaxPlayer();
+			player.setSearchSettings(new SearchSettings(20, 0, 0, 4, 1, 1));
+			player.setOpeningBook(book);
+			Board played = board.cloneBoard();
+			player.makeBestMove(played);
+			board.makeMove(bestMove);
+			assertEquals(board, played);
+
+			// Positions out of the book are searched.
+			MoveList legalMoves = new MoveList();
+			for (int ply = 0; ply < 6; ply++)
+			{
+				board.generateMoves(legalMoves);
+				board.makeMove(legalMoves.get(0));
+			}
+			assertEquals(0, book.probe(board));
+		}
+	}
+}
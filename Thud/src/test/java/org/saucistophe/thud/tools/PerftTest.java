@@ -0,0 +1,65 @@
+package org.saucistophe.thud.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import org.saucistophe.thud.model.Move;
+import org.saucistophe.thud.model.boards.Board;
+
+/**
+ Checks the move generator against the positions counts of the sample boards,
+ as found by the original generator.
+ */
+public class PerftTest
+{
+	private static void assertCounts(Board board, long... expectedCounts)
+	{
+		for (int depth = 1; depth <= expectedCounts.length; depth++)
+		{
+			assertEquals("Depth " + depth, expectedCounts[depth - 1], Perft.count(board, depth));
+		}
+	}
+
+	@Test
+	public void nanoTest() throws IOException
+	{
+		assertCounts(Board.readFromFile(new File("nano.thud")), 6, 48, 103);
+	}
+
+	@Test
+	public void miniTest() throws IOException
+	{
+		assertCounts(Board.readFromFile(new File("mini.thud")), 328, 15608, 4720376);
+	}
+
+	@Test
+	public void regularTest() throws IOException
+	{
+		Board board = Board.readFromFile(new File(PerftTest.class.getClassLoader().getResource("initialBoard.thud").getFile()));
+		assertCounts(board, 656, 21736, 13584144);
+	}
+
+	@Test
+	public void middleGameTest() throws IOException
+	{
+		assertCounts(Board.readFromFile(new File("test.thud")), 310, 14225, 4134356);
+	}
+
+	@Test
+	public void divideTest() throws IOException
+	{
+		Board board = Board.readFromFile(new File("mini.thud"));
+		Map<Move, Long> counts = Perft.divide(board, 3, 4);
+
+		assertEquals(328, counts.size());
+		assertEquals(4720376, counts.values().stream().mapToLong(Long::longValue).sum());
+		for (Map.Entry<Move, Long> count : counts.entrySet())
+		{
+			Board child = board.cloneBoard();
+			child.makeMove(count.getKey());
+			assertEquals(Perft.count(child, 2), (long) count.getValue());
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package org.saucistophe.thud.tools;
+
+import java.io.File;
+import java.io.IOException;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.saucistophe.thud.model.Move;
+import static org.saucistophe.thud.model.Piece.DWARF;
+import static org.saucistophe.thud.model.Piece.TROLL;
+import org.saucistophe.thud.model.boards.Board;
+import org.saucistophe.thud.model.boards.Tablebase;
+import org.saucistophe.thud.model.players.NegamaxPlayer;
+import org.saucistophe.thud.model.players.SearchBudget;
+import org.saucistophe.thud.model.players.SearchSettings;
+
+/**
+ Solves the endgames of the nano board, and checks every position against its moves.
+ */
+public class TablebaseGeneratorTest
+{
+	/**
+	 @param tablebase A tablebase.
+	 @param board A position of the tablebase.
+	 @param move A move of the position.
+	 @return The value of the move for the playing side, as the value of a position.
+	 */
+	private static int moveValue(Tablebase tablebase, Board board, Move move)
+	{
+		board.makeMove(move);
+		boolean captured = board.numberOf(DWARF) == 0 || board.numberOf(TROLL) == 0;
+		int value = captured ? 0 : tablebase.probe(board);
+		board.unmakeMove(move);
+		return captured ? 1 : -value - Integer.signum(value);
+	}
+
+	@Test
+	public void nanoTest() throws IOException
+	{
+		Board board = Board.readFromFile(new File("nano.thud"));
+		File file = File.createTempFile("nano", ".tb");
+		file.deleteOnExit();
+
+		try (Tablebase tablebase = TablebaseGenerator.generate(board, 5, 2, file, 2))
+		{
+			Board position = board.cloneBoard();
+			for (int dwarves = 1; dwarves <= 5; dwarves++)
+			{
+				for (int trolls = 1; trolls <= 2; trolls++)
+				{
+					for (int index = 0; index < tablebase.size(dwarves, trolls); index++)
+					{
+						tablebase.setPosition(position, dwarves, trolls, index);
+						assertEquals(index, tablebase.index(position));
+
+						// A position is worth its best move: the fastest win, or else a draw, or else the slowest loss.
+						int expected = 0;
+						boolean allLost = !position.legalMoves().isEmpty();
+						for (Move move : position.legalMoves())
+						{
+							int value = moveValue(tablebase, position, move);
+							if (value > 0 && (expected <= 0 || value < expected))
+							{
+								expected = value;
+							}
+							allLost &= value < 0;
+						}
+						if (expected == 0 && allLost)
+						{
+							for (Move move : position.legalMoves())
+							{
+								expected = Math.min(expected, moveValue(tablebase, position, move));
+							}
+						}
+						assertEquals(position.toString(), expected, tablebase.get(dwarves, trolls, index));
+					}
+				}
+			}
+
+			// The player follows the tablebase.
+			NegamaxPlayer player = new NegamaxPlayer();
+			player.setSearchSettings(new SearchSettings(1, 0, 0, 0, 1, 1));
+			player.setTablebase(tablebase);
+			assertTrue(tablebase.covers(board));
+			int value = tablebase.probe(board);
+			Move move = player.search(board, 1, new SearchBudget(0, 0));
+			assertEquals(value, moveValue(tablebase, board, move));
+		}
+	}
+}